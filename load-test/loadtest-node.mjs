@@ -0,0 +1,71 @@
+// The loadtest.js mix for machines without k6: VUS clients send requests back
+// to back for DURATION seconds after a WARMUP that is not counted. Needs Node 18
+// or later, no packages.
+//
+//   node loadtest-node.mjs VUS=500 DURATION=60 WARMUP=30 EMAIL=... PASSWORD=...
+
+const env = Object.fromEntries(process.argv.slice(2).map((arg) => arg.split(/=(.*)/s).slice(0, 2)));
+const BASE = env.BASE_URL || 'http://localhost:8080';
+const VUS = Number(env.VUS || 500);
+const DURATION = Number(env.DURATION || 180) * 1000;
+const WARMUP = Number(env.WARMUP || 60) * 1000;
+
+const login = await fetch(`${BASE}/auth/login`, {
+	method: 'POST',
+	headers: { 'Content-Type': 'application/json' },
+	body: JSON.stringify({ email: env.EMAIL, password: env.PASSWORD }),
+});
+const { token } = await login.json();
+const headers = { Authorization: `Bearer ${token}`, 'Content-Type': 'application/json' };
+
+function request() {
+	const pick = Math.random() * (env.DOCUMENT_BODY ? 1 : 0.95);
+	if (pick < 0.4) {
+		return fetch(`${BASE}/customer/list?size=20`, { headers });
+	} else if (pick < 0.7) {
+		return fetch(`${BASE}/customer/search?q=patil`, { headers });
+	} else if (pick < 0.95) {
+		return fetch(`${BASE}/dashboard/summary`, { headers });
+	}
+	return fetch(`${BASE}/customer-documents/generate`, { method: 'POST', headers, body: env.DOCUMENT_BODY });
+}
+
+const durations = [];
+let failures = 0;
+const start = performance.now();
+const measureFrom = start + WARMUP;
+const end = measureFrom + DURATION;
+
+async function client() {
+	while (performance.now() < end) {
+		const sent = performance.now();
+		let ok = false;
+		try {
+			const res = await request();
+			await res.arrayBuffer();
+			ok = res.status >= 200 && res.status < 300;
+		} catch (e) {
+			ok = false;
+		}
+		if (sent >= measureFrom && performance.now() <= end) {
+			durations.push(performance.now() - sent);
+			if (!ok) {
+				failures++;
+			}
+		}
+	}
+}
+
+await Promise.all(Array.from({ length: VUS }, client));
+
+durations.sort((a, b) => a - b);
+const percentile = (p) => durations[Math.min(durations.length - 1, Math.floor(durations.length * p))].toFixed(1);
+console.log(JSON.stringify({
+	vus: VUS,
+	http_reqs: durations.length,
+	reqs_per_second: Number((durations.length / (DURATION / 1000)).toFixed(1)),
+	p50_ms: Number(percentile(0.5)),
+	p90_ms: Number(percentile(0.9)),
+	p99_ms: Number(percentile(0.99)),
+	failed_rate: Number((failures / durations.length).toFixed(4)),
+}));
@@ -0,0 +1,47 @@
+// Request mix for comparing platform and virtual threads, see "Load testing the
+// thread models" in DEVELOPER.md.
+//
+//   k6 run -e VUS=500 -e EMAIL=... -e PASSWORD=... --summary-export=platform.json loadtest.js
+//
+// DOCUMENT_BODY is optional: the JSON of an existing document to generate again.
+// Without it the 5% of document requests are spread over the reads.
+
+import http from 'k6/http';
+import { check } from 'k6';
+
+const BASE = __ENV.BASE_URL || 'http://localhost:8080';
+
+export const options = {
+	scenarios: {
+		clients: {
+			executor: 'constant-vus',
+			vus: Number(__ENV.VUS || 500),
+			duration: __ENV.DURATION || '3m',
+		},
+	},
+	summaryTrendStats: ['avg', 'p(50)', 'p(90)', 'p(99)', 'max'],
+};
+
+export function setup() {
+	const res = http.post(`${BASE}/auth/login`,
+		JSON.stringify({ email: __ENV.EMAIL, password: __ENV.PASSWORD }),
+		{ headers: { 'Content-Type': 'application/json' } });
+	return { token: res.json('token') };
+}
+
+export default function (data) {
+	const params = { headers: { Authorization: `Bearer ${data.token}`, 'Content-Type': 'application/json' } };
+	// Without a document body every pick falls on the reads
+	const pick = Math.random() * (__ENV.DOCUMENT_BODY ? 1 : 0.95);
+	let res;
+	if (pick < 0.4) {
+		res = http.get(`${BASE}/customer/list?size=20`, params);
+	} else if (pick < 0.7) {
+		res = http.get(`${BASE}/customer/search?q=patil`, params);
+	} else if (pick < 0.95) {
+		res = http.get(`${BASE}/dashboard/summary`, params);
+	} else {
+		res = http.post(`${BASE}/customer-documents/generate`, __ENV.DOCUMENT_BODY, params);
+	}
+	check(res, { 'status is 2xx': (r) => r.status >= 200 && r.status < 300 });
+}
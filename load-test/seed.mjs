@@ -0,0 +1,49 @@
+// Creates CUSTOMERS customers (default 3000) for the load test account through
+// the batch endpoint. Needs Node 18 or later, no packages.
+//
+//   node seed.mjs BASE_URL=http://localhost:8080 EMAIL=... PASSWORD=... CUSTOMERS=3000
+
+const env = Object.fromEntries(process.argv.slice(2).map((arg) => arg.split(/=(.*)/s).slice(0, 2)));
+const BASE = env.BASE_URL || 'http://localhost:8080';
+const CUSTOMERS = Number(env.CUSTOMERS || 3000);
+const BATCH = 500;
+
+const FIRST = ['Aarav', 'Vivaan', 'Aditya', 'Vihaan', 'Arjun', 'Sai', 'Reyansh', 'Ayaan', 'Krishna', 'Ishaan',
+	'Ananya', 'Diya', 'Aadhya', 'Saanvi', 'Pari', 'Kavya', 'Meera', 'Riya', 'Sneha', 'Pooja'];
+const MIDDLE = ['Ramesh', 'Suresh', 'Mahesh', 'Ganesh', 'Dinesh', 'Rajesh', 'Prakash', 'Santosh', 'Vijay',
+	'Anil', 'Sunil', 'Ashok', 'Sanjay', 'Manoj', 'Vinod'];
+const LAST = ['Patil', 'Deshmukh', 'Jadhav', 'Pawar', 'Shinde', 'Kulkarni', 'Joshi', 'Kale', 'More', 'Chavan',
+	'Gaikwad', 'Shaikh', 'Sawant', 'Bhosale', 'Thakur'];
+
+const login = await fetch(`${BASE}/auth/login`, {
+	method: 'POST',
+	headers: { 'Content-Type': 'application/json' },
+	body: JSON.stringify({ email: env.EMAIL, password: env.PASSWORD }),
+});
+const { token } = await login.json();
+
+for (let start = 0; start < CUSTOMERS; start += BATCH) {
+	const operations = [];
+	for (let i = start; i < Math.min(start + BATCH, CUSTOMERS); i++) {
+		operations.push({
+			op: 'CREATE',
+			clientRef: `seed-${i}`,
+			customer: {
+				firstName: FIRST[i % FIRST.length],
+				middleName: MIDDLE[Math.floor(i / FIRST.length) % MIDDLE.length],
+				lastName: LAST[Math.floor(i / (FIRST.length * MIDDLE.length)) % LAST.length],
+				age: String(20 + (i % 60)),
+				place: 'Pune',
+				occupation: 'Farmer',
+				phoneNumber: String(9000000000 + i),
+				aadharNumber: String(100000000000 + i),
+			},
+		});
+	}
+	const res = await fetch(`${BASE}/customer/batch`, {
+		method: 'POST',
+		headers: { Authorization: `Bearer ${token}`, 'Content-Type': 'application/json' },
+		body: JSON.stringify({ operations }),
+	});
+	console.log(`customers ${start + 1} to ${start + operations.length}: ${res.status}`);
+}
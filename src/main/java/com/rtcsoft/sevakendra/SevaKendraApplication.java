@@ -1,5 +1,7 @@
 package com.rtcsoft.sevakendra;
 
+import java.util.Map;
+
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.ComponentScan;
@@ -9,7 +11,10 @@ import org.springframework.context.annotation.ComponentScan;
 public class SevaKendraApplication {
 
 	public static void main(String[] args) {
-		SpringApplication.run(SevaKendraApplication.class, args);
+		SpringApplication application = new SpringApplication(SevaKendraApplication.class);
+		// Client IPs from X-Forwarded-For of internal proxies only, see DEVELOPER.md
+		application.setDefaultProperties(Map.of("server.forward-headers-strategy", "native"));
+		application.run(args);
 	}
 
 }
@@ -6,9 +6,11 @@ import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.AuthenticationProvider;
 import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
 
 import com.rtcsoft.sevakendra.repositories.UserRepository;
 
@@ -26,9 +28,16 @@ public class ApplicationConfig {
 				.orElseThrow(() -> new UsernameNotFoundException("User not found"));
 	}
 
+	/**
+	 * Stores the new hash when a login presents a password hashed with an older
+	 * work factor.
+	 */
 	@Bean
-	BCryptPasswordEncoder passwordEncoder() {
-		return new BCryptPasswordEncoder();
+	UserDetailsPasswordService userDetailsPasswordService() {
+		return (user, newPassword) -> userRepository.findByEmail(user.getUsername()).map(stored -> {
+			stored.setPassword(newPassword);
+			return (UserDetails) userRepository.save(stored);
+		}).orElse(user);
 	}
 
 	@Bean
@@ -37,11 +46,12 @@ public class ApplicationConfig {
 	}
 
 	@Bean
-	AuthenticationProvider authenticationProvider() {
+	AuthenticationProvider authenticationProvider(PasswordEncoder passwordEncoder) {
 		DaoAuthenticationProvider authProvider = new DaoAuthenticationProvider();
 
 		authProvider.setUserDetailsService(userDetailsService());
-		authProvider.setPasswordEncoder(passwordEncoder());
+		authProvider.setPasswordEncoder(passwordEncoder);
+		authProvider.setUserDetailsPasswordService(userDetailsPasswordService());
 
 		return authProvider;
 	}
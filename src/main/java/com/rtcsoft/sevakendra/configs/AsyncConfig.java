@@ -0,0 +1,72 @@
+package com.rtcsoft.sevakendra.configs;
+
+import java.util.concurrent.Executor;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Configuration
+@EnableAsync
+public class AsyncConfig {
+	public static final String MEDIA_EXECUTOR = "mediaExecutor";
+	public static final String PASSWORD_EXECUTOR = "passwordExecutor";
+	public static final String DOCUMENT_EXECUTOR = "documentExecutor";
+
+	// These pools stay on platform threads when spring.threads.virtual.enabled is
+	// set: their work is CPU bound or runs inside library monitors, and their size
+	// is the limit that protects the heap and the cores.
+
+	/**
+	 * Image decoding and scaling is CPU and memory heavy, keep it on a small
+	 * bounded pool away from request threads
+	 */
+	@Bean(name = MEDIA_EXECUTOR)
+	Executor mediaExecutor() {
+		ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+		executor.setCorePoolSize(2);
+		executor.setMaxPoolSize(Math.max(2, Runtime.getRuntime().availableProcessors() / 2));
+		executor.setQueueCapacity(500);
+		executor.setThreadNamePrefix("media-");
+		executor.initialize();
+		return executor;
+	}
+
+	/**
+	 * BCrypt is deliberately slow, a login burst on request threads would starve
+	 * every other endpoint. The queue is short so a burst past it is rejected at
+	 * once instead of piling up.
+	 */
+	@Bean(name = PASSWORD_EXECUTOR)
+	ThreadPoolTaskExecutor passwordExecutor(@Value("${security.password.threads:0}") int threads,
+			@Value("${security.password.queue-capacity:32}") int queueCapacity) {
+		int poolSize = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+		ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+		executor.setCorePoolSize(poolSize);
+		executor.setMaxPoolSize(poolSize);
+		executor.setQueueCapacity(queueCapacity);
+		executor.setThreadNamePrefix("password-");
+		executor.initialize();
+		return executor;
+	}
+
+	/**
+	 * POI holds the whole document in memory and XMLBeans parses inside
+	 * synchronized sections, which would pin the carrier of a virtual request
+	 * thread. Requests wait on this pool instead.
+	 */
+	@Bean(name = DOCUMENT_EXECUTOR)
+	ThreadPoolTaskExecutor documentExecutor(@Value("${documents.generate.threads:0}") int threads,
+			@Value("${documents.generate.queue-capacity:100}") int queueCapacity) {
+		int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+		ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+		executor.setCorePoolSize(poolSize);
+		executor.setMaxPoolSize(poolSize);
+		executor.setQueueCapacity(queueCapacity);
+		executor.setThreadNamePrefix("document-");
+		executor.initialize();
+		return executor;
+	}
+}
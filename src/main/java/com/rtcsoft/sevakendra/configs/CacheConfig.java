@@ -0,0 +1,48 @@
+package com.rtcsoft.sevakendra.configs;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.rtcsoft.sevakendra.responses.PageResponse;
+
+/**
+ * Caffeine caches in front of the customer tables. Statistics are recorded so
+ * actuator publishes cache.gets{result=hit|miss} and cache.evictions per cache.
+ *
+ * Writes evict only on the node that made them, so the TTLs are kept to
+ * seconds: that is how long another node can serve a customer as it was.
+ */
+@Configuration
+@EnableCaching
+public class CacheConfig {
+	public static final String CUSTOMERS = "customers";
+	public static final String CUSTOMER_PAGES = "customerPages";
+
+	@Bean
+	CacheManager cacheManager(@Value("${cache.customers.max-size:20000}") long customersMaxSize,
+			@Value("${cache.customers.ttl-seconds:30}") long customersTtlSeconds,
+			@Value("${cache.customer-pages.max-rows:100000}") long customerPagesMaxRows,
+			@Value("${cache.customer-pages.ttl-seconds:10}") long customerPagesTtlSeconds) {
+		CaffeineCacheManager cacheManager = new CaffeineCacheManager();
+
+		cacheManager.registerCustomCache(CUSTOMERS, Caffeine.newBuilder().maximumSize(customersMaxSize)
+				.expireAfterWrite(Duration.ofSeconds(customersTtlSeconds)).recordStats().build());
+
+		// Pages are weighed by their row count so a few large pages cannot crowd out memory
+		cacheManager.registerCustomCache(CUSTOMER_PAGES,
+				Caffeine.newBuilder().maximumWeight(customerPagesMaxRows)
+						.weigher((Object key, Object value) -> value instanceof PageResponse<?> page
+								? page.items().size() + 1
+								: 1)
+						.expireAfterWrite(Duration.ofSeconds(customerPagesTtlSeconds)).recordStats().build());
+
+		return cacheManager;
+	}
+}
@@ -0,0 +1,74 @@
+package com.rtcsoft.sevakendra.configs;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Primary pool from spring.datasource.*, plus one Hikari pool per read
+ * replica in datasource.replica.urls. Repositories and JPA see a single
+ * DataSource that routes each transaction, see
+ * {@link ReadWriteRoutingDataSource}.
+ */
+@Configuration
+public class DataSourceConfig {
+
+	@Bean
+	@ConfigurationProperties("spring.datasource.hikari")
+	HikariDataSource primaryDataSource(DataSourceProperties properties) {
+		HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+		dataSource.setPoolName("primary");
+		return dataSource;
+	}
+
+	@Bean
+	ReadWriteRoutingDataSource routingDataSource(HikariDataSource primaryDataSource, DataSourceProperties properties,
+			ReplicaProperties replicaProperties, ObjectProvider<MeterRegistry> meterRegistry, Environment environment,
+			@Value("${datasource.replica.token-key:${security.jwt.secret-key}}") String tokenKey) {
+		List<DataSource> replicas = new ArrayList<>();
+		for (String url : replicaProperties.getUrls()) {
+			HikariDataSource replica = properties.initializeDataSourceBuilder().type(HikariDataSource.class)
+					.url(url).build();
+			// Same pool settings as the primary (max-lifetime, validation, data-source-properties, ...)
+			Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(replica));
+			replica.setJdbcUrl(url);
+			if (replicaProperties.getUsername() != null) {
+				replica.setUsername(replicaProperties.getUsername());
+				replica.setPassword(replicaProperties.getPassword());
+			}
+			replica.setPoolName("replica-" + replicas.size());
+			replica.setMaximumPoolSize(replicaProperties.getMaximumPoolSize());
+			replica.setReadOnly(true);
+			// Only bean pools get metrics from Boot, publish these under their pool name too
+			meterRegistry.ifAvailable(registry -> replica
+					.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry)));
+			replicas.add(replica);
+		}
+		return new ReadWriteRoutingDataSource(primaryDataSource, replicas,
+				new ReadYourWritesToken(tokenKey, replicaProperties.getStickiness()));
+	}
+
+	@Bean
+	@Primary
+	DataSource dataSource(ReadWriteRoutingDataSource routingDataSource) {
+		return new LazyConnectionDataSourceProxy(routingDataSource);
+	}
+}
@@ -0,0 +1,91 @@
+package com.rtcsoft.sevakendra.configs;
+
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Moves the id allocators of Customer, CustomerDocument and User past every id
+ * that was handed out before they existed. Each entity now has its own pooled
+ * sequence (a one row table on MySQL), and a node reserves a whole block of
+ * ids per round trip instead of locking the shared hibernate_sequence row on
+ * every insert.
+ *
+ * The floor takes the highest stored id and the last value of the legacy
+ * sequence tables, so blocks still held by nodes running the old mapping during
+ * a rolling deploy are skipped too. The pooled optimizer hands out the block
+ * below next_val and moves the table one block ahead, so next_val stays at
+ * least one block above every id handed out. A sequence is only moved while
+ * its next block would reach down to the floor; a plain restart leaves it as
+ * it is.
+ */
+@Component
+@DependsOn("entityManagerFactory")
+public class IdSequenceMigration {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(IdSequenceMigration.class);
+
+	private static final List<String> SHARED_LEGACY_SEQUENCES = List.of("hibernate_sequence");
+
+	private record Allocator(String table, String sequence, int allocationSize, List<String> legacySequences) {
+	}
+
+	// Must match the @SequenceGenerator of each entity
+	private static final List<Allocator> ALLOCATORS = List.of(
+			new Allocator("customers", "customers_id_seq", 100, List.of("customer_seq")),
+			new Allocator("customer_documents", "customer_documents_id_seq", 100, List.of("customer_document_seq")),
+			new Allocator("users", "users_id_seq", 50, List.of("user_seq")));
+
+	private final JdbcTemplate jdbcTemplate;
+
+	public IdSequenceMigration(JdbcTemplate jdbcTemplate) {
+		this.jdbcTemplate = jdbcTemplate;
+	}
+
+	@PostConstruct
+	public void migrate() {
+		for (Allocator allocator : ALLOCATORS) {
+			try {
+				long floor = queryLong("SELECT COALESCE(MAX(id), 0) FROM " + allocator.table());
+				for (String legacy : allocator.legacySequences()) {
+					floor = Math.max(floor, legacyValue(legacy));
+				}
+				for (String legacy : SHARED_LEGACY_SEQUENCES) {
+					floor = Math.max(floor, legacyValue(legacy));
+				}
+
+				// The next node to read the table hands out (next_val - allocationSize, next_val]
+				long nextValue = floor + allocator.allocationSize();
+				int updated = jdbcTemplate.update(
+						"UPDATE " + allocator.sequence() + " SET next_val = ? WHERE next_val < ?", nextValue,
+						nextValue);
+				if (updated > 0) {
+					LOGGER.info("Moved id sequence {} to {}", allocator.sequence(), nextValue);
+				}
+			} catch (DataAccessException e) {
+				LOGGER.warn("Could not migrate id sequence {}: {}", allocator.sequence(), e.getMessage());
+			}
+		}
+	}
+
+	private long legacyValue(String sequenceTable) {
+		try {
+			return queryLong("SELECT COALESCE(MAX(next_val), 0) FROM " + sequenceTable);
+		} catch (DataAccessException e) {
+			// Legacy table was never created on this database
+			return 0;
+		}
+	}
+
+	private long queryLong(String sql) {
+		Long value = jdbcTemplate.queryForObject(sql, Long.class);
+		return value == null ? 0 : value;
+	}
+}
@@ -0,0 +1,22 @@
+package com.rtcsoft.sevakendra.configs;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+
+@Configuration
+public class JacksonConfig {
+
+	/**
+	 * Spring Boot adds every Module bean to the shared ObjectMapper. Blackbird
+	 * compiles each getter and constructor into a lambda once, when the
+	 * serializer is built, so the list endpoints no longer pay a reflective call
+	 * per field and row.
+	 */
+	@Bean
+	Module blackbirdModule() {
+		return new BlackbirdModule();
+	}
+}
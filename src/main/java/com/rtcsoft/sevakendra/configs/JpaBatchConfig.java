@@ -0,0 +1,41 @@
+package com.rtcsoft.sevakendra.configs;
+
+import java.util.Map;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * Turns on JDBC batching so bulk writes (customer import) go out as multi-row
+ * batches. Values set in application properties take precedence.
+ */
+@Configuration
+public class JpaBatchConfig implements HibernatePropertiesCustomizer {
+
+	@Override
+	public void customize(Map<String, Object> hibernateProperties) {
+		hibernateProperties.putIfAbsent("hibernate.jdbc.batch_size", 100);
+		hibernateProperties.putIfAbsent("hibernate.order_inserts", true);
+		hibernateProperties.putIfAbsent("hibernate.order_updates", true);
+		hibernateProperties.putIfAbsent("hibernate.jdbc.batch_versioned_data", true);
+	}
+
+	// Connector/J only sends a batch as one multi-row INSERT with this flag
+	@Bean
+	static BeanPostProcessor rewriteBatchedStatementsPostProcessor() {
+		return new BeanPostProcessor() {
+			@Override
+			public Object postProcessBeforeInitialization(Object bean, String beanName) {
+				if (bean instanceof HikariDataSource dataSource
+						&& !dataSource.getDataSourceProperties().containsKey("rewriteBatchedStatements")) {
+					dataSource.addDataSourceProperty("rewriteBatchedStatements", "true");
+				}
+				return bean;
+			}
+		};
+	}
+}
@@ -7,44 +7,38 @@ import org.springframework.lang.NonNull;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 import org.springframework.web.servlet.HandlerExceptionResolver;
 
+import com.rtcsoft.sevakendra.projections.AuthenticatedUser;
 import com.rtcsoft.sevakendra.services.JwtService;
-import com.rtcsoft.sevakendra.services.SharedService;
+import com.rtcsoft.sevakendra.services.JwtService.VerifiedToken;
+import com.rtcsoft.sevakendra.services.PrincipalCache;
 import com.rtcsoft.sevakendra.services.TokenBlacklistService;
 
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import jakarta.servlet.http.HttpSession;
 
 @Component
 public class JwtAuthFilter extends OncePerRequestFilter {
 	private final HandlerExceptionResolver handlerExceptionResolver;
 
 	private final JwtService jwtService;
-	private final UserDetailsService userDetailsService;
+	private final PrincipalCache principalCache;
 
-	@Autowired
-	private final SharedService sharedService;
-	@Autowired
-	HttpSession session;
 
 	@Autowired
 	private TokenBlacklistService tokenBlacklistService;
 
-	public JwtAuthFilter(JwtService jwtService, UserDetailsService userDetailsService,
-			HandlerExceptionResolver handlerExceptionResolver, SharedService sharedService) {
+	public JwtAuthFilter(JwtService jwtService, PrincipalCache principalCache,
+			HandlerExceptionResolver handlerExceptionResolver) {
 		this.jwtService = jwtService;
-		this.userDetailsService = userDetailsService;
+		this.principalCache = principalCache;
 		this.handlerExceptionResolver = handlerExceptionResolver;
-		this.sharedService = sharedService;
 	}
 
 	@Override
@@ -59,10 +53,11 @@ public class JwtAuthFilter extends OncePerRequestFilter {
 
 		try {
 			final String jwt = authHeader.substring(7);
-			final String userEmail = jwtService.extractUsername(jwt);
+			final VerifiedToken token = jwtService.verify(jwt);
+			final String userEmail = token.subject();
 
 			// Check if the token is blacklisted
-			if (tokenBlacklistService.isTokenBlacklisted(jwt)) {
+			if (tokenBlacklistService.isTokenBlacklisted(token)) {
 				response.sendError(HttpServletResponse.SC_UNAUTHORIZED, "Token has been blacklisted");
 				return;
 			}
@@ -70,20 +65,14 @@ public class JwtAuthFilter extends OncePerRequestFilter {
 			Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
 
 			if (userEmail != null && authentication == null) {
-				UserDetails userDetails = this.userDetailsService.loadUserByUsername(userEmail);
+				AuthenticatedUser userDetails = principalCache.load(userEmail);
 
-				if (jwtService.isTokenValid(jwt, userDetails)) {
+				if (jwtService.isTokenValid(token, userDetails)) {
 					UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(userDetails,
 							null, userDetails.getAuthorities());
 
 					authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
 					SecurityContextHolder.getContext().setAuthentication(authToken);
-
-					// Get userName form http session: Added on 26/10/2024
-					if (!sharedService.checkAccessBySessionAtrribute(request)) {
-						response.sendError(HttpServletResponse.SC_UNAUTHORIZED, "Unauthorised access!");
-						return;
-					}
 				}
 			}
 
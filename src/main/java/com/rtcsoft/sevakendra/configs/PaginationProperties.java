@@ -0,0 +1,43 @@
+package com.rtcsoft.sevakendra.configs;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties("pagination")
+public class PaginationProperties {
+
+	/**
+	 * Page size used when the client does not ask for one
+	 */
+	private int defaultSize = 50;
+
+	/**
+	 * Upper bound for a client requested page size
+	 */
+	private int maxSize = 200;
+
+	public int getDefaultSize() {
+		return defaultSize;
+	}
+
+	public void setDefaultSize(int defaultSize) {
+		this.defaultSize = defaultSize;
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	public void setMaxSize(int maxSize) {
+		this.maxSize = maxSize;
+	}
+
+	public int resolve(Integer requestedSize) {
+		if (requestedSize == null || requestedSize <= 0) {
+			return defaultSize;
+		}
+		return Math.min(requestedSize, maxSize);
+	}
+
+}
@@ -0,0 +1,258 @@
+package com.rtcsoft.sevakendra.configs;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.SequenceInputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.lang.NonNull;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rtcsoft.sevakendra.projections.AuthenticatedUser;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Token bucket limits per route group, kept with the generic cell rate
+ * algorithm: a bucket is a single theoretical arrival time advanced with a
+ * compare and set, so the check takes no lock and no bucket object. Runs after
+ * JwtAuthFilter so signed in requests are limited per user, anonymous ones and
+ * the /auth endpoints per client IP. Login and password reset also take a
+ * token from the bucket of the submitted email, so guessing one account's
+ * password from many addresses is limited as well.
+ *
+ * The client IP is the remote address Tomcat resolved from X-Forwarded-For of
+ * a trusted proxy, see server.forward-headers-strategy in DEVELOPER.md.
+ * Buckets are kept per node, so behind a load balancer that spreads requests
+ * evenly a client gets up to the configured rate times the number of nodes.
+ *
+ * Buckets that have refilled are the same as new ones and are swept every
+ * minute. Rejections are published as rate_limit.rejected{group}.
+ */
+@Component
+public class RateLimitFilter extends OncePerRequestFilter {
+
+	private enum Group {
+		AUTH, GENERATE, BULK, API
+	}
+
+	private record Rate(long intervalNanos, long toleranceNanos) {
+		private static Rate of(RateLimitProperties.Limit limit) {
+			long interval = TimeUnit.MINUTES.toNanos(1) / Math.max(1, limit.getPerMinute());
+			return new Rate(interval, interval * (Math.max(1, limit.getBurst()) - 1));
+		}
+	}
+
+	// Login and reset bodies are a few dozen bytes, larger ones are not parsed
+	private static final int MAX_PEEKED_BODY = 4096;
+
+	private final boolean enabled;
+	private final ObjectMapper objectMapper;
+	private final Map<Group, Rate> rates = new EnumMap<>(Group.class);
+	private final Map<Group, Counter> rejections = new EnumMap<>(Group.class);
+	// Theoretical arrival time in System.nanoTime() units, by group and user, IP or email
+	private final Map<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+
+	public RateLimitFilter(RateLimitProperties properties, MeterRegistry meterRegistry, ObjectMapper objectMapper) {
+		this.enabled = properties.isEnabled();
+		this.objectMapper = objectMapper;
+		rates.put(Group.AUTH, Rate.of(properties.getAuth()));
+		rates.put(Group.GENERATE, Rate.of(properties.getGenerate()));
+		rates.put(Group.BULK, Rate.of(properties.getBulk()));
+		rates.put(Group.API, Rate.of(properties.getApi()));
+		for (Group group : Group.values()) {
+			rejections.put(group, meterRegistry.counter("rate_limit.rejected", "group",
+					group.name().toLowerCase(Locale.ROOT)));
+		}
+		meterRegistry.gaugeMapSize("rate_limit.buckets", Tags.empty(), buckets);
+	}
+
+	@Override
+	protected boolean shouldNotFilter(@NonNull HttpServletRequest request) {
+		return !enabled || "OPTIONS".equals(request.getMethod());
+	}
+
+	@Override
+	protected void doFilterInternal(@NonNull HttpServletRequest request, @NonNull HttpServletResponse response,
+			@NonNull FilterChain filterChain) throws ServletException, IOException {
+		Group group = groupOf(request.getServletPath());
+		Rate rate = rates.get(group);
+		long now = System.nanoTime();
+		long wait = take(group.ordinal() + ":" + clientKey(group, request), rate, now);
+
+		HttpServletRequest forwarded = request;
+		if (wait == 0 && isKeyedByEmail(request)) {
+			ReplayedBodyRequest replayed = new ReplayedBodyRequest(request);
+			forwarded = replayed;
+			String email = submittedEmail(replayed.head());
+			if (email != null) {
+				wait = take(group.ordinal() + ":email:" + email, rate, now);
+			}
+		}
+		if (wait > 0) {
+			rejections.get(group).increment();
+			response.setHeader(HttpHeaders.RETRY_AFTER,
+					Long.toString(Math.max(1, TimeUnit.NANOSECONDS.toSeconds(wait + 999_999_999L))));
+			response.sendError(HttpStatus.TOO_MANY_REQUESTS.value(), "Too many requests");
+			return;
+		}
+		filterChain.doFilter(forwarded, response);
+	}
+
+	/**
+	 * @return 0 when the bucket had a token, otherwise the nanoseconds until it
+	 *         has one
+	 */
+	private long take(String key, Rate rate, long now) {
+		AtomicLong arrival = buckets.computeIfAbsent(key, k -> new AtomicLong(now));
+		while (true) {
+			long current = arrival.get();
+			long start = current - now > 0 ? current : now;
+			long wait = start - now - rate.toleranceNanos();
+			if (wait > 0) {
+				return wait;
+			}
+			if (arrival.compareAndSet(current, start + rate.intervalNanos())) {
+				return 0;
+			}
+		}
+	}
+
+	private String submittedEmail(byte[] body) {
+		if (body.length == 0 || body.length >= MAX_PEEKED_BODY) {
+			return null;
+		}
+		try {
+			String email = objectMapper.readTree(body).path("email").asText("").strip();
+			return email.isEmpty() ? null : email.toLowerCase(Locale.ROOT);
+		} catch (IOException e) {
+			// The controller answers the malformed body
+			return null;
+		}
+	}
+
+	@Scheduled(fixedDelay = 60_000)
+	public void removeIdleBuckets() {
+		long now = System.nanoTime();
+		buckets.values().removeIf(arrival -> arrival.get() - now < 0);
+	}
+
+	private static Group groupOf(String path) {
+		if (path.startsWith("/auth/")) {
+			return Group.AUTH;
+		}
+		if (path.equals("/customer-documents/generate")) {
+			return Group.GENERATE;
+		}
+		if (path.equals("/customer/import") || path.equals("/customer/batch")) {
+			return Group.BULK;
+		}
+		return Group.API;
+	}
+
+	private static boolean isKeyedByEmail(HttpServletRequest request) {
+		String path = request.getServletPath();
+		return "POST".equals(request.getMethod())
+				&& (path.equals("/auth/login") || path.equals("/auth/forgot-password"));
+	}
+
+	private static String clientKey(Group group, HttpServletRequest request) {
+		Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+		if (group != Group.AUTH && authentication != null
+				&& authentication.getPrincipal() instanceof AuthenticatedUser user) {
+			return "u" + user.id();
+		}
+		// Behind a proxy this is the client only with server.forward-headers-strategy set
+		return request.getRemoteAddr();
+	}
+
+	/**
+	 * Reads the start of the body for the email and hands the whole body on to
+	 * the controller unchanged.
+	 */
+	private static final class ReplayedBodyRequest extends HttpServletRequestWrapper {
+
+		private final byte[] head;
+		private final InputStream body;
+
+		private ReplayedBodyRequest(HttpServletRequest request) throws IOException {
+			super(request);
+			InputStream original = request.getInputStream();
+			this.head = original.readNBytes(MAX_PEEKED_BODY);
+			this.body = new SequenceInputStream(new ByteArrayInputStream(head), original);
+		}
+
+		private byte[] head() {
+			return head;
+		}
+
+		@Override
+		public ServletInputStream getInputStream() {
+			return new ServletInputStream() {
+				private boolean finished;
+
+				@Override
+				public int read() throws IOException {
+					int read = body.read();
+					finished = read < 0;
+					return read;
+				}
+
+				@Override
+				public int read(byte[] b, int off, int len) throws IOException {
+					int read = body.read(b, off, len);
+					finished = read < 0;
+					return read;
+				}
+
+				@Override
+				public boolean isFinished() {
+					return finished;
+				}
+
+				@Override
+				public boolean isReady() {
+					return true;
+				}
+
+				@Override
+				public void setReadListener(ReadListener listener) {
+					throw new UnsupportedOperationException();
+				}
+			};
+		}
+
+		@Override
+		public BufferedReader getReader() {
+			Charset charset = getCharacterEncoding() == null ? StandardCharsets.UTF_8
+					: Charset.forName(getCharacterEncoding());
+			return new BufferedReader(new InputStreamReader(getInputStream(), charset));
+		}
+	}
+}
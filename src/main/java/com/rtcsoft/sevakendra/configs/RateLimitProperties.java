@@ -0,0 +1,112 @@
+package com.rtcsoft.sevakendra.configs;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties("rate-limit")
+public class RateLimitProperties {
+
+	/**
+	 * Turns the limiter off, for load tests
+	 */
+	private boolean enabled = true;
+
+	/**
+	 * Login, signup, refresh and password reset, per client IP. Login and
+	 * password reset also per submitted email
+	 */
+	private Limit auth = new Limit(10, 5);
+
+	/**
+	 * Document generation, per user
+	 */
+	private Limit generate = new Limit(30, 10);
+
+	/**
+	 * CSV import and batch writes, per user
+	 */
+	private Limit bulk = new Limit(10, 3);
+
+	/**
+	 * Every other request, per user or per client IP when anonymous
+	 */
+	private Limit api = new Limit(600, 100);
+
+	public static class Limit {
+
+		/**
+		 * Sustained requests per minute
+		 */
+		private int perMinute;
+
+		/**
+		 * Requests allowed at once after an idle period
+		 */
+		private int burst;
+
+		public Limit() {
+		}
+
+		public Limit(int perMinute, int burst) {
+			this.perMinute = perMinute;
+			this.burst = burst;
+		}
+
+		public int getPerMinute() {
+			return perMinute;
+		}
+
+		public void setPerMinute(int perMinute) {
+			this.perMinute = perMinute;
+		}
+
+		public int getBurst() {
+			return burst;
+		}
+
+		public void setBurst(int burst) {
+			this.burst = burst;
+		}
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	public Limit getAuth() {
+		return auth;
+	}
+
+	public void setAuth(Limit auth) {
+		this.auth = auth;
+	}
+
+	public Limit getGenerate() {
+		return generate;
+	}
+
+	public void setGenerate(Limit generate) {
+		this.generate = generate;
+	}
+
+	public Limit getBulk() {
+		return bulk;
+	}
+
+	public void setBulk(Limit bulk) {
+		this.bulk = bulk;
+	}
+
+	public Limit getApi() {
+		return api;
+	}
+
+	public void setApi(Limit api) {
+		this.api = api;
+	}
+}
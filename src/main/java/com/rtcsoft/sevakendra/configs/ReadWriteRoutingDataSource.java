@@ -0,0 +1,117 @@
+package com.rtcsoft.sevakendra.configs;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.rtcsoft.sevakendra.projections.AuthenticatedUser;
+
+/**
+ * Sends read-only transactions of an authenticated user to the replicas in
+ * turn and everything else to the primary. After a user's read-write
+ * transaction commits, the response carries a {@link ReadYourWritesToken}, and
+ * while the client presents it that user's reads stay on the primary on every
+ * node, so they see their own write despite replication lag.
+ *
+ * Anonymous requests always use the primary: login right after signup and the
+ * token filter must see the latest user row.
+ *
+ * Whatever fills a shared cache runs inside {@link #onPrimary}: stickiness is
+ * the writer's own, so a replica read there could pin a row another user
+ * already changed for every user of the cache.
+ *
+ * The read-only flag is only set once the transaction has begun, so this must
+ * sit behind a {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}
+ * that fetches the connection on the first statement.
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource implements DisposableBean {
+
+	private static final String PRIMARY = "primary";
+	private static final ThreadLocal<Boolean> PRIMARY_ONLY = new ThreadLocal<>();
+
+	private final List<DataSource> replicas;
+	private final AtomicInteger next = new AtomicInteger();
+	private final ReadYourWritesToken readYourWrites;
+
+	public ReadWriteRoutingDataSource(DataSource primary, List<DataSource> replicas,
+			ReadYourWritesToken readYourWrites) {
+		this.replicas = List.copyOf(replicas);
+		this.readYourWrites = readYourWrites;
+
+		Map<Object, Object> targets = new HashMap<>();
+		targets.put(PRIMARY, primary);
+		for (int i = 0; i < this.replicas.size(); i++) {
+			targets.put(i, this.replicas.get(i));
+		}
+		setTargetDataSources(targets);
+		setDefaultTargetDataSource(primary);
+	}
+
+	/**
+	 * Connections fetched by the action go to the primary even in a read-only
+	 * transaction, without making the user sticky.
+	 */
+	public static <T> T onPrimary(Supplier<T> action) {
+		Boolean previous = PRIMARY_ONLY.get();
+		PRIMARY_ONLY.set(Boolean.TRUE);
+		try {
+			return action.get();
+		} finally {
+			PRIMARY_ONLY.set(previous);
+		}
+	}
+
+	@Override
+	protected Object determineCurrentLookupKey() {
+		if (PRIMARY_ONLY.get() != null) {
+			return PRIMARY;
+		}
+		Long userId = currentUserId();
+		if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+			if (userId != null && !replicas.isEmpty() && TransactionSynchronizationManager.isSynchronizationActive()) {
+				TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+					@Override
+					public void afterCommit() {
+						readYourWrites.issue(userId);
+					}
+				});
+			}
+			return PRIMARY;
+		}
+		if (replicas.isEmpty() || userId == null || readYourWrites.isSticky(userId)) {
+			return PRIMARY;
+		}
+		return Math.floorMod(next.getAndIncrement(), replicas.size());
+	}
+
+	private static Long currentUserId() {
+		Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+		if (authentication != null && authentication.getPrincipal() instanceof AuthenticatedUser user) {
+			return user.id();
+		}
+		return null;
+	}
+
+	/**
+	 * The replica pools are not beans of their own, they close with this one
+	 */
+	@Override
+	public void destroy() throws Exception {
+		for (DataSource replica : replicas) {
+			if (replica instanceof AutoCloseable closeable) {
+				closeable.close();
+			}
+		}
+	}
+}
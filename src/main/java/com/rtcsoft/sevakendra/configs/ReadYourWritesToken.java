@@ -0,0 +1,134 @@
+package com.rtcsoft.sevakendra.configs;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.Base64;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseCookie;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Read-your-writes marker carried by the client, so it holds on whichever node
+ * serves the next request. After a user's write commits the response gets
+ * "userId.untilMillis.signature" as a cookie and as the X-Primary-Until header.
+ * Clients without a cookie jar send the header value back. Every node shares
+ * the key, so any of them can check that the value is the user's own and still
+ * inside the stickiness window.
+ */
+public class ReadYourWritesToken {
+
+	public static final String COOKIE = "primary_until";
+	public static final String HEADER = "X-Primary-Until";
+
+	private static final String ALGORITHM = "HmacSHA256";
+	private static final String ISSUED = ReadYourWritesToken.class.getName() + ".issued";
+	private static final String STICKY_USER = ReadYourWritesToken.class.getName() + ".stickyUser";
+
+	private final SecretKeySpec key;
+	private final Duration stickiness;
+
+	public ReadYourWritesToken(String secret, Duration stickiness) {
+		this.key = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+		this.stickiness = stickiness;
+	}
+
+	/**
+	 * Called after the user's write committed, a no-op outside a request or once
+	 * the response is committed.
+	 */
+	public void issue(long userId) {
+		if (!(RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes)) {
+			return;
+		}
+		HttpServletResponse response = attributes.getResponse();
+		if (response == null || response.isCommitted()
+				|| attributes.getAttribute(ISSUED, RequestAttributes.SCOPE_REQUEST) != null) {
+			return;
+		}
+		String value = sign(userId, System.currentTimeMillis() + stickiness.toMillis());
+		ResponseCookie cookie = ResponseCookie.from(COOKIE, value).path("/").httpOnly(true).sameSite("Lax")
+				.secure(attributes.getRequest().isSecure()).maxAge(stickiness.toSeconds() + 1).build();
+		response.addHeader(HttpHeaders.SET_COOKIE, cookie.toString());
+		response.setHeader(HEADER, value);
+		attributes.setAttribute(ISSUED, Boolean.TRUE, RequestAttributes.SCOPE_REQUEST);
+		// Reads later in the same request see the write as well
+		attributes.setAttribute(STICKY_USER, userId, RequestAttributes.SCOPE_REQUEST);
+	}
+
+	/**
+	 * @return the current request carries a valid, unexpired marker of this user
+	 */
+	public boolean isSticky(long userId) {
+		if (!(RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes)) {
+			return false;
+		}
+		Object stickyUser = attributes.getAttribute(STICKY_USER, RequestAttributes.SCOPE_REQUEST);
+		if (stickyUser != null) {
+			return stickyUser.equals(userId);
+		}
+		boolean sticky = isValid(presented(attributes.getRequest()), userId);
+		attributes.setAttribute(STICKY_USER, sticky ? userId : -1L, RequestAttributes.SCOPE_REQUEST);
+		return sticky;
+	}
+
+	String sign(long userId, long untilMillis) {
+		String payload = userId + "." + untilMillis;
+		return payload + "." + Base64.getUrlEncoder().withoutPadding().encodeToString(mac(payload));
+	}
+
+	boolean isValid(String value, long userId) {
+		if (value == null) {
+			return false;
+		}
+		String[] parts = value.split("\\.");
+		if (parts.length != 3 || !parts[0].equals(Long.toString(userId))) {
+			return false;
+		}
+		try {
+			if (Long.parseLong(parts[1]) < System.currentTimeMillis()) {
+				return false;
+			}
+			byte[] signature = Base64.getUrlDecoder().decode(parts[2]);
+			return MessageDigest.isEqual(signature, mac(parts[0] + "." + parts[1]));
+		} catch (IllegalArgumentException e) {
+			return false;
+		}
+	}
+
+	private static String presented(HttpServletRequest request) {
+		String header = request.getHeader(HEADER);
+		if (header != null) {
+			return header;
+		}
+		if (request.getCookies() != null) {
+			for (Cookie cookie : request.getCookies()) {
+				if (COOKIE.equals(cookie.getName())) {
+					return cookie.getValue();
+				}
+			}
+		}
+		return null;
+	}
+
+	private byte[] mac(String payload) {
+		try {
+			Mac mac = Mac.getInstance(ALGORITHM);
+			mac.init(key);
+			return mac.doFinal(payload.getBytes(StandardCharsets.UTF_8));
+		} catch (GeneralSecurityException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -0,0 +1,78 @@
+package com.rtcsoft.sevakendra.configs;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties("datasource.replica")
+public class ReplicaProperties {
+
+	/**
+	 * JDBC urls of the read replicas, every read goes to the primary when empty
+	 */
+	private List<String> urls = new ArrayList<>();
+
+	/**
+	 * Replica login, the primary's when not set
+	 */
+	private String username;
+
+	private String password;
+
+	/**
+	 * Connections per replica pool
+	 */
+	private int maximumPoolSize = 10;
+
+	/**
+	 * How long reads of a user stay on the primary after that user's last write,
+	 * should cover the usual replication lag. Carried by the client, see
+	 * ReadYourWritesToken
+	 */
+	private Duration stickiness = Duration.ofSeconds(5);
+
+	public List<String> getUrls() {
+		return urls;
+	}
+
+	public void setUrls(List<String> urls) {
+		this.urls = urls;
+	}
+
+	public String getUsername() {
+		return username;
+	}
+
+	public void setUsername(String username) {
+		this.username = username;
+	}
+
+	public String getPassword() {
+		return password;
+	}
+
+	public void setPassword(String password) {
+		this.password = password;
+	}
+
+	public int getMaximumPoolSize() {
+		return maximumPoolSize;
+	}
+
+	public void setMaximumPoolSize(int maximumPoolSize) {
+		this.maximumPoolSize = maximumPoolSize;
+	}
+
+	public Duration getStickiness() {
+		return stickiness;
+	}
+
+	public void setStickiness(Duration stickiness) {
+		this.stickiness = stickiness;
+	}
+
+}
@@ -19,18 +19,23 @@ import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 public class SecurityConfig {
 	private final AuthenticationProvider authenticationProvider;
 	private final JwtAuthFilter jwtAuthFilter;
+	private final RateLimitFilter rateLimitFilter;
 
-	public SecurityConfig(JwtAuthFilter jwtAuthenticationFilter, AuthenticationProvider authenticationProvider) {
+	public SecurityConfig(JwtAuthFilter jwtAuthenticationFilter, RateLimitFilter rateLimitFilter,
+			AuthenticationProvider authenticationProvider) {
 		this.authenticationProvider = authenticationProvider;
 		this.jwtAuthFilter = jwtAuthenticationFilter;
+		this.rateLimitFilter = rateLimitFilter;
 	}
 
 	@Bean
 	public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
-		http.csrf().disable().authorizeHttpRequests().requestMatchers("/auth/**").permitAll().anyRequest()
+		// sendError of the filters renders on /error, anonymous callers must reach it to see 429 or 401
+		http.csrf().disable().authorizeHttpRequests().requestMatchers("/auth/**", "/error").permitAll().anyRequest()
 				.authenticated().and().sessionManagement().sessionCreationPolicy(SessionCreationPolicy.STATELESS).and()
 				.authenticationProvider(authenticationProvider)
-				.addFilterBefore(jwtAuthFilter, UsernamePasswordAuthenticationFilter.class);
+				.addFilterBefore(jwtAuthFilter, UsernamePasswordAuthenticationFilter.class)
+				.addFilterAfter(rateLimitFilter, JwtAuthFilter.class);
 
 		return http.build();
 	}
@@ -40,8 +45,11 @@ public class SecurityConfig {
 		CorsConfiguration configuration = new CorsConfiguration();
 
 		configuration.setAllowedOrigins(List.of("http://localhost:8005"));
-		configuration.setAllowedMethods(List.of("GET", "POST"));
-		configuration.setAllowedHeaders(List.of("Authorization", "Content-Type"));
+		configuration.setAllowedMethods(List.of("GET", "POST", "HEAD", "PATCH", "DELETE"));
+		configuration.setAllowedHeaders(List.of("Authorization", "Content-Type", "Tus-Resumable", "Upload-Length",
+				"Upload-Offset", "Upload-Metadata", ReadYourWritesToken.HEADER));
+		configuration.setExposedHeaders(List.of("Location", "Tus-Resumable", "Upload-Length", "Upload-Offset",
+				ReadYourWritesToken.HEADER));
 
 		UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
 
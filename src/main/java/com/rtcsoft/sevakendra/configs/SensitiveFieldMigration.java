@@ -0,0 +1,107 @@
+package com.rtcsoft.sevakendra.configs;
+
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import com.rtcsoft.sevakendra.services.FieldCipher;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Moves customers saved before field encryption onto it. The Aadhaar and phone
+ * columns are widened for the ciphertext, which schema update does not do,
+ * then plain values are sealed and their blind indexes filled in batches.
+ * Works on the columns directly, so neither the entity listener nor the
+ * caches see half migrated rows.
+ *
+ * A row whose Aadhaar is already indexed for another customer of the same user
+ * keeps an empty Aadhaar index and is logged, it is a duplicate that was never
+ * checked before. Rows are picked by their plain values, so such a row, like
+ * one whose numbers have no digits, is sealed once and not read again.
+ */
+@Component
+@DependsOn("entityManagerFactory")
+public class SensitiveFieldMigration {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(SensitiveFieldMigration.class);
+
+	private static final int SEALED_LENGTH = 100;
+	private static final int BATCH_SIZE = 500;
+	private static final List<String> SEALED_COLUMNS = List.of("aadhar_number", "phone_number");
+	private static final String SEALED_PATTERN = FieldCipher.VERSION + "%";
+
+	private final JdbcTemplate jdbcTemplate;
+	private final FieldCipher fieldCipher;
+
+	public SensitiveFieldMigration(JdbcTemplate jdbcTemplate, FieldCipher fieldCipher) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.fieldCipher = fieldCipher;
+	}
+
+	@PostConstruct
+	public void widenColumns() {
+		for (String column : SEALED_COLUMNS) {
+			try {
+				Integer length = jdbcTemplate.queryForObject(
+						"SELECT CHARACTER_MAXIMUM_LENGTH FROM information_schema.COLUMNS "
+								+ "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'customers' AND COLUMN_NAME = ?",
+						Integer.class, column);
+				if (length != null && length < SEALED_LENGTH) {
+					jdbcTemplate.execute("ALTER TABLE customers MODIFY " + column + " VARCHAR(" + SEALED_LENGTH + ")");
+					LOGGER.info("Widened customers.{} to {} characters", column, SEALED_LENGTH);
+				}
+			} catch (DataAccessException e) {
+				LOGGER.warn("Could not widen customers.{}: {}", column, e.getMessage());
+			}
+		}
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void sealAndIndex() {
+		long lastId = 0;
+		int migrated = 0;
+		List<Map<String, Object>> rows;
+		do {
+			rows = jdbcTemplate.queryForList("SELECT id, user_id, aadhar_number, phone_number FROM customers "
+					+ "WHERE id > ? AND (aadhar_number NOT LIKE ? OR phone_number NOT LIKE ?) ORDER BY id LIMIT "
+					+ BATCH_SIZE, lastId, SEALED_PATTERN, SEALED_PATTERN);
+			for (Map<String, Object> row : rows) {
+				lastId = ((Number) row.get("id")).longValue();
+				long userId = ((Number) row.get("user_id")).longValue();
+				String aadhar = fieldCipher.open((String) row.get("aadhar_number"));
+				String phone = fieldCipher.open((String) row.get("phone_number"));
+
+				String aadharIndex = fieldCipher.aadharIndex(userId, aadhar);
+				String phoneIndex = fieldCipher.phoneIndex(userId, phone);
+				try {
+					update(lastId, aadhar, phone, aadharIndex, phoneIndex);
+				} catch (DuplicateKeyException e) {
+					LOGGER.warn("Customer {} duplicates the Aadhaar number of another customer of user {}", lastId,
+							userId);
+					update(lastId, aadhar, phone, null, phoneIndex);
+				}
+				migrated++;
+			}
+		} while (!rows.isEmpty());
+
+		if (migrated > 0) {
+			LOGGER.info("Sealed and indexed Aadhaar and phone numbers of {} customers", migrated);
+		}
+	}
+
+	private void update(long id, String aadhar, String phone, String aadharIndex, String phoneIndex) {
+		jdbcTemplate.update("UPDATE customers SET aadhar_number = ?, phone_number = ?, aadhar_index = ?, "
+				+ "phone_index = ? WHERE id = ?", fieldCipher.seal(aadhar), fieldCipher.seal(phone), aadharIndex,
+				phoneIndex, id);
+	}
+}
@@ -7,6 +7,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
@@ -17,16 +19,23 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.rtcsoft.sevakendra.dtos.LoginUserDTO;
+import com.rtcsoft.sevakendra.dtos.RefreshTokenDTO;
 import com.rtcsoft.sevakendra.dtos.RegisterUserDTO;
 import com.rtcsoft.sevakendra.entities.User;
+import com.rtcsoft.sevakendra.projections.AuthenticatedUser;
+import com.rtcsoft.sevakendra.repositories.UserRepository;
 import com.rtcsoft.sevakendra.responses.LoginResponse;
+import com.rtcsoft.sevakendra.responses.UserResponse;
 import com.rtcsoft.sevakendra.services.AuthService;
 import com.rtcsoft.sevakendra.services.JwtService;
+import com.rtcsoft.sevakendra.services.PrincipalCache;
+import com.rtcsoft.sevakendra.services.RefreshTokenService;
+import com.rtcsoft.sevakendra.services.RefreshTokenService.Rotation;
 import com.rtcsoft.sevakendra.services.ResetPasswordService;
 import com.rtcsoft.sevakendra.services.TokenBlacklistService;
 
 import jakarta.servlet.http.HttpServletRequest;
-import jakarta.servlet.http.HttpSession;
+import jakarta.validation.Valid;
 
 @RequestMapping("/auth")
 @RestController
@@ -37,12 +46,19 @@ public class AuthController {
 	private final AuthService authService;
 	@Autowired
 	private ResetPasswordService resetPasswordService;
-	@Autowired
-	HttpServletRequest request;
 
 	@Autowired
 	private TokenBlacklistService tokenBlacklistService;
 
+	@Autowired
+	private PrincipalCache principalCache;
+
+	@Autowired
+	private RefreshTokenService refreshTokenService;
+
+	@Autowired
+	private UserRepository userRepository;
+
 	private static final Logger logger = LoggerFactory.getLogger(UserController.class);
 
 	public AuthController(JwtService jwtService, AuthService authService) {
@@ -51,7 +67,7 @@ public class AuthController {
 	}
 
 	@GetMapping("/test")
-	public ResponseEntity<User> test(HttpServletRequest request) throws URISyntaxException {
+	public ResponseEntity<Void> test(HttpServletRequest request) throws URISyntaxException {
 		String urlString = request.getRequestURL().toString();
 		URI uri = new URI(urlString);
 		System.out.println("homeURL" + uri.getHost() + uri.getPort() + "=>" + uri.toString());
@@ -60,53 +76,66 @@ public class AuthController {
 	}
 
 	@PostMapping("/signup")
-	public ResponseEntity<User> register(@RequestBody RegisterUserDTO registerUserDto) {
+	public ResponseEntity<UserResponse> register(@RequestBody RegisterUserDTO registerUserDto) {
 		User registeredUser = authService.signup(registerUserDto);
 
-		return ResponseEntity.ok(registeredUser);
+		return ResponseEntity.ok(UserResponse.of(registeredUser));
 	}
 
 	@PostMapping("/login")
 	public ResponseEntity<LoginResponse> authenticate(@RequestBody LoginUserDTO loginUserDto) {
 		User authenticatedUser = authService.authenticate(loginUserDto);
-		// Store the user ID in session
-		HttpSession session = request.getSession();
 		Long userId = authenticatedUser.getId();
-		System.out.println("Setting Session " + userId);
-		session.setAttribute("userId", userId);
-		session.setAttribute("userName", authenticatedUser.getEmail());
 
-		String jwtToken = jwtService.generateToken(authenticatedUser);
+		String jwtToken = jwtService.generateAccessToken(userId, authenticatedUser);
 
 		LoginResponse loginResponse = new LoginResponse().setToken(jwtToken)
-				.setExpiresIn(jwtService.getExpirationTime()).setUserId(userId);
+				.setRefreshToken(refreshTokenService.issue(userId)).setExpiresIn(jwtService.getExpirationTime())
+				.setUserId(userId);
+
+		return ResponseEntity.ok(loginResponse);
+	}
+
+	/**
+	 * Exchange a refresh token for a new access token and the next refresh token.
+	 * The presented refresh token can not be used again.
+	 */
+	@PostMapping("/refresh")
+	public ResponseEntity<LoginResponse> refresh(@Valid @RequestBody RefreshTokenDTO refreshTokenDto) {
+		Rotation rotation = refreshTokenService.rotate(refreshTokenDto.getRefreshToken());
+		AuthenticatedUser user = userRepository.findPrincipalById(rotation.userId())
+				.orElseThrow(() -> new BadCredentialsException("Invalid refresh token"));
+
+		LoginResponse loginResponse = new LoginResponse()
+				.setToken(jwtService.generateAccessToken(user.id(), user)).setRefreshToken(rotation.refreshToken())
+				.setExpiresIn(jwtService.getExpirationTime()).setUserId(user.id());
 
 		return ResponseEntity.ok(loginResponse);
 	}
 
 	@PostMapping("/logout")
-	public String logout(@RequestHeader("Authorization") String token, HttpSession session) {
+	public String logout(@RequestHeader("Authorization") String token,
+			@RequestBody(required = false) RefreshTokenDTO refreshTokenDto) {
+		if (refreshTokenDto != null && refreshTokenDto.getRefreshToken() != null) {
+			refreshTokenService.revoke(refreshTokenDto.getRefreshToken());
+		}
 		if (token != null && token.startsWith("Bearer ")) {
 			String jwtToken = token.substring(7); // Remove "Bearer " prefix
-			tokenBlacklistService.addTokenToBlacklist(jwtToken);
+			// Already verified by JwtAuthFilter, this is a cache hit
+			tokenBlacklistService.addTokenToBlacklist(jwtService.verify(jwtToken));
+		}
+		if (SecurityContextHolder.getContext().getAuthentication() != null && SecurityContextHolder.getContext()
+				.getAuthentication().getPrincipal() instanceof AuthenticatedUser principal) {
+			principalCache.evict(principal.email());
 		}
 
-		authService.logoutUser(session);
+		authService.logoutUser();
 		return "User logged out successfully";
 	}
 
 	@PostMapping("/forgot-password")
-	public String forgotPassword(@RequestBody LoginUserDTO loginUserDto, HttpServletRequest request)
-			throws URISyntaxException {
-		String response = resetPasswordService.forgotPassword(loginUserDto.getEmail());
-
-		if (!response.startsWith("Invalid")) {
-			String urlString = request.getRequestURL().toString();
-			URI uri = new URI(urlString);
-			String domainUri = uri.getHost() + ":" + uri.getPort();
-			response = "http://" + domainUri + "/auth/reset-password?token=" + response;
-		}
-		return response;
+	public String forgotPassword(@RequestBody LoginUserDTO loginUserDto) {
+		return resetPasswordService.forgotPassword(loginUserDto.getEmail());
 	}
 
 	@PutMapping("/reset-password")
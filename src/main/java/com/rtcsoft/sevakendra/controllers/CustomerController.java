@@ -7,6 +7,7 @@ import java.util.Optional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -14,18 +15,36 @@ import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RequestPart;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
 
+import com.rtcsoft.sevakendra.dtos.CustomerBatchDTO;
 import com.rtcsoft.sevakendra.dtos.CustomerDTO;
-import com.rtcsoft.sevakendra.entities.Customer;
 import com.rtcsoft.sevakendra.exceptions.ApiException;
+import com.rtcsoft.sevakendra.projections.CustomerSummary;
+import com.rtcsoft.sevakendra.responses.BatchResult;
+import com.rtcsoft.sevakendra.responses.CustomerResponse;
+import com.rtcsoft.sevakendra.responses.CustomerSearchHit;
+import com.rtcsoft.sevakendra.responses.ImportReport;
+import com.rtcsoft.sevakendra.services.CustomerBatchService;
+import com.rtcsoft.sevakendra.services.CustomerImportService;
+import com.rtcsoft.sevakendra.services.CustomerPhotoService;
+import com.rtcsoft.sevakendra.responses.PageResponse;
+import com.rtcsoft.sevakendra.responses.PhotoResponse;
+import com.rtcsoft.sevakendra.responses.SyncResponse;
 import com.rtcsoft.sevakendra.services.CustomerService;
 import com.rtcsoft.sevakendra.services.JwtService;
+import com.rtcsoft.sevakendra.services.PhotoStorageService;
+import com.rtcsoft.sevakendra.services.PhotoStorageService.StoredPhoto;
+import com.rtcsoft.sevakendra.services.SyncService;
 
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.validation.Valid;
 import lombok.NonNull;
 
 @RequestMapping("/customer")
@@ -37,6 +56,21 @@ public class CustomerController {
 	@Autowired
 	private final CustomerService customerService;
 
+	@Autowired
+	private CustomerImportService customerImportService;
+
+	@Autowired
+	private PhotoStorageService photoStorageService;
+
+	@Autowired
+	private CustomerPhotoService customerPhotoService;
+
+	@Autowired
+	private SyncService syncService;
+
+	@Autowired
+	private CustomerBatchService customerBatchService;
+
 	private static final Logger logger = LoggerFactory.getLogger(UserController.class);
 
 	@Autowired
@@ -46,30 +80,86 @@ public class CustomerController {
 	}
 
 	@PostMapping(value = "/create", consumes = "multipart/form-data")
-	public ResponseEntity<Customer> create(@ModelAttribute CustomerDTO customer,
+	public ResponseEntity<CustomerResponse> create(@ModelAttribute CustomerDTO customer,
 			@RequestPart("file") MultipartFile file) throws ApiException, IllegalStateException, IOException {
-		return customerService.create(customer, file);
+		// Store the photo before the transaction opens, the row is committed only once the file is durable
+		return customerService.create(customer, photoStorageService.store(file));
 	}
 
 	@PutMapping(value = "/update/{id}", consumes = "multipart/form-data")
-	public ResponseEntity<Customer> update(@ModelAttribute CustomerDTO customer,
+	public ResponseEntity<CustomerResponse> update(@ModelAttribute CustomerDTO customer,
 			@RequestPart(value = "file", required = false) MultipartFile file, @PathVariable long id)
 			throws ApiException, IOException {
-		return customerService.update(customer, file, id);
+		return customerService.update(customer, photoStorageService.store(file), id);
+	}
+
+	@PostMapping(value = "/import", consumes = "multipart/form-data")
+	public ResponseEntity<ImportReport> importCustomers(@RequestPart("file") MultipartFile file)
+			throws ApiException, IOException {
+		return customerImportService.importCustomers(file);
+	}
+
+	@PostMapping("/batch")
+	public ResponseEntity<BatchResult> batch(@Valid @RequestBody CustomerBatchDTO batch)
+			throws ApiException, IOException {
+		return customerBatchService.apply(batch);
+	}
+
+	@PostMapping(value = "/photos", consumes = "multipart/form-data")
+	public ResponseEntity<PhotoResponse> uploadPhoto(@RequestPart("file") MultipartFile file)
+			throws ApiException, IOException {
+		StoredPhoto photo = photoStorageService.store(file);
+		if (photo == null) {
+			throw new ApiException("Photo file is empty");
+		}
+		return ResponseEntity.status(HttpStatus.CREATED).body(new PhotoResponse(photo.hash()));
 	}
 
 	@GetMapping("/list")
-	public ResponseEntity<List<Customer>> list(@NonNull HttpServletRequest request) throws ApiException {
-		return customerService.getAllUsers(request);
+	public ResponseEntity<PageResponse<CustomerSummary>> list(@RequestParam(required = false) String cursor,
+			@RequestParam(required = false) Integer size,
+			@RequestParam(defaultValue = "false") boolean withTotal) throws ApiException {
+		return customerService.getAllUsers(cursor, size, withTotal);
+	}
+
+	@GetMapping("/search")
+	public ResponseEntity<List<CustomerSearchHit>> search(@RequestParam("q") String query,
+			@RequestParam(required = false) Integer limit) {
+		return customerService.search(query, limit);
+	}
+
+	@GetMapping("/lookup")
+	public ResponseEntity<List<CustomerResponse>> lookup(@RequestParam(required = false) String aadhar,
+			@RequestParam(required = false) String phone) throws ApiException {
+		return customerService.lookup(aadhar, phone);
+	}
+
+	@GetMapping("/changes")
+	public ResponseEntity<SyncResponse> changes(@RequestParam(required = false) String since,
+			@RequestParam(required = false) Integer limit) throws ApiException {
+		return syncService.changes(since, limit);
+	}
+
+	@GetMapping("{id}/image")
+	public void image(@NonNull HttpServletRequest request, @NonNull HttpServletResponse response,
+			@PathVariable long id, @RequestParam(defaultValue = "full") String size,
+			@RequestParam(name = "v", required = false) String version) throws ApiException, IOException {
+		customerPhotoService.serveImage(request, response, id, size, version);
+	}
+
+	@PostMapping("{id}/image")
+	public ResponseEntity<CustomerResponse> attachImage(@PathVariable long id, @RequestParam String uploadId)
+			throws ApiException, IOException {
+		return customerPhotoService.attachUpload(id, uploadId);
 	}
 
 	@GetMapping("{id}")
-	public ResponseEntity<Optional<Customer>> getById(@PathVariable Long id) throws ApiException {
+	public ResponseEntity<Optional<CustomerResponse>> getById(@PathVariable Long id) throws ApiException {
 		return customerService.findById(id);
 	}
 
 	@DeleteMapping("{id}")
-	public ResponseEntity<Customer> delete(@PathVariable Long id) throws ApiException {
+	public ResponseEntity<CustomerResponse> delete(@PathVariable Long id) throws ApiException {
 		return customerService.delete(id);
 	}
 }
\ No newline at end of file
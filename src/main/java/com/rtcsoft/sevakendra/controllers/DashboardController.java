@@ -0,0 +1,38 @@
+package com.rtcsoft.sevakendra.controllers;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.rtcsoft.sevakendra.exceptions.ApiException;
+import com.rtcsoft.sevakendra.responses.DailyCount;
+import com.rtcsoft.sevakendra.responses.DashboardSummary;
+import com.rtcsoft.sevakendra.services.DashboardService;
+
+@RequestMapping("/dashboard")
+@RestController
+public class DashboardController {
+
+	@Autowired
+	private DashboardService dashboardService;
+
+	@GetMapping("/summary")
+	public ResponseEntity<DashboardSummary> summary() {
+		return dashboardService.summary();
+	}
+
+	@GetMapping("/daily")
+	public ResponseEntity<List<DailyCount>> daily(
+			@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+			@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to)
+			throws ApiException {
+		return dashboardService.daily(from, to);
+	}
+}
@@ -1,10 +1,10 @@
 package com.rtcsoft.sevakendra.controllers;
 
 import java.io.IOException;
-import java.util.List;
 import java.util.Optional;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.Resource;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -13,11 +13,14 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.rtcsoft.sevakendra.dtos.CustomerDocumentDTO;
-import com.rtcsoft.sevakendra.entities.CustomerDocument;
 import com.rtcsoft.sevakendra.exceptions.ApiException;
+import com.rtcsoft.sevakendra.projections.CustomerDocumentSummary;
+import com.rtcsoft.sevakendra.responses.CustomerDocumentResponse;
+import com.rtcsoft.sevakendra.responses.PageResponse;
 import com.rtcsoft.sevakendra.services.DocxTemplateService;
 import com.rtcsoft.sevakendra.services.JwtService;
 
@@ -40,24 +43,31 @@ public class DocxTemplateController {
 	}
 
 	@PostMapping(value = "/generate", produces = MediaType.APPLICATION_JSON_VALUE)
-	public ResponseEntity<CustomerDocument> generate(@Valid @RequestBody CustomerDocumentDTO customerDocument)
+	public ResponseEntity<CustomerDocumentResponse> generate(@Valid @RequestBody CustomerDocumentDTO customerDocument)
 			throws ApiException, IOException {
 
 		return docService.createOrUpdate(customerDocument);
 	}
 
 	@GetMapping("/list")
-	public ResponseEntity<List<CustomerDocument>> list() throws ApiException {
-		return docService.getAllDocuments();
+	public ResponseEntity<PageResponse<CustomerDocumentSummary>> list(@RequestParam(required = false) String cursor,
+			@RequestParam(required = false) Integer size, @RequestParam(defaultValue = "false") boolean withTotal)
+			throws ApiException {
+		return docService.getAllDocuments(cursor, size, withTotal);
 	}
 
 	@GetMapping("{id}")
-	public ResponseEntity<Optional<CustomerDocument>> getById(@PathVariable Long id) {
+	public ResponseEntity<Optional<CustomerDocumentResponse>> getById(@PathVariable Long id) {
 		return docService.findById(id);
 	}
 
+	@GetMapping("{id}/content")
+	public ResponseEntity<Resource> getContent(@PathVariable Long id) throws IOException {
+		return docService.getContent(id);
+	}
+
 	@DeleteMapping("{id}")
-	public ResponseEntity<CustomerDocument> delete(@PathVariable Long id) throws ApiException {
+	public ResponseEntity<CustomerDocumentResponse> delete(@PathVariable Long id) throws ApiException {
 		return docService.delete(id);
 	}
 }
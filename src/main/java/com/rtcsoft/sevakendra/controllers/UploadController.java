@@ -0,0 +1,82 @@
+package com.rtcsoft.sevakendra.controllers;
+
+import java.io.IOException;
+import java.net.URI;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import com.rtcsoft.sevakendra.exceptions.ApiException;
+import com.rtcsoft.sevakendra.services.SharedService;
+import com.rtcsoft.sevakendra.services.UploadService;
+import com.rtcsoft.sevakendra.services.UploadService.UploadState;
+
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.NonNull;
+
+/**
+ * Resumable upload endpoints following the tus 1.0 core protocol: POST creates
+ * an upload, HEAD reports how much the server has, PATCH appends from there.
+ */
+@RequestMapping("/uploads")
+@RestController
+public class UploadController {
+	private static final String TUS_RESUMABLE = "Tus-Resumable";
+	private static final String TUS_VERSION = "1.0.0";
+	private static final String UPLOAD_OFFSET = "Upload-Offset";
+	private static final String UPLOAD_LENGTH = "Upload-Length";
+
+	@Autowired
+	private UploadService uploadService;
+
+	@Autowired
+	private SharedService sharedService;
+
+	@PostMapping
+	public ResponseEntity<Void> create(@RequestHeader(UPLOAD_LENGTH) long length,
+			@RequestHeader(value = "Upload-Metadata", required = false) String metadata)
+			throws ApiException, IOException {
+		UploadState state = uploadService.create(sharedService.getAuthUserId(), length, metadata);
+		URI location = ServletUriComponentsBuilder.fromCurrentRequest().path("/{id}").buildAndExpand(state.id())
+				.toUri();
+		return ResponseEntity.created(location).header(TUS_RESUMABLE, TUS_VERSION)
+				.header(UPLOAD_OFFSET, Long.toString(state.offset())).build();
+	}
+
+	@RequestMapping(value = "{id}", method = RequestMethod.HEAD)
+	public ResponseEntity<Void> offset(@PathVariable String id)
+			throws ApiException, IOException {
+		UploadState state = uploadService.find(sharedService.getAuthUserId(), id);
+		return ResponseEntity.ok().cacheControl(CacheControl.noStore()).header(TUS_RESUMABLE, TUS_VERSION)
+				.header(UPLOAD_OFFSET, Long.toString(state.offset()))
+				.header(UPLOAD_LENGTH, Long.toString(state.length())).build();
+	}
+
+	@PatchMapping(value = "{id}", consumes = "application/offset+octet-stream")
+	public ResponseEntity<Void> write(@NonNull HttpServletRequest request, @PathVariable String id,
+			@RequestHeader(UPLOAD_OFFSET) long offset) throws ApiException, IOException {
+		// Read straight from the request, nothing buffers the body in memory
+		UploadState state = uploadService.write(sharedService.getAuthUserId(), id, offset,
+				request.getInputStream());
+		return ResponseEntity.noContent().header(TUS_RESUMABLE, TUS_VERSION)
+				.header(UPLOAD_OFFSET, Long.toString(state.offset())).build();
+	}
+
+	@DeleteMapping("{id}")
+	public ResponseEntity<Void> delete(@PathVariable String id)
+			throws ApiException, IOException {
+		UploadState state = uploadService.find(sharedService.getAuthUserId(), id);
+		uploadService.delete(state.id());
+		return ResponseEntity.noContent().header(TUS_RESUMABLE, TUS_VERSION).build();
+	}
+}
@@ -9,7 +9,8 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
-import com.rtcsoft.sevakendra.entities.User;
+import com.rtcsoft.sevakendra.projections.AuthenticatedUser;
+import com.rtcsoft.sevakendra.responses.UserResponse;
 import com.rtcsoft.sevakendra.services.UserService;
 
 @RequestMapping("/users")
@@ -26,17 +27,17 @@ public class UserController {
 	}
 
 	@GetMapping("/me")
-	public ResponseEntity<User> authenticatedUser() {
+	public ResponseEntity<AuthenticatedUser> authenticatedUser() {
 		Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
 
-		User currentUser = (User) authentication.getPrincipal();
+		AuthenticatedUser currentUser = (AuthenticatedUser) authentication.getPrincipal();
 
 		return ResponseEntity.ok(currentUser);
 	}
 
 	@GetMapping("/")
-	public ResponseEntity<List<User>> allUsers() {
-		List<User> users = userService.allUsers();
+	public ResponseEntity<List<UserResponse>> allUsers() {
+		List<UserResponse> users = userService.allUsers();
 
 		return ResponseEntity.ok(users);
 	}
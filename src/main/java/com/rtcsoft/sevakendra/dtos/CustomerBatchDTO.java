@@ -0,0 +1,46 @@
+package com.rtcsoft.sevakendra.dtos;
+
+import java.util.List;
+
+import com.rtcsoft.sevakendra.enums.BatchOperationType;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+public class CustomerBatchDTO {
+
+	@NotEmpty(message = "At least one operation is required!")
+	private List<Operation> operations;
+
+	@Data
+	@AllArgsConstructor
+	@NoArgsConstructor
+	@Getter
+	@Setter
+	public static class Operation {
+
+		@NotNull(message = "Operation type is required!")
+		private BatchOperationType op;
+
+		// Echoed back in the result so the client can match its offline record
+		private String clientRef;
+
+		// Customer id for update and delete
+		private Long id;
+
+		private CustomerDTO customer;
+
+		// SHA-256 of a photo uploaded earlier
+		private String imageHash;
+	}
+}
@@ -0,0 +1,14 @@
+package com.rtcsoft.sevakendra.dtos;
+
+import jakarta.validation.constraints.NotBlank;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class RefreshTokenDTO {
+	@NotBlank(message = "Refresh token is required!")
+	private String refreshToken;
+}
@@ -5,11 +5,20 @@ import java.time.LocalDateTime;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.rtcsoft.sevakendra.utils.TextNormalizer;
+
 import jakarta.persistence.Column;
+import jakarta.persistence.Convert;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
@@ -25,10 +34,17 @@ import lombok.Setter;
 @Entity
 @Getter
 @Setter
-@Table(name = "customers")
+@Table(name = "customers", indexes = {
+		@Index(name = "idx_customers_user_updated", columnList = "userId, updatedAt, id"),
+		@Index(name = "uk_customers_user_name_key", columnList = "userId, nameKey", unique = true),
+		@Index(name = "uk_customers_user_aadhar_index", columnList = "userId, aadharIndex", unique = true),
+		@Index(name = "idx_customers_user_phone_index", columnList = "userId, phoneIndex"),
+		@Index(name = "idx_customers_image_hash", columnList = "imageHash") })
+@EntityListeners(CustomerBlindIndexListener.class)
 public class Customer {
 	@Id
-	@GeneratedValue(strategy = GenerationType.AUTO)
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "customers_id_seq")
+	@SequenceGenerator(name = "customers_id_seq", sequenceName = "customers_id_seq", allocationSize = 100)
 	@NotNull
 	@Column
 	private Long id;
@@ -44,6 +60,10 @@ public class Customer {
 	@Column(length = 50)
 	private String lastName;
 
+	// Normalized first|middle|last name, unique per user
+	@Column(length = 255)
+	private String nameKey;
+
 	@Column(length = 10)
 	private String age;
 
@@ -56,11 +76,22 @@ public class Customer {
 	@Column(length = 20)
 	private String place;
 
-	@Column(length = 20)
-	private String aadharNumber;
+	@Convert(converter = SealedStringConverter.class)
+	@Column(length = 100)
+	private SealedString aadharNumber;
 
-	@Column(length = 20)
-	private String phoneNumber;
+	@Convert(converter = SealedStringConverter.class)
+	@Column(length = 100)
+	private SealedString phoneNumber;
+
+	// Blind indexes for exact lookups, see FieldCipher
+	@JsonIgnore
+	@Column(length = 64)
+	private String aadharIndex;
+
+	@JsonIgnore
+	@Column(length = 64)
+	private String phoneIndex;
 
 	@Column(length = 255)
 	private String address;
@@ -71,6 +102,10 @@ public class Customer {
 	@Column
 	private String image;
 
+	// SHA-256 of the photo content, names the file in the photo store
+	@Column(length = 64)
+	private String imageHash;
+
 	@NotNull
 	@Column
 	private Long userId;
@@ -82,4 +117,10 @@ public class Customer {
 	@UpdateTimestamp
 	@Column
 	private LocalDateTime updatedAt;
+
+	@PrePersist
+	@PreUpdate
+	void computeNameKey() {
+		nameKey = TextNormalizer.nameKey(firstName, middleName, lastName);
+	}
 }
\ No newline at end of file
@@ -0,0 +1,30 @@
+package com.rtcsoft.sevakendra.entities;
+
+import org.springframework.stereotype.Component;
+
+import com.rtcsoft.sevakendra.services.FieldCipher;
+
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+
+/**
+ * Keeps the blind index columns of a customer in step with its Aadhaar and
+ * phone number on every write path.
+ */
+@Component
+public class CustomerBlindIndexListener {
+
+	private final FieldCipher fieldCipher;
+
+	public CustomerBlindIndexListener(FieldCipher fieldCipher) {
+		this.fieldCipher = fieldCipher;
+	}
+
+	@PrePersist
+	@PreUpdate
+	void computeIndexes(Customer customer) {
+		long userId = customer.getUserId();
+		customer.setAadharIndex(fieldCipher.aadharIndex(userId, SealedString.reveal(customer.getAadharNumber())));
+		customer.setPhoneIndex(fieldCipher.phoneIndex(userId, SealedString.reveal(customer.getPhoneNumber())));
+	}
+}
@@ -10,6 +10,8 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
@@ -25,10 +27,12 @@ import lombok.Setter;
 @Entity
 @Getter
 @Setter
-@Table(name = "customer_documents")
+@Table(name = "customer_documents", indexes = {
+		@Index(name = "idx_customer_documents_user_updated", columnList = "userId, updatedAt, id") })
 public class CustomerDocument {
 	@Id
-	@GeneratedValue(strategy = GenerationType.AUTO)
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "customer_documents_id_seq")
+	@SequenceGenerator(name = "customer_documents_id_seq", sequenceName = "customer_documents_id_seq", allocationSize = 100)
 	@Column(nullable = false)
 	private Integer id;
 
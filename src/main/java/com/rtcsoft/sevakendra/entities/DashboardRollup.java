@@ -0,0 +1,50 @@
+package com.rtcsoft.sevakendra.entities;
+
+import com.rtcsoft.sevakendra.enums.RollupDimension;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * One dashboard counter of a user, e.g. customers with place "Nanded". Kept
+ * current by upserts from each write and rebuilt nightly.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Getter
+@Setter
+@Table(name = "dashboard_rollups", indexes = {
+		@Index(name = "uk_dashboard_rollups_key", columnList = "userId, dimension, dimValue", unique = true) })
+public class DashboardRollup {
+	@Id
+	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	@Column(nullable = false)
+	private Long id;
+
+	@Column(nullable = false)
+	private long userId;
+
+	@Enumerated(EnumType.STRING)
+	@Column(nullable = false, length = 32)
+	private RollupDimension dimension;
+
+	@Column(nullable = false, length = 255)
+	private String dimValue;
+
+	@Column(nullable = false)
+	private long total;
+}
@@ -0,0 +1,67 @@
+package com.rtcsoft.sevakendra.entities;
+
+import java.time.LocalDateTime;
+
+import com.rtcsoft.sevakendra.enums.MailStatus;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Email written in the same transaction as the change it reports and sent
+ * later by {@link com.rtcsoft.sevakendra.services.MailOutboxService}.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Getter
+@Setter
+@Table(name = "mail_outbox", indexes = {
+		@Index(name = "idx_mail_outbox_due", columnList = "status, nextAttemptAt, id") })
+public class OutboxMail {
+	@Id
+	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	@Column(nullable = false)
+	private Long id;
+
+	@Column(nullable = false, length = 255)
+	private String recipient;
+
+	@Column(nullable = false, length = 255)
+	private String subject;
+
+	@Column(nullable = false, columnDefinition = "TEXT")
+	private String body;
+
+	@Enumerated(EnumType.STRING)
+	@Column(nullable = false, length = 16)
+	private MailStatus status;
+
+	@Column(nullable = false)
+	private int attempts;
+
+	@Column(nullable = false)
+	private LocalDateTime nextAttemptAt;
+
+	@Column(nullable = false)
+	private LocalDateTime createdAt;
+
+	@Column
+	private LocalDateTime sentAt;
+
+	@Column(length = 500)
+	private String lastError;
+}
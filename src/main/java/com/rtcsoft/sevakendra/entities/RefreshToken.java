@@ -0,0 +1,60 @@
+package com.rtcsoft.sevakendra.entities;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * One refresh token of a login. Only the SHA-256 of the token is stored. Each
+ * refresh rotates the token within its family, and presenting a rotated token
+ * again revokes the whole family.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Getter
+@Setter
+@Table(name = "refresh_tokens", indexes = {
+		@Index(name = "uk_refresh_tokens_token_hash", columnList = "tokenHash", unique = true),
+		@Index(name = "idx_refresh_tokens_family_id", columnList = "familyId"),
+		@Index(name = "idx_refresh_tokens_expires_at", columnList = "expiresAt") })
+public class RefreshToken {
+	@Id
+	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	@Column(nullable = false)
+	private Long id;
+
+	@Column(nullable = false)
+	private long userId;
+
+	@Column(nullable = false, length = 36)
+	private String familyId;
+
+	@Column(nullable = false, length = 64)
+	private String tokenHash;
+
+	@Column(nullable = false)
+	private LocalDateTime expiresAt;
+
+	@Column(nullable = false)
+	private LocalDateTime createdAt;
+
+	// Set once the token has been exchanged for the next one
+	@Column
+	private LocalDateTime rotatedAt;
+
+	@Column
+	private LocalDateTime revokedAt;
+}
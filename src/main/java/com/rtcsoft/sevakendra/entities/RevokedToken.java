@@ -0,0 +1,47 @@
+package com.rtcsoft.sevakendra.entities;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Access token revoked before its exp, shared by every node through polling.
+ * Rows are deleted once the token has expired anyway.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Getter
+@Setter
+@Table(name = "revoked_tokens", indexes = {
+		@Index(name = "uk_revoked_tokens_token_id", columnList = "tokenId", unique = true),
+		@Index(name = "idx_revoked_tokens_revoked_at", columnList = "revokedAt"),
+		@Index(name = "idx_revoked_tokens_expires_at", columnList = "expiresAt") })
+public class RevokedToken {
+	// Auto increment lets nodes poll for rows they have not seen
+	@Id
+	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	@Column(nullable = false)
+	private Long id;
+
+	@Column(nullable = false, length = 64)
+	private String tokenId;
+
+	@Column(nullable = false)
+	private LocalDateTime expiresAt;
+
+	@Column(nullable = false)
+	private LocalDateTime revokedAt;
+}
@@ -0,0 +1,79 @@
+package com.rtcsoft.sevakendra.entities;
+
+import java.util.Objects;
+
+import org.hibernate.annotations.Immutable;
+
+import com.fasterxml.jackson.annotation.JsonValue;
+import com.rtcsoft.sevakendra.services.FieldCipher;
+
+/**
+ * A value stored encrypted. A loaded value keeps its ciphertext and is only
+ * decrypted, once, when {@link #reveal()} is called, e.g. when it is written
+ * to a JSON response. An unchanged value is written back with its original
+ * ciphertext.
+ */
+@Immutable
+public final class SealedString {
+
+	private final String sealed;
+	private final FieldCipher cipher;
+	private volatile String plain;
+
+	private SealedString(String sealed, FieldCipher cipher, String plain) {
+		this.sealed = sealed;
+		this.cipher = cipher;
+		this.plain = plain;
+	}
+
+	public static SealedString of(String plain) {
+		return plain == null ? null : new SealedString(null, null, plain);
+	}
+
+	static SealedString sealed(String sealed, FieldCipher cipher) {
+		return new SealedString(sealed, cipher, null);
+	}
+
+	public static String reveal(SealedString value) {
+		return value == null ? null : value.reveal();
+	}
+
+	@JsonValue
+	public String reveal() {
+		String value = plain;
+		if (value == null) {
+			value = cipher.open(sealed);
+			plain = value;
+		}
+		return value;
+	}
+
+	String sealWith(FieldCipher fieldCipher) {
+		return sealed != null ? sealed : fieldCipher.seal(plain);
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if (this == other) {
+			return true;
+		}
+		if (!(other instanceof SealedString that)) {
+			return false;
+		}
+		if (sealed != null && sealed.equals(that.sealed)) {
+			return true;
+		}
+		return Objects.equals(reveal(), that.reveal());
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hashCode(reveal());
+	}
+
+	// Never put the value in logs
+	@Override
+	public String toString() {
+		return "****";
+	}
+}
@@ -0,0 +1,37 @@
+package com.rtcsoft.sevakendra.entities;
+
+import org.springframework.stereotype.Component;
+
+import com.rtcsoft.sevakendra.services.FieldCipher;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+/**
+ * Maps {@link SealedString} to its ciphertext column. Rows written before
+ * encryption hold plain text, they are read as is and sealed on the next
+ * write.
+ */
+@Component
+@Converter
+public class SealedStringConverter implements AttributeConverter<SealedString, String> {
+
+	private final FieldCipher fieldCipher;
+
+	public SealedStringConverter(FieldCipher fieldCipher) {
+		this.fieldCipher = fieldCipher;
+	}
+
+	@Override
+	public String convertToDatabaseColumn(SealedString value) {
+		return value == null ? null : value.sealWith(fieldCipher);
+	}
+
+	@Override
+	public SealedString convertToEntityAttribute(String column) {
+		if (column == null) {
+			return null;
+		}
+		return fieldCipher.isSealed(column) ? SealedString.sealed(column, fieldCipher) : SealedString.of(column);
+	}
+}
@@ -0,0 +1,59 @@
+package com.rtcsoft.sevakendra.entities;
+
+import java.time.LocalDateTime;
+
+import com.rtcsoft.sevakendra.enums.SyncEntityType;
+import com.rtcsoft.sevakendra.enums.SyncOperation;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Outbox row written in the same transaction as each customer or document
+ * change. The id is the sync position handed to clients, rows are only
+ * inserted and pruned after the retention period.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Getter
+@Setter
+@Table(name = "sync_changes", indexes = { @Index(name = "idx_sync_changes_user_id", columnList = "userId, id"),
+		@Index(name = "idx_sync_changes_changed_at", columnList = "changedAt") })
+public class SyncChange {
+	// Auto increment keeps positions in insert order
+	@Id
+	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	@Column(nullable = false)
+	private Long id;
+
+	@Column(nullable = false)
+	private long userId;
+
+	@Enumerated(EnumType.STRING)
+	@Column(nullable = false, length = 16)
+	private SyncEntityType entityType;
+
+	@Column(nullable = false)
+	private long entityId;
+
+	@Enumerated(EnumType.STRING)
+	@Column(nullable = false, length = 16)
+	private SyncOperation op;
+
+	@Column(nullable = false)
+	private LocalDateTime changedAt;
+}
@@ -15,11 +15,13 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
 import lombok.Getter;
 import lombok.Setter;
 
-@Table(name = "users")
+@Table(name = "users", indexes = { @Index(name = "uk_users_token", columnList = "token", unique = true) })
 @Entity
 @Getter
 @Setter
@@ -27,7 +29,8 @@ public class User implements UserDetails {
 	private static final long serialVersionUID = 1L;
 
 	@Id
-	@GeneratedValue(strategy = GenerationType.AUTO)
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "users_id_seq")
+	@SequenceGenerator(name = "users_id_seq", sequenceName = "users_id_seq", allocationSize = 50)
 	@Column(nullable = false)
 	private Long id;
 
@@ -40,7 +43,8 @@ public class User implements UserDetails {
 	@Column(nullable = false)
 	private String password;
 
-	@Column(nullable = true)
+	// SHA-256 of the password reset token, the token itself is only in the mail
+	@Column(nullable = true, length = 64)
 	private String token;
 
 	@Column(columnDefinition = "TIMESTAMP")
@@ -0,0 +1,5 @@
+package com.rtcsoft.sevakendra.enums;
+
+public enum BatchOperationType {
+	CREATE, UPDATE, DELETE
+}
@@ -0,0 +1,24 @@
+package com.rtcsoft.sevakendra.enums;
+
+import java.util.Locale;
+
+/**
+ * Scaled copies kept next to each stored photo, bounded by the longest side.
+ */
+public enum PhotoVariant {
+	THUMB(160), MEDIUM(800);
+
+	private final int maxSide;
+
+	PhotoVariant(int maxSide) {
+		this.maxSide = maxSide;
+	}
+
+	public int getMaxSide() {
+		return maxSide;
+	}
+
+	public String key() {
+		return name().toLowerCase(Locale.ROOT);
+	}
+}
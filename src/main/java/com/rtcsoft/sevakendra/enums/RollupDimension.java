@@ -0,0 +1,10 @@
+package com.rtcsoft.sevakendra.enums;
+
+/**
+ * What a dashboard counter groups by. Totals use an empty value, days are ISO
+ * dates so a date range is an index range.
+ */
+public enum RollupDimension {
+	CUSTOMER_TOTAL, CUSTOMER_CAST, CUSTOMER_OCCUPATION, CUSTOMER_PLACE, CUSTOMER_DAY, DOCUMENT_TOTAL, DOCUMENT_TYPE,
+	DOCUMENT_DAY
+}
@@ -0,0 +1,5 @@
+package com.rtcsoft.sevakendra.enums;
+
+public enum SyncOperation {
+	UPSERT, DELETE
+}
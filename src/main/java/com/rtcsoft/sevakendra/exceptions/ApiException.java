@@ -4,7 +4,19 @@ package com.rtcsoft.sevakendra.exceptions;
 public class ApiException extends Exception {
 	private static final long serialVersionUID = 1L;
 
+	// Answered as 500 unless the thrower knows better
+	private final int status;
+
 	public ApiException(String message) {
+		this(500, message);
+	}
+
+	public ApiException(int status, String message) {
 		super(message);
+		this.status = status;
+	}
+
+	public int getStatus() {
+		return status;
 	}
 }
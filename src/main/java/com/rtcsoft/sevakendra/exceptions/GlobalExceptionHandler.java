@@ -1,5 +1,10 @@
 package com.rtcsoft.sevakendra.exceptions;
 
+import java.util.Map;
+
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatusCode;
 import org.springframework.http.ProblemDetail;
 import org.springframework.security.access.AccessDeniedException;
@@ -11,10 +16,17 @@ import org.springframework.web.bind.annotation.RestControllerAdvice;
 import io.jsonwebtoken.ExpiredJwtException;
 import io.jsonwebtoken.security.SignatureException;
 
+import jakarta.servlet.http.HttpServletResponse;
+
 @RestControllerAdvice
 public class GlobalExceptionHandler {
+	// Unique indexes a concurrent write can hit after the service checked them, same messages as the checks
+	private static final Map<String, String> DUPLICATE_MESSAGES = Map.of(
+			"uk_customers_user_name_key", "Customer already exists with this name",
+			"uk_customers_user_aadhar_index", "Customer already exists with this Aadhaar number");
+
 	@ExceptionHandler(Exception.class)
-	public ProblemDetail handleSecurityException(Exception exception) {
+	public ProblemDetail handleSecurityException(Exception exception, HttpServletResponse response) {
 		ProblemDetail errorDetail = null;
 
 		// TODO send this stack trace to an observability tool
@@ -47,6 +59,28 @@ public class GlobalExceptionHandler {
 			errorDetail.setProperty("description", "The JWT token has expired");
 		}
 
+		if (exception instanceof UploadException uploadException) {
+			errorDetail = ProblemDetail.forStatusAndDetail(HttpStatusCode.valueOf(uploadException.getStatus()),
+					exception.getMessage());
+			errorDetail.setProperty("description", "The upload request does not match the upload state");
+		} else if (exception instanceof ApiException apiException && apiException.getStatus() != 500) {
+			errorDetail = ProblemDetail.forStatusAndDetail(HttpStatusCode.valueOf(apiException.getStatus()),
+					exception.getMessage());
+			errorDetail.setProperty("description", "The request can not be completed");
+		}
+
+		String duplicate = duplicateMessage(exception);
+		if (duplicate != null) {
+			errorDetail = ProblemDetail.forStatusAndDetail(HttpStatusCode.valueOf(409), duplicate);
+			errorDetail.setProperty("description", "The change conflicts with a stored record");
+		}
+
+		if (exception instanceof ServiceBusyException busyException) {
+			response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(busyException.getRetryAfterSeconds()));
+			errorDetail = ProblemDetail.forStatusAndDetail(HttpStatusCode.valueOf(503), exception.getMessage());
+			errorDetail.setProperty("description", "The server is busy, try again later");
+		}
+
 		if (errorDetail == null) {
 			errorDetail = ProblemDetail.forStatusAndDetail(HttpStatusCode.valueOf(500), exception.getMessage());
 			errorDetail.setProperty("description", "Unknown internal server error.");
@@ -54,4 +88,26 @@ public class GlobalExceptionHandler {
 
 		return errorDetail;
 	}
+
+	/**
+	 * @return the message for a unique key violation, null for every other
+	 *         integrity error (not null, too long, foreign key), those are not
+	 *         conflicts
+	 */
+	private static String duplicateMessage(Exception exception) {
+		String constraint = null;
+		for (Throwable cause = exception; cause != null && constraint == null; cause = cause.getCause()) {
+			if (cause instanceof ConstraintViolationException violation) {
+				constraint = violation.getConstraintName();
+			}
+		}
+		String source = constraint != null ? constraint : String.valueOf(exception.getMessage());
+		String known = DUPLICATE_MESSAGES.entrySet().stream().filter(entry -> source.contains(entry.getKey()))
+				.map(Map.Entry::getValue).findFirst().orElse(null);
+		if (exception instanceof DuplicateKeyException) {
+			return known != null ? known : "The change conflicts with a stored record";
+		}
+		// Only constraints known to be unique keys, see DUPLICATE_MESSAGES
+		return constraint != null ? known : null;
+	}
 }
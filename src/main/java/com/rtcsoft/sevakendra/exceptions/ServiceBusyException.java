@@ -0,0 +1,17 @@
+package com.rtcsoft.sevakendra.exceptions;
+
+//This exception is thrown when a bounded resource is saturated and the client should retry later.
+public class ServiceBusyException extends RuntimeException {
+	private static final long serialVersionUID = 1L;
+
+	private final long retryAfterSeconds;
+
+	public ServiceBusyException(String message, long retryAfterSeconds) {
+		super(message);
+		this.retryAfterSeconds = retryAfterSeconds;
+	}
+
+	public long getRetryAfterSeconds() {
+		return retryAfterSeconds;
+	}
+}
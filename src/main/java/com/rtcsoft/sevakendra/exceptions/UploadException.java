@@ -0,0 +1,10 @@
+package com.rtcsoft.sevakendra.exceptions;
+
+//This exception is thrown when a resumable upload request does not fit the state of the upload.
+public class UploadException extends ApiException {
+	private static final long serialVersionUID = 1L;
+
+	public UploadException(int status, String message) {
+		super(status, message);
+	}
+}
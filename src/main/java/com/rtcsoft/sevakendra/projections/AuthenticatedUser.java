@@ -0,0 +1,59 @@
+package com.rtcsoft.sevakendra.projections;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+/**
+ * Principal of a request authenticated by its bearer token. Only the columns
+ * the API needs are loaded, the password hash never leaves the login path.
+ */
+public record AuthenticatedUser(long id, String fullName, String email) implements UserDetails {
+	private static final long serialVersionUID = 1L;
+
+	@JsonIgnore
+	@Override
+	public Collection<? extends GrantedAuthority> getAuthorities() {
+		return List.of();
+	}
+
+	@JsonIgnore
+	@Override
+	public String getPassword() {
+		return null;
+	}
+
+	@JsonIgnore
+	@Override
+	public String getUsername() {
+		return email;
+	}
+
+	@JsonIgnore
+	@Override
+	public boolean isAccountNonExpired() {
+		return true;
+	}
+
+	@JsonIgnore
+	@Override
+	public boolean isAccountNonLocked() {
+		return true;
+	}
+
+	@JsonIgnore
+	@Override
+	public boolean isCredentialsNonExpired() {
+		return true;
+	}
+
+	@JsonIgnore
+	@Override
+	public boolean isEnabled() {
+		return true;
+	}
+}
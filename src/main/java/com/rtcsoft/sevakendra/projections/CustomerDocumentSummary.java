@@ -0,0 +1,11 @@
+package com.rtcsoft.sevakendra.projections;
+
+import java.time.LocalDateTime;
+
+/**
+ * Columns needed by the document list screen, filled by a constructor
+ * expression so no entity or proxy is created per row
+ */
+public record CustomerDocumentSummary(Integer id, long customerId, String docName, String thumbnail,
+		Boolean isActive, LocalDateTime updatedAt) {
+}
@@ -0,0 +1,13 @@
+package com.rtcsoft.sevakendra.projections;
+
+import java.time.LocalDateTime;
+
+import com.rtcsoft.sevakendra.entities.SealedString;
+
+/**
+ * Columns needed by the customer list screen, filled by a constructor
+ * expression so no entity or proxy is created per row
+ */
+public record CustomerSummary(Long id, String firstName, String middleName, String lastName, String age,
+		String place, SealedString phoneNumber, Boolean isActive, String imageHash, LocalDateTime updatedAt) {
+}
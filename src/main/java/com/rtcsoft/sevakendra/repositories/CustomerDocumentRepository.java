@@ -1,13 +1,17 @@
 package com.rtcsoft.sevakendra.repositories;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.stereotype.Repository;
 
 import com.rtcsoft.sevakendra.entities.CustomerDocument;
+import com.rtcsoft.sevakendra.projections.CustomerDocumentSummary;
 
 @Repository
 public interface CustomerDocumentRepository extends CrudRepository<CustomerDocument, Long> {
@@ -15,7 +19,7 @@ public interface CustomerDocumentRepository extends CrudRepository<CustomerDocum
 
 	List<CustomerDocument> findByUserId(long userId);
 
-	@Query("SELECT c FROM Customer c WHERE c.id = ?1 AND c.userId = ?2")
+	@Query("SELECT d FROM CustomerDocument d WHERE d.id = ?1 AND d.userId = ?2")
 	Optional<CustomerDocument> findWithUserId(long id, long userId);
 
 	@Override
@@ -23,6 +27,23 @@ public interface CustomerDocumentRepository extends CrudRepository<CustomerDocum
 
 	List<CustomerDocument> findAllByUserId(Long userId);
 
+	String SUMMARY_SELECT = "SELECT new com.rtcsoft.sevakendra.projections.CustomerDocumentSummary(d.id, "
+			+ "d.customerId, d.docName, d.thumbnail, d.isActive, d.updatedAt) FROM CustomerDocument d ";
+
+	// Keyset pages over (userId, updatedAt, id), see idx_customer_documents_user_updated
+	@Query(SUMMARY_SELECT + "WHERE d.userId = ?1 ORDER BY d.updatedAt DESC, d.id DESC")
+	List<CustomerDocumentSummary> findPageByUserId(long userId, Pageable pageable);
+
+	@Query(SUMMARY_SELECT + "WHERE d.userId = ?1 "
+			+ "AND (d.updatedAt < ?2 OR (d.updatedAt = ?2 AND d.id < ?3)) ORDER BY d.updatedAt DESC, d.id DESC")
+	List<CustomerDocumentSummary> findPageByUserIdAfter(long userId, LocalDateTime updatedAt, Integer id,
+			Pageable pageable);
+
+	@Query(SUMMARY_SELECT + "WHERE d.userId = ?1 AND d.id IN ?2")
+	List<CustomerDocumentSummary> findSummariesByUserIdAndIdIn(long userId, Collection<Integer> ids);
+
+	long countByUserId(long userId);
+
 	void deleteById(long id);
 
 }
\ No newline at end of file
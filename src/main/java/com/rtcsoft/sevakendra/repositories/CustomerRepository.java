@@ -1,20 +1,21 @@
 package com.rtcsoft.sevakendra.repositories;
 
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.stereotype.Repository;
 
 import com.rtcsoft.sevakendra.entities.Customer;
+import com.rtcsoft.sevakendra.projections.CustomerSummary;
 
 @Repository
 public interface CustomerRepository extends CrudRepository<Customer, Long> {
-	@Query("SELECT c FROM Customer c WHERE c.firstName = ?1 AND c.middleName = ?2 AND c.lastName = ?3")
-	ArrayList<Customer> findByFullName(String firstName, String middleName, String lastName);
-
 	Optional<Customer> findById(long id);
 
 	@Override
@@ -22,12 +23,58 @@ public interface CustomerRepository extends CrudRepository<Customer, Long> {
 
 	void deleteById(long id);
 
-	@Query("SELECT c FROM Customer c WHERE c.firstName = ?1 AND c.middleName = ?2 AND c.lastName = ?3 AND c.id != id")
-	ArrayList<Customer> findByFullNameExcludingMe(long id, String fname, String mname, String lname);
+	// Duplicate checks, see uk_customers_user_name_key
+	boolean existsByUserIdAndNameKey(Long userId, String nameKey);
+
+	boolean existsByUserIdAndNameKeyAndIdNot(Long userId, String nameKey, Long id);
+
+	@Query("SELECT c.nameKey FROM Customer c WHERE c.userId = ?1 AND c.nameKey IS NOT NULL")
+	List<String> findNameKeysByUserId(Long userId);
+
+	@Query("SELECT c.nameKey FROM Customer c WHERE c.userId = ?1 AND c.nameKey IN ?2")
+	List<String> findExistingNameKeys(Long userId, Collection<String> nameKeys);
+
+	List<Customer> findByUserIdAndNameKeyIn(Long userId, Collection<String> nameKeys);
+
+	List<Customer> findTop500ByNameKeyIsNullAndIdGreaterThanOrderByIdAsc(Long id);
 
 	// @Query("SELECT c FROM Customer c WHERE c.userId = ?1")
 	ArrayList<Customer> findAllByUserId(Long userId);
 
+	String SUMMARY_SELECT = "SELECT new com.rtcsoft.sevakendra.projections.CustomerSummary(c.id, c.firstName, "
+			+ "c.middleName, c.lastName, c.age, c.place, c.phoneNumber, c.isActive, c.imageHash, c.updatedAt) "
+			+ "FROM Customer c ";
+
+	// Keyset pages over (userId, updatedAt, id), see idx_customers_user_updated
+	@Query(SUMMARY_SELECT + "WHERE c.userId = ?1 ORDER BY c.updatedAt DESC, c.id DESC")
+	List<CustomerSummary> findPageByUserId(Long userId, Pageable pageable);
+
+	@Query(SUMMARY_SELECT + "WHERE c.userId = ?1 "
+			+ "AND (c.updatedAt < ?2 OR (c.updatedAt = ?2 AND c.id < ?3)) ORDER BY c.updatedAt DESC, c.id DESC")
+	List<CustomerSummary> findPageByUserIdAfter(Long userId, LocalDateTime updatedAt, Long id, Pageable pageable);
+
+	@Query(SUMMARY_SELECT + "WHERE c.userId = ?1 AND c.id IN ?2")
+	List<CustomerSummary> findSummariesByUserIdAndIdIn(Long userId, Collection<Long> ids);
+
+	Optional<Customer> findByUserIdAndAadharIndex(Long userId, String aadharIndex);
+
+	List<Customer> findByUserIdAndPhoneIndex(Long userId, String phoneIndex);
+
+	// Photo sweep, see idx_customers_image_hash
+	@Query("SELECT DISTINCT c.imageHash FROM Customer c WHERE c.imageHash IN ?1")
+	List<String> findReferencedImageHashes(Collection<String> imageHashes);
+
+	List<Customer> findByUserIdAndAadharIndexIn(Long userId, Collection<String> aadharIndexes);
+
+	boolean existsByUserIdAndAadharIndex(Long userId, String aadharIndex);
+
+	boolean existsByUserIdAndAadharIndexAndIdNot(Long userId, String aadharIndex, Long id);
+
+	@Query("SELECT c.aadharIndex FROM Customer c WHERE c.userId = ?1 AND c.aadharIndex IN ?2")
+	List<String> findExistingAadharIndexes(Long userId, Collection<String> aadharIndexes);
+
+	long countByUserId(Long userId);
+
 //	List<Customer> findAllById(long userId);
 
 }
\ No newline at end of file
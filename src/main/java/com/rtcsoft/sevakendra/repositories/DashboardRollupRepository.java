@@ -0,0 +1,22 @@
+package com.rtcsoft.sevakendra.repositories;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.stereotype.Repository;
+
+import com.rtcsoft.sevakendra.entities.DashboardRollup;
+import com.rtcsoft.sevakendra.enums.RollupDimension;
+
+@Repository
+public interface DashboardRollupRepository extends CrudRepository<DashboardRollup, Long> {
+
+	// Both are range scans on uk_dashboard_rollups_key
+	List<DashboardRollup> findByUserIdAndDimensionIn(long userId, Collection<RollupDimension> dimensions);
+
+	@Query("SELECT r FROM DashboardRollup r WHERE r.userId = ?1 AND r.dimension IN ?2"
+			+ " AND r.dimValue BETWEEN ?3 AND ?4")
+	List<DashboardRollup> findRange(long userId, Collection<RollupDimension> dimensions, String from, String to);
+}
@@ -0,0 +1,24 @@
+package com.rtcsoft.sevakendra.repositories;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.stereotype.Repository;
+
+import com.rtcsoft.sevakendra.entities.OutboxMail;
+
+@Repository
+public interface OutboxMailRepository extends CrudRepository<OutboxMail, Long> {
+
+	// Rows claimed by another node are skipped instead of waited for
+	@Query(value = "SELECT * FROM mail_outbox WHERE status = 'PENDING' AND next_attempt_at <= ?1 ORDER BY id"
+			+ " LIMIT ?2 FOR UPDATE SKIP LOCKED", nativeQuery = true)
+	List<OutboxMail> claimDue(LocalDateTime now, int limit);
+
+	@Modifying
+	@Query("DELETE FROM OutboxMail m WHERE m.status = com.rtcsoft.sevakendra.enums.MailStatus.SENT AND m.sentAt < ?1")
+	int deleteSentBefore(LocalDateTime before);
+}
@@ -0,0 +1,37 @@
+package com.rtcsoft.sevakendra.repositories;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.stereotype.Repository;
+
+import com.rtcsoft.sevakendra.entities.RefreshToken;
+
+import jakarta.persistence.LockModeType;
+
+@Repository
+public interface RefreshTokenRepository extends CrudRepository<RefreshToken, Long> {
+
+	// Locked so two refreshes with the same token cannot both rotate it
+	@Lock(LockModeType.PESSIMISTIC_WRITE)
+	@Query("SELECT r FROM RefreshToken r WHERE r.tokenHash = ?1")
+	Optional<RefreshToken> findForUpdate(String tokenHash);
+
+	Optional<RefreshToken> findByTokenHash(String tokenHash);
+
+	@Modifying
+	@Query("UPDATE RefreshToken r SET r.revokedAt = ?2 WHERE r.familyId = ?1 AND r.revokedAt IS NULL")
+	int revokeFamily(String familyId, LocalDateTime now);
+
+	@Modifying
+	@Query("UPDATE RefreshToken r SET r.revokedAt = ?2 WHERE r.userId = ?1 AND r.revokedAt IS NULL")
+	int revokeUser(long userId, LocalDateTime now);
+
+	@Modifying
+	@Query("DELETE FROM RefreshToken r WHERE r.expiresAt < ?1")
+	int deleteExpired(LocalDateTime now);
+}
@@ -0,0 +1,27 @@
+package com.rtcsoft.sevakendra.repositories;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.stereotype.Repository;
+
+import com.rtcsoft.sevakendra.entities.RevokedToken;
+
+@Repository
+public interface RevokedTokenRepository extends CrudRepository<RevokedToken, Long> {
+
+	@Query("SELECT r FROM RevokedToken r WHERE r.id > ?1 AND r.expiresAt > ?2 ORDER BY r.id")
+	List<RevokedToken> findAfter(long afterId, LocalDateTime now, Pageable pageable);
+
+	List<RevokedToken> findByRevokedAtAfter(LocalDateTime revokedAfter);
+
+	boolean existsByTokenId(String tokenId);
+
+	@Modifying
+	@Query("DELETE FROM RevokedToken r WHERE r.expiresAt < ?1")
+	int deleteExpired(LocalDateTime now);
+}
@@ -0,0 +1,40 @@
+package com.rtcsoft.sevakendra.repositories;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.stereotype.Repository;
+
+import com.rtcsoft.sevakendra.entities.SyncChange;
+
+@Repository
+public interface SyncChangeRepository extends CrudRepository<SyncChange, Long> {
+
+	// Range scan on idx_sync_changes_user_id
+	@Query("SELECT s FROM SyncChange s WHERE s.userId = ?1 AND s.id > ?2 AND s.changedAt < ?3 ORDER BY s.id")
+	List<SyncChange> findChanges(long userId, long afterId, LocalDateTime before, Pageable pageable);
+
+	// Walks the primary key down from the newest row and stops at the first one
+	// older than the cutoff, so only the rows of the lag window are read
+	@Query(value = "SELECT id FROM sync_changes WHERE changed_at < ?1 ORDER BY id DESC LIMIT 1", nativeQuery = true)
+	Long findHead(LocalDateTime before);
+
+	// Feed of every user's changes for the search index, walks the primary key
+	@Query("SELECT s FROM SyncChange s WHERE s.id > ?1 AND s.changedAt < ?2 ORDER BY s.id")
+	List<SyncChange> findAfter(long afterId, LocalDateTime before, Pageable pageable);
+
+	// Rows still inside the lag window, see idx_sync_changes_changed_at
+	@Query("SELECT s FROM SyncChange s WHERE s.changedAt >= ?1")
+	List<SyncChange> findChangedSince(LocalDateTime since);
+
+	@Query("SELECT MIN(s.id) FROM SyncChange s")
+	Long findOldestId();
+
+	@Modifying
+	@Query("DELETE FROM SyncChange s WHERE s.changedAt < ?1")
+	int deleteOlderThan(LocalDateTime before);
+}
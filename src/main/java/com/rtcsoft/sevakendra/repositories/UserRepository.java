@@ -1,15 +1,31 @@
 package com.rtcsoft.sevakendra.repositories;
 
+import java.util.List;
 import java.util.Optional;
 
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.stereotype.Repository;
 
 import com.rtcsoft.sevakendra.entities.User;
+import com.rtcsoft.sevakendra.projections.AuthenticatedUser;
+import com.rtcsoft.sevakendra.responses.UserResponse;
 
 @Repository
 public interface UserRepository extends CrudRepository<User, Integer> {
 	Optional<User> findByEmail(String email);
 
-	Object findByToken(String token);
+	@Query("SELECT new com.rtcsoft.sevakendra.projections.AuthenticatedUser(u.id, u.fullName, u.email)"
+			+ " FROM User u WHERE u.email = ?1")
+	Optional<AuthenticatedUser> findPrincipalByEmail(String email);
+
+	@Query("SELECT new com.rtcsoft.sevakendra.projections.AuthenticatedUser(u.id, u.fullName, u.email)"
+			+ " FROM User u WHERE u.id = ?1")
+	Optional<AuthenticatedUser> findPrincipalById(long id);
+
+	Optional<User> findByToken(String token);
+
+	@Query("SELECT new com.rtcsoft.sevakendra.responses.UserResponse(u.id, u.fullName, u.email, u.createdAt, "
+			+ "u.updatedAt) FROM User u ORDER BY u.id")
+	List<UserResponse> findAllResponses();
 }
\ No newline at end of file
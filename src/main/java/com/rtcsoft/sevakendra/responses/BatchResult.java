@@ -0,0 +1,17 @@
+package com.rtcsoft.sevakendra.responses;
+
+import java.util.List;
+
+/**
+ * Outcome of a customer batch. Either every operation was applied or none
+ * was, failed items say why.
+ */
+public record BatchResult(boolean applied, List<Item> results) {
+
+	public enum Status {
+		APPLIED, FAILED, NOT_APPLIED
+	}
+
+	public record Item(int index, String clientRef, Status status, Long id, String message) {
+	}
+}
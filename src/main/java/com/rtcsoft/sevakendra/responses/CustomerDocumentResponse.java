@@ -0,0 +1,19 @@
+package com.rtcsoft.sevakendra.responses;
+
+import java.time.LocalDateTime;
+
+import com.rtcsoft.sevakendra.entities.CustomerDocument;
+
+/**
+ * A generated document as the API returns it. The file is served by
+ * /customer-documents/{id}/content, its path on the server stays internal.
+ */
+public record CustomerDocumentResponse(Integer id, long customerId, String docName, String thumbnail,
+		Boolean isActive, long userId, LocalDateTime createdAt, LocalDateTime updatedAt) {
+
+	public static CustomerDocumentResponse of(CustomerDocument document) {
+		return new CustomerDocumentResponse(document.getId(), document.getCustomerId(), document.getDocName(),
+				document.getThumbnail(), document.getIsActive(), document.getUserId(), document.getCreatedAt(),
+				document.getUpdatedAt());
+	}
+}
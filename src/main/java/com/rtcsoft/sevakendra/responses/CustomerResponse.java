@@ -0,0 +1,34 @@
+package com.rtcsoft.sevakendra.responses;
+
+import java.time.LocalDateTime;
+
+import com.rtcsoft.sevakendra.entities.Customer;
+import com.rtcsoft.sevakendra.entities.SealedString;
+
+/**
+ * A customer as the API returns it. The name key, the blind indexes and the
+ * photo's path on the server stay internal, clients load the photo from
+ * imageUrl, which is null when the customer has none.
+ */
+public record CustomerResponse(Long id, String firstName, String middleName, String lastName, String age,
+		String cast, String occupation, String place, SealedString aadharNumber, SealedString phoneNumber,
+		String address, Boolean isActive, String imageUrl, String imageHash, Long userId, LocalDateTime createdAt,
+		LocalDateTime updatedAt) {
+
+	public static CustomerResponse of(Customer customer) {
+		return new CustomerResponse(customer.getId(), customer.getFirstName(), customer.getMiddleName(),
+				customer.getLastName(), customer.getAge(), customer.getCast(), customer.getOccupation(),
+				customer.getPlace(), customer.getAadharNumber(), customer.getPhoneNumber(), customer.getAddress(),
+				customer.getIsActive(), imageUrl(customer), customer.getImageHash(), customer.getUserId(),
+				customer.getCreatedAt(), customer.getUpdatedAt());
+	}
+
+	// Carries the hash as ?v= so the photo can be cached for good, see CustomerPhotoService
+	private static String imageUrl(Customer customer) {
+		if (customer.getImage() == null) {
+			return null;
+		}
+		String url = "/customer/" + customer.getId() + "/image";
+		return customer.getImageHash() == null ? url : url + "?v=" + customer.getImageHash();
+	}
+}
@@ -0,0 +1,4 @@
+package com.rtcsoft.sevakendra.responses;
+
+public record CustomerSearchHit(long id, String fullName, String place, String phoneNumber, double score) {
+}
@@ -0,0 +1,9 @@
+package com.rtcsoft.sevakendra.responses;
+
+import java.time.LocalDate;
+
+/**
+ * Customers and documents created on one day.
+ */
+public record DailyCount(LocalDate date, long customers, long documents) {
+}
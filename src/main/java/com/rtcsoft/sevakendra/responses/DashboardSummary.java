@@ -0,0 +1,11 @@
+package com.rtcsoft.sevakendra.responses;
+
+import java.util.Map;
+
+/**
+ * Counts of a user's customers and generated documents. Customers without a
+ * value are counted under "".
+ */
+public record DashboardSummary(long customers, long documents, Map<String, Long> byCast,
+		Map<String, Long> byOccupation, Map<String, Long> byPlace, Map<String, Long> byDocument) {
+}
@@ -0,0 +1,13 @@
+package com.rtcsoft.sevakendra.responses;
+
+import java.util.List;
+
+/**
+ * Outcome of a bulk customer import. Row numbers count the header as row 1,
+ * like a spreadsheet does.
+ */
+public record ImportReport(long totalRows, long imported, long skipped, List<RowError> errors) {
+
+	public record RowError(long row, String message) {
+	}
+}
@@ -3,6 +3,8 @@ package com.rtcsoft.sevakendra.responses;
 public class LoginResponse {
 	private String token;
 
+	private String refreshToken;
+
 	private long expiresIn;
 	private long userId;
 
@@ -15,6 +17,15 @@ public class LoginResponse {
 		return this;
 	}
 
+	public String getRefreshToken() {
+		return refreshToken;
+	}
+
+	public LoginResponse setRefreshToken(String refreshToken) {
+		this.refreshToken = refreshToken;
+		return this;
+	}
+
 	public long getExpiresIn() {
 		return expiresIn;
 	}
@@ -0,0 +1,27 @@
+package com.rtcsoft.sevakendra.responses;
+
+import java.util.List;
+import java.util.function.Function;
+
+import com.rtcsoft.sevakendra.utils.KeysetCursor;
+
+/**
+ * One keyset page. nextCursor is null on the last page and total is only set
+ * when the client asked for it.
+ */
+public record PageResponse<T>(List<T> items, String nextCursor, Long total) {
+
+	/**
+	 * Build a page from a query that fetched one row more than the page size, the
+	 * extra row only tells us that another page exists.
+	 */
+	public static <T> PageResponse<T> of(List<T> rows, int pageSize, Function<T, KeysetCursor> cursorOf,
+			Long total) {
+		if (rows.size() <= pageSize) {
+			return new PageResponse<>(rows, null, total);
+		}
+		List<T> items = rows.subList(0, pageSize);
+		String nextCursor = cursorOf.apply(items.get(pageSize - 1)).encode();
+		return new PageResponse<>(items, nextCursor, total);
+	}
+}
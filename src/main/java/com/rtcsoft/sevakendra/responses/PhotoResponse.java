@@ -0,0 +1,7 @@
+package com.rtcsoft.sevakendra.responses;
+
+/**
+ * A stored photo, referenced from customer operations by its content hash.
+ */
+public record PhotoResponse(String hash) {
+}
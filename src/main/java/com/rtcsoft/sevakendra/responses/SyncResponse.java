@@ -0,0 +1,18 @@
+package com.rtcsoft.sevakendra.responses;
+
+import java.util.List;
+
+import com.rtcsoft.sevakendra.enums.SyncEntityType;
+import com.rtcsoft.sevakendra.projections.CustomerDocumentSummary;
+import com.rtcsoft.sevakendra.projections.CustomerSummary;
+
+/**
+ * Changes since a sync token. Pass nextToken back as since, and call again
+ * right away while hasMore is true.
+ */
+public record SyncResponse(List<CustomerSummary> customers, List<CustomerDocumentSummary> documents,
+		List<Tombstone> deleted, String nextToken, boolean hasMore) {
+
+	public record Tombstone(SyncEntityType type, long id) {
+	}
+}
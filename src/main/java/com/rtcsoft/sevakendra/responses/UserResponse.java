@@ -0,0 +1,16 @@
+package com.rtcsoft.sevakendra.responses;
+
+import java.util.Date;
+
+import com.rtcsoft.sevakendra.entities.User;
+
+/**
+ * A user as the API returns it, without the password hash or reset token.
+ */
+public record UserResponse(Long id, String fullName, String email, Date createdAt, Date updatedAt) {
+
+	public static UserResponse of(User user) {
+		return new UserResponse(user.getId(), user.getFullName(), user.getEmail(), user.getCreatedAt(),
+				user.getUpdatedAt());
+	}
+}
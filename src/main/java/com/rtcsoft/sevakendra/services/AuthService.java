@@ -11,8 +11,6 @@ import com.rtcsoft.sevakendra.dtos.RegisterUserDTO;
 import com.rtcsoft.sevakendra.entities.User;
 import com.rtcsoft.sevakendra.repositories.UserRepository;
 
-import jakarta.servlet.http.HttpSession;
-
 @Service
 public class AuthService {
 	private final UserRepository userRepository;
@@ -46,15 +44,11 @@ public class AuthService {
 		return userRepository.findByEmail(input.getEmail()).orElseThrow();
 	}
 
-	public void logoutUser(HttpSession session) {
-		if (session != null) {
-			session.invalidate(); // Invalidate the session
-		}
-
+	public void logoutUser() {
 		// Clear the authentication context
 		SecurityContextHolder.clearContext();
 
 		// Additional custom logic (e.g., logging or auditing) can go here
-		System.out.println("User has been logged out and session invalidated.");
+		System.out.println("User has been logged out.");
 	}
 }
\ No newline at end of file
@@ -0,0 +1,483 @@
+package com.rtcsoft.sevakendra.services;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.orm.jpa.vendor.HibernateJpaDialect;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.rtcsoft.sevakendra.dtos.CustomerBatchDTO;
+import com.rtcsoft.sevakendra.dtos.CustomerDTO;
+import com.rtcsoft.sevakendra.entities.Customer;
+import com.rtcsoft.sevakendra.enums.BatchOperationType;
+import com.rtcsoft.sevakendra.enums.RollupDimension;
+import com.rtcsoft.sevakendra.enums.SyncEntityType;
+import com.rtcsoft.sevakendra.enums.SyncOperation;
+import com.rtcsoft.sevakendra.exceptions.ApiException;
+import com.rtcsoft.sevakendra.repositories.CustomerRepository;
+import com.rtcsoft.sevakendra.responses.BatchResult;
+import com.rtcsoft.sevakendra.services.PhotoStorageService.StoredPhoto;
+import com.rtcsoft.sevakendra.utils.TextNormalizer;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+
+/**
+ * Applies an ordered list of customer creates, updates and deletes captured
+ * offline. All operations are checked first against the rows loaded in two
+ * queries, then written in one transaction and flushed as JDBC batches.
+ * Either all operations are applied or none.
+ *
+ * A batch that fails its checks, or that loses a name or Aadhaar number to a
+ * concurrent write, gets 422 with the failing operations. Only lock conflicts
+ * get 409, sending the same batch again can succeed.
+ */
+@Service
+public class CustomerBatchService {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(CustomerBatchService.class);
+
+	private static final String NAME_TAKEN = "Customer already exists with this name";
+	private static final String AADHAR_TAKEN = "Customer already exists with this Aadhaar number";
+
+	// Flushes go to the EntityManager directly, this turns their failures into Spring's exceptions
+	private static final HibernateJpaDialect JPA_DIALECT = new HibernateJpaDialect();
+
+	@PersistenceContext
+	private EntityManager entityManager;
+
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+
+	@Autowired
+	private CustomerRepository customerRepository;
+
+	@Autowired
+	private SharedService sharedService;
+
+	@Autowired
+	private PhotoStorageService photoStorageService;
+
+	@Autowired
+	private PhotoVariantService photoVariantService;
+
+	@Autowired
+	private CustomerSearchIndex searchIndex;
+
+	@Autowired
+	private CustomerNameFilter nameFilter;
+
+	@Autowired
+	private CustomerCache customerCache;
+
+	@Autowired
+	private SyncService syncService;
+
+	@Autowired
+	private DashboardService dashboardService;
+
+	@Autowired
+	private FieldCipher fieldCipher;
+
+	@Autowired
+	private Validator validator;
+
+	@Value("${batch.max-operations:500}")
+	private int maxOperations;
+
+	public ResponseEntity<BatchResult> apply(CustomerBatchDTO batch)
+			throws ApiException, IOException {
+		long authUserId = sharedService.getAuthUserId();
+		List<CustomerBatchDTO.Operation> operations = batch.getOperations();
+		if (operations == null || operations.isEmpty()) {
+			throw new ApiException("At least one operation is required");
+		}
+		if (operations.size() > maxOperations) {
+			throw new ApiException("A batch can have at most " + maxOperations + " operations");
+		}
+
+		// Photos are already on disk, look them up before the transaction opens
+		Map<String, StoredPhoto> photos = new HashMap<>();
+		for (CustomerBatchDTO.Operation operation : operations) {
+			String hash = operation.getImageHash();
+			if (hash != null && !photos.containsKey(hash)) {
+				Optional<StoredPhoto> photo = photoStorageService.findByHash(hash);
+				if (photo.isPresent()) {
+					photoStorageService.retain(photo.get());
+					photos.put(hash, photo.get());
+				}
+			}
+		}
+
+		BatchRun run = new BatchRun(authUserId, operations, photos);
+		try {
+			transactionTemplate.executeWithoutResult(status -> {
+				run.check();
+				if (run.failed) {
+					status.setRollbackOnly();
+				} else {
+					run.write();
+				}
+			});
+		} catch (DataIntegrityViolationException e) {
+			// A concurrent write took a name or an Aadhaar number after the check,
+			// checking again against the committed rows finds the operation
+			LOGGER.warn("Batch of user {} rolled back: {}", authUserId, e.getMessage());
+			BatchRun recheck = new BatchRun(authUserId, operations, photos);
+			transactionTemplate.executeWithoutResult(status -> recheck.check());
+			if (!recheck.failed) {
+				return ResponseEntity.status(HttpStatus.CONFLICT)
+						.body(run.notApplied("Conflicts with a concurrent change, send the batch again"));
+			}
+			return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).body(recheck.notApplied(null));
+		} catch (ConcurrencyFailureException e) {
+			// Deadlock or lock timeout, nothing is wrong with the batch itself
+			LOGGER.warn("Batch of user {} rolled back: {}", authUserId, e.getMessage());
+			return ResponseEntity.status(HttpStatus.CONFLICT)
+					.body(run.notApplied("Conflicts with a concurrent change, send the batch again"));
+		}
+
+		if (run.failed) {
+			return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).body(run.notApplied(null));
+		}
+		run.afterCommit();
+		return ResponseEntity.ok(new BatchResult(true, run.results));
+	}
+
+	/**
+	 * A customer as the operations replayed so far leave it, only the fields
+	 * with a unique index.
+	 */
+	private record State(String firstName, String middleName, String lastName, String nameKey,
+			String aadharIndex) {
+
+		private static State of(Customer customer) {
+			return new State(customer.getFirstName(), customer.getMiddleName(), customer.getLastName(),
+					customer.getNameKey(), customer.getAadharIndex());
+		}
+
+		// Same merge as CustomerService.mapDtoToCustomer, fields that are not sent are kept
+		private static State after(State before, CustomerDTO input, String inputAadharIndex) {
+			String firstName = input.getFirstName() != null || before == null ? input.getFirstName()
+					: before.firstName();
+			String middleName = input.getMiddleName() != null || before == null ? input.getMiddleName()
+					: before.middleName();
+			String lastName = input.getLastName() != null || before == null ? input.getLastName()
+					: before.lastName();
+			String aadharIndex = input.getAadharNumber() != null || before == null ? inputAadharIndex
+					: before.aadharIndex();
+			return new State(firstName, middleName, lastName, TextNormalizer.nameKey(firstName, middleName, lastName),
+					aadharIndex);
+		}
+	}
+
+	/**
+	 * One batch: checks every operation against the current rows replayed in
+	 * order, then writes them.
+	 */
+	private final class BatchRun {
+		private final long userId;
+		private final List<CustomerBatchDTO.Operation> operations;
+		private final Map<String, StoredPhoto> photos;
+
+		private final Map<Long, Customer> existing = new HashMap<>();
+		// State of the customer before and after each operation, null where there is none
+		private final List<State> sources = new ArrayList<>();
+		private final List<State> targets = new ArrayList<>();
+		private final String[] failures;
+		private boolean failed;
+
+		private final List<BatchResult.Item> results = new ArrayList<>();
+		private final List<Customer> saved = new ArrayList<>();
+		private final List<Customer> deleted = new ArrayList<>();
+
+		private BatchRun(long userId, List<CustomerBatchDTO.Operation> operations, Map<String, StoredPhoto> photos) {
+			this.userId = userId;
+			this.operations = operations;
+			this.photos = photos;
+			this.failures = new String[operations.size()];
+		}
+
+		private void check() {
+			Set<Long> ids = operations.stream().map(CustomerBatchDTO.Operation::getId).filter(Objects::nonNull)
+					.collect(Collectors.toSet());
+			for (Customer customer : customerRepository.findAllById(ids)) {
+				if (customer.getUserId() == userId) {
+					existing.put(customer.getId(), customer);
+				}
+			}
+			replay();
+
+			// Owners of the unique values as stored, then replayed operation by operation
+			Map<Long, State> current = new HashMap<>();
+			existing.values().forEach(customer -> current.put(customer.getId(), State.of(customer)));
+			Set<String> nameKeys = targets.stream().filter(Objects::nonNull).map(State::nameKey)
+					.collect(Collectors.toSet());
+			if (!nameKeys.isEmpty()) {
+				for (Customer customer : customerRepository.findByUserIdAndNameKeyIn(userId, nameKeys)) {
+					current.putIfAbsent(customer.getId(), State.of(customer));
+				}
+			}
+			Set<String> aadharIndexes = targets.stream().filter(Objects::nonNull).map(State::aadharIndex)
+					.filter(Objects::nonNull).collect(Collectors.toSet());
+			if (!aadharIndexes.isEmpty()) {
+				for (Customer customer : customerRepository.findByUserIdAndAadharIndexIn(userId, aadharIndexes)) {
+					current.putIfAbsent(customer.getId(), State.of(customer));
+				}
+			}
+			Map<String, Long> nameOwners = new HashMap<>();
+			Map<String, Long> aadharOwners = new HashMap<>();
+			current.forEach((id, state) -> claim(nameOwners, aadharOwners, id, state));
+
+			Set<Long> deletedIds = new HashSet<>();
+			for (int i = 0; i < operations.size(); i++) {
+				CustomerBatchDTO.Operation operation = operations.get(i);
+				String error = validate(operation, deletedIds);
+				if (error == null && operation.getOp() != BatchOperationType.DELETE) {
+					Long self = self(i, operation);
+					State target = targets.get(i);
+					Long nameOwner = nameOwners.get(target.nameKey());
+					Long aadharOwner = target.aadharIndex() == null ? null : aadharOwners.get(target.aadharIndex());
+					if (nameOwner != null && !nameOwner.equals(self)) {
+						error = NAME_TAKEN;
+					} else if (aadharOwner != null && !aadharOwner.equals(self)) {
+						error = AADHAR_TAKEN;
+					} else {
+						release(nameOwners, aadharOwners, self, current.put(self, target));
+						claim(nameOwners, aadharOwners, self, target);
+					}
+				} else if (error == null) {
+					deletedIds.add(operation.getId());
+					release(nameOwners, aadharOwners, operation.getId(), current.remove(operation.getId()));
+				}
+				if (error != null) {
+					failures[i] = error;
+					failed = true;
+				}
+			}
+		}
+
+		// The state each operation starts from and leaves behind, earlier operations included
+		private void replay() {
+			Map<Long, State> states = new HashMap<>();
+			existing.values().forEach(customer -> states.put(customer.getId(), State.of(customer)));
+			for (int i = 0; i < operations.size(); i++) {
+				CustomerBatchDTO.Operation operation = operations.get(i);
+				BatchOperationType op = operation.getOp();
+				State source = op == null || op == BatchOperationType.CREATE ? null : states.get(operation.getId());
+				State target = null;
+				if (op == BatchOperationType.DELETE) {
+					states.remove(operation.getId());
+				} else if (op != null && operation.getCustomer() != null
+						&& (op == BatchOperationType.CREATE || source != null)) {
+					CustomerDTO input = operation.getCustomer();
+					target = State.after(source, input, fieldCipher.aadharIndex(userId, input.getAadharNumber()));
+					states.put(self(i, operation), target);
+				}
+				sources.add(source);
+				targets.add(target);
+			}
+		}
+
+		// Creates get a negative placeholder id until they are written
+		private static Long self(int index, CustomerBatchDTO.Operation operation) {
+			return operation.getOp() == BatchOperationType.CREATE ? -(index + 1L) : operation.getId();
+		}
+
+		private static void claim(Map<String, Long> nameOwners, Map<String, Long> aadharOwners, Long id,
+				State state) {
+			if (state.nameKey() != null) {
+				nameOwners.put(state.nameKey(), id);
+			}
+			if (state.aadharIndex() != null) {
+				aadharOwners.put(state.aadharIndex(), id);
+			}
+		}
+
+		private static void release(Map<String, Long> nameOwners, Map<String, Long> aadharOwners, Long id,
+				State state) {
+			if (state != null) {
+				nameOwners.remove(state.nameKey(), id);
+				if (state.aadharIndex() != null) {
+					aadharOwners.remove(state.aadharIndex(), id);
+				}
+			}
+		}
+
+		private String validate(CustomerBatchDTO.Operation operation, Set<Long> deletedIds) {
+			if (operation.getOp() == null) {
+				return "Operation type is required";
+			}
+			if (operation.getImageHash() != null && !photos.containsKey(operation.getImageHash())) {
+				return "Photo " + operation.getImageHash() + " has not been uploaded";
+			}
+			if (operation.getOp() == BatchOperationType.CREATE) {
+				if (operation.getCustomer() == null) {
+					return "Customer is required";
+				}
+				return violations(operation.getCustomer(), true);
+			}
+
+			if (operation.getId() == null || !existing.containsKey(operation.getId())
+					|| deletedIds.contains(operation.getId())) {
+				return "Customer not found with id " + operation.getId();
+			}
+			if (operation.getOp() == BatchOperationType.UPDATE) {
+				if (operation.getCustomer() == null) {
+					return "Customer is required";
+				}
+				return violations(operation.getCustomer(), false);
+			}
+			return null;
+		}
+
+		// Updates are partial, only the fields that are sent are checked
+		private String violations(CustomerDTO customer, boolean complete) {
+			customer.setUserId(userId);
+			String messages = validator.validate(customer).stream()
+					.filter(violation -> complete || violation.getInvalidValue() != null)
+					.map(ConstraintViolation::getMessage).sorted().collect(Collectors.joining(", "));
+			return messages.isEmpty() ? null : messages;
+		}
+
+		private void write() {
+			// Hibernate flushes inserts before updates and deletes, a name or Aadhaar
+			// number freed earlier in the batch must reach the database before it is
+			// taken again
+			Set<String> freedKeys = new HashSet<>();
+			DashboardService.Delta delta = new DashboardService.Delta();
+			for (int i = 0; i < operations.size(); i++) {
+				CustomerBatchDTO.Operation operation = operations.get(i);
+				State target = targets.get(i);
+				if (target != null && !Collections.disjoint(freedKeys, uniqueKeys(target))) {
+					flush();
+					freedKeys.clear();
+				}
+				if (sources.get(i) != null) {
+					Set<String> previous = uniqueKeys(sources.get(i));
+					if (target != null) {
+						previous.removeAll(uniqueKeys(target));
+					}
+					freedKeys.addAll(previous);
+				}
+
+				Customer customer;
+				switch (operation.getOp()) {
+				case CREATE -> {
+					customer = CustomerService.mapDtoToCustomer(operation.getCustomer(), Optional.empty(), userId);
+					setPhoto(customer, operation.getImageHash());
+					entityManager.persist(customer);
+					saved.add(customer);
+					delta.change(null, DashboardService.dimensions(customer));
+				}
+				case UPDATE -> {
+					Customer current = existing.get(operation.getId());
+					Map<RollupDimension, String> before = DashboardService.dimensions(current);
+					customer = CustomerService.mapDtoToCustomer(operation.getCustomer(), Optional.of(current), userId);
+					setPhoto(customer, operation.getImageHash());
+					saved.add(customer);
+					delta.change(before, DashboardService.dimensions(customer));
+				}
+				default -> {
+					customer = existing.get(operation.getId());
+					entityManager.remove(customer);
+					deleted.add(customer);
+					delta.change(DashboardService.dimensions(customer), null);
+				}
+				}
+				results.add(new BatchResult.Item(i, operation.getClientRef(), BatchResult.Status.APPLIED,
+						customer.getId(), null));
+			}
+
+			syncService.recordAll(userId, SyncEntityType.CUSTOMER, saved.stream().map(Customer::getId).toList(),
+					SyncOperation.UPSERT);
+			syncService.recordAll(userId, SyncEntityType.CUSTOMER, deleted.stream().map(Customer::getId).toList(),
+					SyncOperation.DELETE);
+			dashboardService.apply(userId, delta);
+			flush();
+		}
+
+		private static Set<String> uniqueKeys(State state) {
+			Set<String> keys = new HashSet<>();
+			if (state.nameKey() != null) {
+				keys.add("name:" + state.nameKey());
+			}
+			if (state.aadharIndex() != null) {
+				keys.add("aadhar:" + state.aadharIndex());
+			}
+			return keys;
+		}
+
+		private void flush() {
+			try {
+				entityManager.flush();
+			} catch (RuntimeException e) {
+				DataAccessException translated = JPA_DIALECT.translateExceptionIfPossible(e);
+				throw translated == null ? e : translated;
+			}
+		}
+
+		private void setPhoto(Customer customer, String hash) {
+			StoredPhoto photo = hash == null ? null : photos.get(hash);
+			if (photo != null) {
+				customer.setImage(photo.path().toString());
+				customer.setImageHash(photo.hash());
+			}
+		}
+
+		private void afterCommit() {
+			for (Customer customer : saved) {
+				customerCache.evict(customer);
+				searchIndex.upsert(customer);
+				nameFilter.add(userId, customer.getNameKey());
+			}
+			for (Customer customer : deleted) {
+				customerCache.evict(customer);
+				searchIndex.remove(userId, customer.getId());
+			}
+			customerCache.evictPages(userId);
+			for (StoredPhoto photo : photos.values()) {
+				try {
+					photoVariantService.generateVariants(photo);
+				} catch (TaskRejectedException e) {
+					// Committed already, the rest render on first request
+					LOGGER.warn("Media queue full, skipped variants of {} batch photos", photos.size());
+					break;
+				}
+			}
+		}
+
+		private BatchResult notApplied(String message) {
+			List<BatchResult.Item> items = new ArrayList<>(operations.size());
+			for (int i = 0; i < operations.size(); i++) {
+				String failure = failures[i];
+				items.add(new BatchResult.Item(i, operations.get(i).getClientRef(),
+						failure == null ? BatchResult.Status.NOT_APPLIED : BatchResult.Status.FAILED, null,
+						failure == null ? message : failure));
+			}
+			return new BatchResult(false, items);
+		}
+	}
+}
@@ -0,0 +1,91 @@
+package com.rtcsoft.sevakendra.services;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.rtcsoft.sevakendra.configs.CacheConfig;
+import com.rtcsoft.sevakendra.configs.ReadWriteRoutingDataSource;
+import com.rtcsoft.sevakendra.entities.Customer;
+import com.rtcsoft.sevakendra.projections.CustomerSummary;
+import com.rtcsoft.sevakendra.repositories.CustomerRepository;
+import com.rtcsoft.sevakendra.responses.CustomerResponse;
+import com.rtcsoft.sevakendra.responses.PageResponse;
+
+/**
+ * Read-through cache of customers by id and of customer list pages by user.
+ * Only immutable responses are cached, never entities, so requests sharing an
+ * entry cannot change it. Writes load a managed copy from
+ * {@link CustomerRepository} and call {@link #evict} once committed.
+ *
+ * Misses load from the primary in a transaction of their own. Otherwise a
+ * lagging replica could put an old row in the cache, and every user on this
+ * node would see it until it expires. An id that is not found is not cached, a
+ * customer created on another node is found as soon as it commits.
+ *
+ * List pages are keyed with a per user generation number. Bumping it on a write
+ * makes every cached page of that user unreachable at once, the stale entries
+ * then age out of the cache.
+ */
+@Service
+public class CustomerCache {
+
+	// Caffeine's own get does not store a null result, Spring's would cache the miss as NullValue
+	private final com.github.benmanes.caffeine.cache.Cache<Object, Object> customers;
+	private final Cache customerPages;
+	private final TransactionTemplate primaryRead;
+
+	private final Map<Long, AtomicLong> pageGenerations = new ConcurrentHashMap<>();
+
+	@Autowired
+	private CustomerRepository customerRepository;
+
+	@SuppressWarnings("unchecked")
+	public CustomerCache(CacheManager cacheManager, PlatformTransactionManager transactionManager) {
+		this.customers = (com.github.benmanes.caffeine.cache.Cache<Object, Object>) cacheManager
+				.getCache(CacheConfig.CUSTOMERS).getNativeCache();
+		this.customerPages = cacheManager.getCache(CacheConfig.CUSTOMER_PAGES);
+		// A new transaction, the caller's may already hold a replica connection
+		this.primaryRead = new TransactionTemplate(transactionManager);
+		primaryRead.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+		primaryRead.setReadOnly(true);
+	}
+
+	public Optional<CustomerResponse> findById(long id) {
+		return Optional.ofNullable((CustomerResponse) customers.get(id, key -> fromPrimary(
+				() -> customerRepository.findById(id).map(CustomerResponse::of).orElse(null))));
+	}
+
+	public PageResponse<CustomerSummary> page(long userId, String cursor, int size, boolean withTotal,
+			Supplier<PageResponse<CustomerSummary>> loader) {
+		String key = userId + ":" + generation(userId).get() + ":" + cursor + ":" + size + ":" + withTotal;
+		return customerPages.get(key, () -> fromPrimary(loader));
+	}
+
+	public void evict(Customer customer) {
+		customers.invalidate(customer.getId());
+		evictPages(customer.getUserId());
+	}
+
+	public void evictPages(long userId) {
+		generation(userId).incrementAndGet();
+	}
+
+	private <T> T fromPrimary(Supplier<T> loader) {
+		return ReadWriteRoutingDataSource.onPrimary(() -> primaryRead.execute(status -> loader.get()));
+	}
+
+	private AtomicLong generation(long userId) {
+		return pageGenerations.computeIfAbsent(userId, id -> new AtomicLong());
+	}
+}
@@ -0,0 +1,380 @@
+package com.rtcsoft.sevakendra.services;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler.SheetContentsHandler;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+import com.rtcsoft.sevakendra.dtos.CustomerDTO;
+import com.rtcsoft.sevakendra.entities.Customer;
+import com.rtcsoft.sevakendra.enums.SyncEntityType;
+import com.rtcsoft.sevakendra.enums.SyncOperation;
+import com.rtcsoft.sevakendra.exceptions.ApiException;
+import com.rtcsoft.sevakendra.repositories.CustomerRepository;
+import com.rtcsoft.sevakendra.responses.ImportReport;
+import com.rtcsoft.sevakendra.utils.CsvReader;
+import com.rtcsoft.sevakendra.utils.TextNormalizer;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+
+/**
+ * Bulk customer import from CSV or XLSX. Rows are streamed from the file,
+ * validated and deduplicated a chunk at a time and each chunk is inserted in
+ * its own transaction through JDBC batching, so memory stays bounded by the
+ * chunk size whatever the file size.
+ */
+@Service
+public class CustomerImportService {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(CustomerImportService.class);
+
+	private static final int CHUNK_SIZE = 1000;
+	private static final int MAX_REPORTED_ERRORS = 1000;
+
+	@PersistenceContext
+	private EntityManager entityManager;
+
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+
+	@Autowired
+	private CustomerRepository customerRepository;
+
+	@Autowired
+	private SharedService sharedService;
+
+	@Autowired
+	private CustomerSearchIndex searchIndex;
+
+	@Autowired
+	private CustomerNameFilter nameFilter;
+
+	@Autowired
+	private CustomerCache customerCache;
+
+	@Autowired
+	private SyncService syncService;
+
+	@Autowired
+	private DashboardService dashboardService;
+
+	@Autowired
+	private FieldCipher fieldCipher;
+
+	@Autowired
+	private Validator validator;
+
+	public ResponseEntity<ImportReport> importCustomers(MultipartFile file)
+			throws ApiException, IOException {
+		long authUserId = sharedService.getAuthUserId();
+		String fileName = Optional.ofNullable(file.getOriginalFilename()).orElse("").toLowerCase(Locale.ROOT);
+
+		ImportRun run = new ImportRun(authUserId);
+		if (fileName.endsWith(".csv")) {
+			readCsv(file, run);
+		} else if (fileName.endsWith(".xlsx")) {
+			readXlsx(file, run);
+		} else {
+			throw new ApiException("Only .csv and .xlsx files can be imported");
+		}
+		run.flush();
+
+		LOGGER.info("User {} imported {} of {} customer rows", authUserId, run.imported, run.totalRows);
+		return ResponseEntity.ok(new ImportReport(run.totalRows, run.imported, run.skipped, run.errors));
+	}
+
+	private void readCsv(MultipartFile file, ImportRun run) throws IOException {
+		try (CsvReader reader = new CsvReader(new InputStreamReader(file.getInputStream(), StandardCharsets.UTF_8))) {
+			List<String> record = reader.readRecord();
+			if (record == null) {
+				return;
+			}
+			run.header(record);
+			long rowNumber = 1;
+			while ((record = reader.readRecord()) != null) {
+				run.row(++rowNumber, record);
+			}
+		}
+	}
+
+	private void readXlsx(MultipartFile file, ImportRun run) throws IOException, ApiException {
+		// OPCPackage reads a File through a zip index instead of buffering the stream
+		Path tempFile = Files.createTempFile("customer-import", ".xlsx");
+		try {
+			file.transferTo(tempFile);
+			try (OPCPackage pkg = OPCPackage.open(tempFile.toFile(), PackageAccess.READ)) {
+				XSSFReader xssfReader = new XSSFReader(pkg);
+				XMLReader parser = XMLHelper.newXMLReader();
+				parser.setContentHandler(new XSSFSheetXMLHandler(xssfReader.getStylesTable(), null,
+						new ReadOnlySharedStringsTable(pkg), new SheetHandler(run), new PlainNumberFormatter(),
+						false));
+
+				Iterator<InputStream> sheets = xssfReader.getSheetsData();
+				if (!sheets.hasNext()) {
+					throw new ApiException("Workbook has no sheets");
+				}
+				try (InputStream sheet = sheets.next()) {
+					parser.parse(new InputSource(sheet));
+				}
+			}
+		} catch (OpenXML4JException | SAXException | ParserConfigurationException e) {
+			throw new ApiException("Invalid xlsx file: " + e.getMessage());
+		} finally {
+			Files.deleteIfExists(tempFile);
+		}
+	}
+
+	private record PendingRow(long row, CustomerDTO customer, String nameKey, String aadharIndex) {
+	}
+
+	/**
+	 * State of one import: column mapping, the chunk being filled and the report
+	 * counters.
+	 */
+	private final class ImportRun {
+		private final long userId;
+		private String[] columns = new String[0];
+		private List<PendingRow> pending = new ArrayList<>(CHUNK_SIZE);
+		private final List<ImportReport.RowError> errors = new ArrayList<>();
+		private long totalRows;
+		private long imported;
+		private long skipped;
+
+		private ImportRun(long userId) {
+			this.userId = userId;
+		}
+
+		private void header(List<String> names) {
+			columns = names.stream().map(CustomerImportService::fieldForHeader).toArray(String[]::new);
+		}
+
+		private void row(long rowNumber, List<String> values) {
+			if (values.stream().allMatch(value -> value == null || value.isBlank())) {
+				return;
+			}
+			totalRows++;
+
+			CustomerDTO customer = new CustomerDTO();
+			for (int i = 0; i < values.size() && i < columns.length; i++) {
+				setField(customer, columns[i], values.get(i));
+			}
+			customer.setUserId(userId);
+
+			Set<ConstraintViolation<CustomerDTO>> violations = validator.validate(customer);
+			if (!violations.isEmpty()) {
+				error(rowNumber, violations.stream().map(ConstraintViolation::getMessage).sorted()
+						.collect(Collectors.joining(", ")));
+				return;
+			}
+
+			String nameKey = TextNormalizer.nameKey(customer.getFirstName(), customer.getMiddleName(),
+					customer.getLastName());
+			pending.add(new PendingRow(rowNumber, customer, nameKey,
+					fieldCipher.aadharIndex(userId, customer.getAadharNumber())));
+			if (pending.size() >= CHUNK_SIZE) {
+				flush();
+			}
+		}
+
+		private void flush() {
+			if (pending.isEmpty()) {
+				return;
+			}
+			List<PendingRow> chunk = pending;
+			pending = new ArrayList<>(CHUNK_SIZE);
+
+			Map<String, PendingRow> byNameKey = new LinkedHashMap<>();
+			Set<String> aadharIndexes = new HashSet<>();
+			for (PendingRow row : chunk) {
+				if (byNameKey.containsKey(row.nameKey())) {
+					error(row.row(), "Duplicate of an earlier row in this file");
+				} else if (row.aadharIndex() != null && !aadharIndexes.add(row.aadharIndex())) {
+					error(row.row(), "Duplicate Aadhaar number of an earlier row in this file");
+				} else {
+					byNameKey.put(row.nameKey(), row);
+				}
+			}
+
+			List<PendingRow> existing = new ArrayList<>();
+			List<PendingRow> existingAadhar = new ArrayList<>();
+			try {
+				List<Customer> saved = transactionTemplate.execute(status -> {
+					// Rows of earlier chunks are committed already, so this also catches them
+					Set<String> taken = new HashSet<>(
+							customerRepository.findExistingNameKeys(userId, byNameKey.keySet()));
+					Set<String> takenAadhar = aadharIndexes.isEmpty() ? Set.of()
+							: new HashSet<>(customerRepository.findExistingAadharIndexes(userId, aadharIndexes));
+					List<Customer> customers = new ArrayList<>(byNameKey.size());
+					for (PendingRow row : byNameKey.values()) {
+						if (taken.contains(row.nameKey())) {
+							existing.add(row);
+							continue;
+						}
+						if (row.aadharIndex() != null && takenAadhar.contains(row.aadharIndex())) {
+							existingAadhar.add(row);
+							continue;
+						}
+						Customer customer = CustomerService.mapDtoToCustomer(row.customer(), Optional.empty(), userId);
+						entityManager.persist(customer);
+						customers.add(customer);
+					}
+					syncService.recordAll(userId, SyncEntityType.CUSTOMER,
+							customers.stream().map(Customer::getId).toList(), SyncOperation.UPSERT);
+					DashboardService.Delta delta = new DashboardService.Delta();
+					for (Customer customer : customers) {
+						delta.change(null, DashboardService.dimensions(customer));
+					}
+					dashboardService.apply(userId, delta);
+					entityManager.flush();
+					entityManager.clear();
+					return customers;
+				});
+
+				for (PendingRow row : existing) {
+					error(row.row(), "Customer already exists with this name");
+				}
+				for (PendingRow row : existingAadhar) {
+					error(row.row(), "Customer already exists with this Aadhaar number");
+				}
+				for (Customer customer : saved) {
+					searchIndex.upsert(customer);
+					nameFilter.add(userId, customer.getNameKey());
+				}
+				customerCache.evictPages(userId);
+				imported += saved.size();
+			} catch (DataAccessException e) {
+				LOGGER.error("Import chunk of user {} failed: {}", userId, e.getMessage());
+				for (PendingRow row : byNameKey.values()) {
+					error(row.row(), "Not saved: " + e.getMostSpecificCause().getMessage());
+				}
+			}
+		}
+
+		private void error(long rowNumber, String message) {
+			skipped++;
+			if (errors.size() < MAX_REPORTED_ERRORS) {
+				errors.add(new ImportReport.RowError(rowNumber, message));
+			}
+		}
+	}
+
+	/**
+	 * Collects the cells of each sheet row, the first row is the header.
+	 */
+	private static final class SheetHandler implements SheetContentsHandler {
+		private final ImportRun run;
+		private final List<String> cells = new ArrayList<>();
+
+		private SheetHandler(ImportRun run) {
+			this.run = run;
+		}
+
+		@Override
+		public void startRow(int rowNum) {
+			cells.clear();
+		}
+
+		@Override
+		public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+			int column = cellReference == null ? cells.size() : new CellReference(cellReference).getCol();
+			while (cells.size() < column) {
+				cells.add("");
+			}
+			cells.add(formattedValue);
+		}
+
+		@Override
+		public void endRow(int rowNum) {
+			if (rowNum == 0) {
+				run.header(cells);
+			} else {
+				run.row(rowNum + 1L, cells);
+			}
+		}
+	}
+
+	/**
+	 * Phone and Aadhaar numbers are usually stored as numeric cells, keep them as
+	 * plain digits instead of the General format's 9.87654E+11.
+	 */
+	private static final class PlainNumberFormatter extends DataFormatter {
+		@Override
+		public String formatRawCellContents(double value, int formatIndex, String formatString) {
+			if ((formatString == null || "General".equalsIgnoreCase(formatString)) && value == Math.rint(value)
+					&& Math.abs(value) < 1e15) {
+				return Long.toString((long) value);
+			}
+			return super.formatRawCellContents(value, formatIndex, formatString);
+		}
+	}
+
+	private static String fieldForHeader(String header) {
+		String key = header == null ? "" : header.toLowerCase(Locale.ROOT).replaceAll("[^a-z]", "");
+		return switch (key) {
+		case "firstname", "middlename", "lastname", "age", "occupation", "place", "address" -> key;
+		case "cast", "caste" -> "cast";
+		case "village" -> "place";
+		case "aadhar", "aadhaar", "aadharnumber", "aadhaarnumber" -> "aadharnumber";
+		case "phone", "mobile", "phonenumber", "mobilenumber" -> "phonenumber";
+		default -> "";
+		};
+	}
+
+	private static void setField(CustomerDTO customer, String field, String rawValue) {
+		String value = rawValue == null || rawValue.isBlank() ? null : rawValue.trim();
+		switch (field) {
+		case "firstname" -> customer.setFirstName(value);
+		case "middlename" -> customer.setMiddleName(value);
+		case "lastname" -> customer.setLastName(value);
+		case "age" -> customer.setAge(value);
+		case "cast" -> customer.setCast(value);
+		case "occupation" -> customer.setOccupation(value);
+		case "place" -> customer.setPlace(value);
+		case "aadharnumber" -> customer.setAadharNumber(value);
+		case "phonenumber" -> customer.setPhoneNumber(value);
+		case "address" -> customer.setAddress(value);
+		default -> {
+		}
+		}
+	}
+}
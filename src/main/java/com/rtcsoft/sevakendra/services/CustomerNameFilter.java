@@ -0,0 +1,67 @@
+package com.rtcsoft.sevakendra.services;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.rtcsoft.sevakendra.repositories.CustomerRepository;
+import com.rtcsoft.sevakendra.utils.BloomFilter;
+
+/**
+ * Per user Bloom filter of customer name keys. A negative answer proves the
+ * name is new, so most creates never run the duplicate query. Deleted names
+ * stay in the filter until it is rebuilt, they only cost an extra query.
+ *
+ * Each node only adds the names it wrote itself, so a name created on another
+ * node can be missed. uk_customers_user_name_key still rejects that duplicate,
+ * and the caller gets the same 409 as from the check.
+ */
+@Service
+public class CustomerNameFilter {
+
+	private static final double FALSE_POSITIVE_RATE = 0.01;
+	private static final long MIN_CAPACITY = 10_000;
+
+	@Autowired
+	private CustomerRepository customerRepository;
+
+	private final Map<Long, TenantFilter> tenants = new ConcurrentHashMap<>();
+
+	private record TenantFilter(BloomFilter filter, long capacity, AtomicLong insertions) {
+	}
+
+	public boolean mightExist(long userId, String nameKey) {
+		return tenantFilter(userId).filter().mightContain(nameKey);
+	}
+
+	public void add(long userId, String nameKey) {
+		TenantFilter tenant = tenants.get(userId);
+		if (tenant == null) {
+			return;
+		}
+		tenant.filter().put(nameKey);
+		// Past its capacity the false positive rate climbs, rebuild on next use
+		if (tenant.insertions().incrementAndGet() > tenant.capacity()) {
+			tenants.remove(userId, tenant);
+		}
+	}
+
+	private TenantFilter tenantFilter(long userId) {
+		TenantFilter tenant = tenants.get(userId);
+		if (tenant != null) {
+			return tenant;
+		}
+		// Not in computeIfAbsent, the query would block other users hashing to the same bin
+		List<String> nameKeys = customerRepository.findNameKeysByUserId(userId);
+		long capacity = Math.max(MIN_CAPACITY, nameKeys.size() * 2L);
+		BloomFilter filter = new BloomFilter(capacity, FALSE_POSITIVE_RATE);
+		nameKeys.forEach(filter::put);
+		TenantFilter loaded = new TenantFilter(filter, capacity, new AtomicLong(nameKeys.size()));
+		TenantFilter raced = tenants.putIfAbsent(userId, loaded);
+		return raced == null ? loaded : raced;
+	}
+}
@@ -0,0 +1,57 @@
+package com.rtcsoft.sevakendra.services;
+
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import com.rtcsoft.sevakendra.entities.Customer;
+import com.rtcsoft.sevakendra.repositories.CustomerRepository;
+import com.rtcsoft.sevakendra.utils.TextNormalizer;
+
+/**
+ * Fills name_key for customers saved before the column existed. Rows whose key
+ * is already taken by another customer of the same user are left empty and
+ * logged, they are duplicates the old check let through. Saving such a row
+ * computes its key again, and the update is refused with 409 until the
+ * customer is renamed.
+ */
+@Component
+public class CustomerNameKeyBackfill {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(CustomerNameKeyBackfill.class);
+
+	@Autowired
+	private CustomerRepository customerRepository;
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void backfill() {
+		long lastId = 0;
+		int updated = 0;
+		List<Customer> batch;
+		do {
+			batch = customerRepository.findTop500ByNameKeyIsNullAndIdGreaterThanOrderByIdAsc(lastId);
+			for (Customer customer : batch) {
+				lastId = customer.getId();
+				String nameKey = TextNormalizer.nameKey(customer.getFirstName(), customer.getMiddleName(),
+						customer.getLastName());
+				if (customerRepository.existsByUserIdAndNameKey(customer.getUserId(), nameKey)) {
+					LOGGER.warn("Customer {} duplicates name key {} of user {}", customer.getId(), nameKey,
+							customer.getUserId());
+					continue;
+				}
+				customer.setNameKey(nameKey);
+				customerRepository.save(customer);
+				updated++;
+			}
+		} while (!batch.isEmpty());
+
+		if (updated > 0) {
+			LOGGER.info("Backfilled name key of {} customers", updated);
+		}
+	}
+}
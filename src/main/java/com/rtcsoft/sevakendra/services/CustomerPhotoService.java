@@ -0,0 +1,160 @@
+package com.rtcsoft.sevakendra.services;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import com.rtcsoft.sevakendra.entities.Customer;
+import com.rtcsoft.sevakendra.enums.PhotoVariant;
+import com.rtcsoft.sevakendra.exceptions.ApiException;
+import com.rtcsoft.sevakendra.repositories.CustomerRepository;
+import com.rtcsoft.sevakendra.responses.CustomerResponse;
+import com.rtcsoft.sevakendra.services.PhotoStorageService.StoredPhoto;
+import com.rtcsoft.sevakendra.services.UploadService.UploadState;
+import com.rtcsoft.sevakendra.utils.FileSender;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Serves customer photos and their size variants. A photo file never changes
+ * once stored, so the content hash doubles as a strong ETag, and URLs carrying
+ * it as ?v= can be cached by the client for good. Deliberately not
+ * transactional, no connection is held while a file is sent or stored.
+ */
+@Service
+public class CustomerPhotoService {
+
+	private static final String FULL_SIZE = "full";
+	private static final CacheControl IMMUTABLE = CacheControl.maxAge(Duration.ofDays(365)).cachePrivate()
+			.immutable();
+	private static final CacheControl REVALIDATE = CacheControl.noCache().cachePrivate();
+
+	@Autowired
+	private CustomerCache customerCache;
+
+	@Autowired
+	private CustomerRepository customerRepository;
+
+	@Autowired
+	private SharedService sharedService;
+
+	@Autowired
+	private PhotoStorageService photoStorageService;
+
+	@Autowired
+	private PhotoVariantService photoVariantService;
+
+	@Autowired
+	private UploadService uploadService;
+
+	@Autowired
+	private CustomerService customerService;
+
+	/**
+	 * Link a finished resumable upload to a customer as its photo. The upload is
+	 * only removed once the attach has committed, a wrong customer id or a failed
+	 * write leaves it in place for another try.
+	 */
+	public ResponseEntity<CustomerResponse> attachUpload(long id, String uploadId)
+			throws ApiException, IOException {
+		long authUserId = sharedService.getAuthUserId();
+		UploadState upload = uploadService.find(authUserId, uploadId);
+		Path completed = uploadService.completedFile(upload);
+		// Checked on the primary before any file is touched, attachPhoto checks again in its transaction
+		if (customerRepository.findById(id).filter(c -> c.getUserId() == authUserId).isEmpty()) {
+			throw new ApiException(HttpStatus.NOT_FOUND.value(), "Customer not found with id " + id);
+		}
+		// Stored outside the transaction, like a multipart photo
+		StoredPhoto photo = photoStorageService.store(completed, upload.filename());
+		return customerService.attachPhoto(authUserId, id, photo, upload.id());
+	}
+
+	public void serveImage(HttpServletRequest request, HttpServletResponse response, long id, String size,
+			String version) throws ApiException, IOException {
+		long authUserId = sharedService.getAuthUserId();
+		String sizeKey = size == null ? FULL_SIZE : size.toLowerCase(Locale.ROOT);
+		// Checked before any header is set, an unknown size is the client's mistake
+		PhotoVariant variant = FULL_SIZE.equals(sizeKey) ? null : variantOf(sizeKey);
+		Optional<CustomerResponse> customer = customerCache.findById(id).filter(c -> c.userId() == authUserId);
+		if (customer.isEmpty() || customer.get().imageUrl() == null) {
+			response.sendError(HttpServletResponse.SC_NOT_FOUND);
+			return;
+		}
+
+		String hash = customer.get().imageHash();
+		if (hash == null) {
+			// The cached response has no path, the row has
+			Optional<String> image = customerRepository.findById(id).map(Customer::getImage);
+			if (image.isEmpty()) {
+				response.sendError(HttpServletResponse.SC_NOT_FOUND);
+				return;
+			}
+			serveLegacyImage(request, response, Paths.get(image.get()));
+			return;
+		}
+
+		Optional<StoredPhoto> photo = photoStorageService.findByHash(hash);
+		if (photo.isEmpty()) {
+			response.sendError(HttpServletResponse.SC_NOT_FOUND);
+			return;
+		}
+
+		String eTag = "\"" + hash + "-" + sizeKey + "\"";
+		response.setHeader(HttpHeaders.CACHE_CONTROL,
+				(hash.equals(version) ? IMMUTABLE : REVALIDATE).getHeaderValue());
+		if (new ServletWebRequest(request, response).checkNotModified(eTag)) {
+			return;
+		}
+
+		Path file = variant == null ? photo.get().path() : photoVariantService.variant(photo.get(), variant);
+		FileSender.send(request, response, file, mediaTypeOf(file));
+	}
+
+	/**
+	 * Photos stored before content addressing have no hash, and their file may be
+	 * replaced in place, so only a weak validator is safe.
+	 */
+	private void serveLegacyImage(HttpServletRequest request, HttpServletResponse response, Path file)
+			throws IOException {
+		if (!Files.isReadable(file)) {
+			response.sendError(HttpServletResponse.SC_NOT_FOUND);
+			return;
+		}
+		BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+		String eTag = String.format("W/\"%x-%x\"", attributes.size(), attributes.lastModifiedTime().toMillis());
+		response.setHeader(HttpHeaders.CACHE_CONTROL, REVALIDATE.getHeaderValue());
+		if (new ServletWebRequest(request, response).checkNotModified(eTag)) {
+			return;
+		}
+		FileSender.send(request, response, file, mediaTypeOf(file));
+	}
+
+	private static PhotoVariant variantOf(String size) throws ApiException {
+		for (PhotoVariant variant : PhotoVariant.values()) {
+			if (variant.key().equals(size)) {
+				return variant;
+			}
+		}
+		throw new ApiException(HttpStatus.BAD_REQUEST.value(), "Unknown image size: " + size);
+	}
+
+	private static MediaType mediaTypeOf(Path file) {
+		return MediaTypeFactory.getMediaType(file.getFileName().toString()).orElse(MediaType.APPLICATION_OCTET_STREAM);
+	}
+}
@@ -0,0 +1,358 @@
+package com.rtcsoft.sevakendra.services;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.rtcsoft.sevakendra.configs.ReadWriteRoutingDataSource;
+import com.rtcsoft.sevakendra.entities.Customer;
+import com.rtcsoft.sevakendra.entities.SealedString;
+import com.rtcsoft.sevakendra.entities.SyncChange;
+import com.rtcsoft.sevakendra.enums.SyncEntityType;
+import com.rtcsoft.sevakendra.repositories.CustomerRepository;
+import com.rtcsoft.sevakendra.repositories.SyncChangeRepository;
+import com.rtcsoft.sevakendra.responses.CustomerSearchHit;
+import com.rtcsoft.sevakendra.utils.TextNormalizer;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * In-memory customer search, one inverted index per operator. Names and place
+ * are indexed as trigrams of the folded transliteration plus a phonetic key per
+ * word, phone numbers as digit trigrams and Aadhaar by its last four digits.
+ * A tenant is loaded from the primary on its first search. Writes on this node
+ * update it right after commit, and every node polls the sync_changes outbox
+ * for writes made elsewhere and re-reads the customers that changed. Tenants
+ * that were not searched for a while are dropped and load again on demand.
+ */
+@Service
+public class CustomerSearchIndex {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(CustomerSearchIndex.class);
+
+	private static final String PHONETIC_PREFIX = "~";
+	private static final String AADHAR_PREFIX = "#";
+	private static final double PHONETIC_WEIGHT = 1.0;
+	private static final double AADHAR_WEIGHT = 2.0;
+	private static final double MIN_SCORE = 0.5;
+
+	private static final int PAGE_SIZE = 1000;
+
+	@Autowired
+	private CustomerRepository customerRepository;
+
+	@Autowired
+	private SyncChangeRepository syncChangeRepository;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Value("${sync.lag-seconds:5}")
+	private long lagSeconds;
+
+	@Value("${search.index.idle-minutes:30}")
+	private long idleMinutes;
+
+	private final Map<Long, TenantIndex> tenants = new ConcurrentHashMap<>();
+	private final TransactionTemplate primaryRead;
+	// Held across the outbox reads, a monitor there would pin a virtual thread
+	private final ReentrantLock pollLock = new ReentrantLock();
+	// Outbox position, -1 until it could be read at startup
+	private long lastSeenId = -1;
+
+	public CustomerSearchIndex(PlatformTransactionManager transactionManager) {
+		// A new transaction, the caller's may already hold a replica connection
+		this.primaryRead = new TransactionTemplate(transactionManager);
+		primaryRead.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+		primaryRead.setReadOnly(true);
+	}
+
+	private record Entry(long id, String fullName, String place, String phoneNumber, Set<String> terms) {
+	}
+
+	private static final class TenantIndex {
+		private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+		private final Map<String, Set<Long>> postings = new ConcurrentHashMap<>();
+		// Not synchronized, loading blocks on JDBC and would pin a virtual thread
+		private final ReentrantLock lock = new ReentrantLock();
+		private volatile boolean loaded;
+		private volatile long lastUsed = System.currentTimeMillis();
+
+		private void put(Entry entry) {
+			remove(entry.id());
+			entries.put(entry.id(), entry);
+			for (String term : entry.terms()) {
+				postings.computeIfAbsent(term, t -> ConcurrentHashMap.newKeySet()).add(entry.id());
+			}
+		}
+
+		private void remove(long id) {
+			Entry previous = entries.remove(id);
+			if (previous == null) {
+				return;
+			}
+			for (String term : previous.terms()) {
+				postings.computeIfPresent(term, (t, ids) -> {
+					ids.remove(id);
+					return ids.isEmpty() ? null : ids;
+				});
+			}
+		}
+	}
+
+	public List<CustomerSearchHit> search(long userId, String query, int limit) {
+		TenantIndex tenant = loadedTenant(userId);
+		tenant.lastUsed = System.currentTimeMillis();
+		Map<Long, Double> scores = new HashMap<>();
+
+		for (String token : TextNormalizer.tokens(query)) {
+			Set<String> grams = token.chars().allMatch(Character::isDigit) ? TextNormalizer.trigrams(token)
+					: TextNormalizer.trigrams(TextNormalizer.fold(token));
+			double gramWeight = 1.0 / grams.size();
+			for (String gram : grams) {
+				addScore(scores, tenant.postings.get(gram), gramWeight);
+			}
+			addScore(scores, tenant.postings.get(PHONETIC_PREFIX + TextNormalizer.phoneticKey(token)), PHONETIC_WEIGHT);
+			if (token.length() == 4) {
+				addScore(scores, tenant.postings.get(AADHAR_PREFIX + token), AADHAR_WEIGHT);
+			}
+		}
+
+		PriorityQueue<Map.Entry<Long, Double>> top = new PriorityQueue<>(Map.Entry.comparingByValue());
+		for (Map.Entry<Long, Double> score : scores.entrySet()) {
+			if (score.getValue() < MIN_SCORE) {
+				continue;
+			}
+			top.offer(score);
+			if (top.size() > limit) {
+				top.poll();
+			}
+		}
+
+		List<CustomerSearchHit> hits = new ArrayList<>(top.size());
+		for (Map.Entry<Long, Double> score : top) {
+			Entry entry = tenant.entries.get(score.getKey());
+			if (entry != null) {
+				hits.add(new CustomerSearchHit(entry.id(), entry.fullName(), entry.place(), entry.phoneNumber(),
+						score.getValue()));
+			}
+		}
+		hits.sort(Comparator.comparingDouble(CustomerSearchHit::score).reversed());
+		return hits;
+	}
+
+	/**
+	 * Index a created or updated customer. Tenants that have not been searched yet
+	 * are skipped, they are read fresh from the database on first use.
+	 */
+	public void upsert(Customer customer) {
+		TenantIndex tenant = tenants.get(customer.getUserId());
+		if (tenant != null) {
+			tenant.lock.lock();
+			try {
+				tenant.put(toEntry(customer));
+			} finally {
+				tenant.lock.unlock();
+			}
+		}
+	}
+
+	public void remove(long userId, long customerId) {
+		TenantIndex tenant = tenants.get(userId);
+		if (tenant != null) {
+			tenant.lock.lock();
+			try {
+				tenant.remove(customerId);
+			} finally {
+				tenant.lock.unlock();
+			}
+		}
+	}
+
+	private TenantIndex loadedTenant(long userId) {
+		TenantIndex tenant = tenants.computeIfAbsent(userId, id -> new TenantIndex());
+		if (!tenant.loaded) {
+			tenant.lock.lock();
+			try {
+				if (!tenant.loaded) {
+					long start = System.currentTimeMillis();
+					for (Customer customer : customerRepository.findAllByUserId(userId)) {
+						tenant.put(toEntry(customer));
+					}
+					tenant.loaded = true;
+					LOGGER.info("Search index for user {} loaded {} customers in {} ms", userId,
+							tenant.entries.size(), System.currentTimeMillis() - start);
+				}
+			} finally {
+				tenant.lock.unlock();
+			}
+		}
+		return tenant;
+	}
+
+	/**
+	 * Applies writes of all nodes to the loaded tenants. Outbox ids are handed out
+	 * before commit, so like {@link SyncService} the position only moves past rows
+	 * older than the lag window, and the rows inside it are read again on every
+	 * poll. Re-reading a customer is idempotent, so a change seen twice is
+	 * harmless.
+	 */
+	@Scheduled(fixedDelayString = "${search.index.poll-ms:5000}")
+	public void poll() {
+		pollLock.lock();
+		try {
+			LocalDateTime visibleBefore = visibleBefore();
+			if (lastSeenId < 0) {
+				start(visibleBefore);
+				return;
+			}
+			List<SyncChange> rows;
+			do {
+				long afterId = lastSeenId;
+				rows = fromPrimary(
+						() -> syncChangeRepository.findAfter(afterId, visibleBefore, PageRequest.ofSize(PAGE_SIZE)));
+				refresh(rows);
+				if (!rows.isEmpty()) {
+					lastSeenId = rows.get(rows.size() - 1).getId();
+				}
+			} while (rows.size() == PAGE_SIZE);
+			refresh(fromPrimary(() -> syncChangeRepository.findChangedSince(visibleBefore)));
+		} catch (DataAccessException e) {
+			LOGGER.warn("Could not poll customer changes for the search index: {}", e.getMessage());
+		} finally {
+			pollLock.unlock();
+		}
+	}
+
+	// Before any tenant can load, older changes are in the tables already
+	@PostConstruct
+	public void start() {
+		try {
+			start(visibleBefore());
+		} catch (DataAccessException e) {
+			LOGGER.warn("Could not read the sync position, the first poll retries: {}", e.getMessage());
+		}
+	}
+
+	private void start(LocalDateTime visibleBefore) {
+		Long head = fromPrimary(() -> syncChangeRepository.findHead(visibleBefore));
+		lastSeenId = head == null ? 0 : head;
+	}
+
+	private LocalDateTime visibleBefore() {
+		return fromPrimary(() -> jdbcTemplate.queryForObject("SELECT CURRENT_TIMESTAMP(6)", LocalDateTime.class))
+				.minusSeconds(lagSeconds);
+	}
+
+	@Scheduled(fixedDelayString = "${search.index.evict-interval-ms:60000}")
+	public void evictIdle() {
+		long idleBefore = System.currentTimeMillis() - idleMinutes * 60_000;
+		int before = tenants.size();
+		tenants.values().removeIf(tenant -> tenant.loaded && tenant.lastUsed < idleBefore);
+		if (tenants.size() < before) {
+			LOGGER.info("Dropped the search index of {} idle users", before - tenants.size());
+		}
+	}
+
+	private void refresh(List<SyncChange> rows) {
+		Map<Long, Set<Long>> changed = new HashMap<>();
+		for (SyncChange row : rows) {
+			TenantIndex tenant = tenants.get(row.getUserId());
+			// A tenant still loading reads the current rows anyway
+			if (row.getEntityType() == SyncEntityType.CUSTOMER && tenant != null && tenant.loaded) {
+				changed.computeIfAbsent(row.getUserId(), id -> new HashSet<>()).add(row.getEntityId());
+			}
+		}
+		changed.forEach((userId, ids) -> {
+			Map<Long, Entry> current = fromPrimary(() -> {
+				Map<Long, Entry> entries = new HashMap<>();
+				for (Customer customer : customerRepository.findAllById(ids)) {
+					if (customer.getUserId() == userId) {
+						entries.put(customer.getId(), toEntry(customer));
+					}
+				}
+				return entries;
+			});
+			TenantIndex tenant = tenants.get(userId);
+			if (tenant == null) {
+				return;
+			}
+			tenant.lock.lock();
+			try {
+				for (Long id : ids) {
+					Entry entry = current.get(id);
+					if (entry == null) {
+						tenant.remove(id);
+					} else {
+						tenant.put(entry);
+					}
+				}
+			} finally {
+				tenant.lock.unlock();
+			}
+		});
+	}
+
+	// The index is shared by the node, it must not be filled from a lagging replica
+	private <T> T fromPrimary(Supplier<T> loader) {
+		return ReadWriteRoutingDataSource.onPrimary(() -> primaryRead.execute(status -> loader.get()));
+	}
+
+	private static void addScore(Map<Long, Double> scores, Set<Long> ids, double weight) {
+		if (ids != null) {
+			for (Long id : ids) {
+				scores.merge(id, weight, Double::sum);
+			}
+		}
+	}
+
+	private static Entry toEntry(Customer customer) {
+		Set<String> terms = new HashSet<>();
+		String text = Stream.of(customer.getFirstName(), customer.getMiddleName(), customer.getLastName(),
+				customer.getPlace()).filter(Objects::nonNull).collect(Collectors.joining(" "));
+		for (String token : TextNormalizer.tokens(text)) {
+			terms.addAll(TextNormalizer.trigrams(TextNormalizer.fold(token)));
+			terms.add(PHONETIC_PREFIX + TextNormalizer.phoneticKey(token));
+		}
+
+		// Searching needs the plain numbers, they are decrypted once when the tenant loads
+		String phoneNumber = SealedString.reveal(customer.getPhoneNumber());
+		String phone = TextNormalizer.digits(phoneNumber);
+		if (!phone.isEmpty()) {
+			terms.addAll(TextNormalizer.trigrams(phone));
+		}
+		String aadhar = TextNormalizer.digits(SealedString.reveal(customer.getAadharNumber()));
+		if (aadhar.length() >= 4) {
+			terms.add(AADHAR_PREFIX + aadhar.substring(aadhar.length() - 4));
+		}
+
+		String fullName = Stream.of(customer.getFirstName(), customer.getMiddleName(), customer.getLastName())
+				.filter(Objects::nonNull).map(String::trim).collect(Collectors.joining(" "));
+		return new Entry(customer.getId(), fullName, customer.getPlace(), phoneNumber, terms);
+	}
+}
@@ -1,35 +1,40 @@
 package com.rtcsoft.sevakendra.services;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
 import java.util.List;
-import java.util.Objects;
+import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
-import org.springframework.web.multipart.MultipartFile;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import com.rtcsoft.sevakendra.configs.PaginationProperties;
 import com.rtcsoft.sevakendra.configs.StorageProperties;
 import com.rtcsoft.sevakendra.controllers.UserController;
 import com.rtcsoft.sevakendra.dtos.CustomerDTO;
 import com.rtcsoft.sevakendra.entities.Customer;
+import com.rtcsoft.sevakendra.entities.SealedString;
+import com.rtcsoft.sevakendra.enums.RollupDimension;
+import com.rtcsoft.sevakendra.enums.SyncEntityType;
+import com.rtcsoft.sevakendra.enums.SyncOperation;
 import com.rtcsoft.sevakendra.exceptions.ApiException;
+import com.rtcsoft.sevakendra.projections.CustomerSummary;
 import com.rtcsoft.sevakendra.repositories.CustomerRepository;
-
-import jakarta.servlet.http.HttpServletRequest;
-import jakarta.servlet.http.HttpSession;
-import jakarta.transaction.Transactional;
+import com.rtcsoft.sevakendra.responses.CustomerResponse;
+import com.rtcsoft.sevakendra.responses.CustomerSearchHit;
+import com.rtcsoft.sevakendra.responses.PageResponse;
+import com.rtcsoft.sevakendra.services.PhotoStorageService.StoredPhoto;
+import com.rtcsoft.sevakendra.utils.KeysetCursor;
+import com.rtcsoft.sevakendra.utils.TextNormalizer;
 
 @Service
 @Transactional
@@ -40,137 +45,287 @@ public class CustomerService {
 
 	private static final Logger logger = LoggerFactory.getLogger(UserController.class);
 
-	private final Path rootLocation;
-
 	private SharedService sharedService;
 
+	@Autowired
+	private PaginationProperties paginationProperties;
+
+	@Autowired
+	private CustomerSearchIndex searchIndex;
+
+	@Autowired
+	private CustomerNameFilter nameFilter;
+
+	@Autowired
+	private CustomerCache customerCache;
+
+	@Autowired
+	private PhotoVariantService photoVariantService;
+
+	@Autowired
+	private UploadService uploadService;
+
+	@Autowired
+	private SyncService syncService;
+
+	@Autowired
+	private DashboardService dashboardService;
+
+	@Autowired
+	private FieldCipher fieldCipher;
+
 	@Autowired
 	public CustomerService(StorageProperties properties, SharedService sharedService) {
 		if (properties.getLocation().trim().isEmpty()) {
 			throw new RuntimeException("File upload location cannot be empty.");
 		}
-		this.rootLocation = Paths.get(properties.getLocation());
 		this.sharedService = sharedService;
 	}
 
-	private Customer mapDtoToCustomer(CustomerDTO input, Optional<Customer> existingCustomerOpt) {
+	/**
+	 * @param userId tenant of the customer, always the signed in user and never
+	 *               the userId of the request body
+	 */
+	static Customer mapDtoToCustomer(CustomerDTO input, Optional<Customer> existingCustomerOpt, long userId) {
 		Customer customer = existingCustomerOpt.orElseGet(Customer::new);
 		customer.setFirstName(Optional.ofNullable(input.getFirstName()).orElse(customer.getFirstName()));
 		customer.setMiddleName(Optional.ofNullable(input.getMiddleName()).orElse(customer.getMiddleName()));
 		customer.setLastName(Optional.ofNullable(input.getLastName()).orElse(customer.getLastName()));
-		customer.setPhoneNumber(Optional.ofNullable(input.getPhoneNumber()).orElse(customer.getPhoneNumber()));
+		customer.setPhoneNumber(
+				Optional.ofNullable(input.getPhoneNumber()).map(SealedString::of).orElse(customer.getPhoneNumber()));
 		customer.setAddress(Optional.ofNullable(input.getAddress()).orElse(customer.getAddress()));
 		customer.setPlace(Optional.ofNullable(input.getPlace()).orElse(customer.getPlace()));
 		customer.setAge(Optional.ofNullable(input.getAge()).orElse(customer.getAge()));
 		customer.setCast(Optional.ofNullable(input.getCast()).orElse(customer.getCast()));
 		customer.setOccupation(Optional.ofNullable(input.getOccupation()).orElse(customer.getOccupation()));
-		customer.setAadharNumber(Optional.ofNullable(input.getAadharNumber()).orElse(customer.getAadharNumber()));
-		customer.setImage(Optional.ofNullable(input.getImage()).orElse(customer.getImage()));
-		customer.setUserId(input.getUserId() != 0 ? input.getUserId() : customer.getUserId());
+		customer.setAadharNumber(
+				Optional.ofNullable(input.getAadharNumber()).map(SealedString::of).orElse(customer.getAadharNumber()));
+		customer.setUserId(userId);
 		return customer;
 	}
 
-	public ResponseEntity<Customer> create(CustomerDTO input, MultipartFile file) throws ApiException, IOException {
-		validateExistingEntry(input);
-		Customer newCustomer = mapDtoToCustomer(input, Optional.empty());
-
-		if (file != null && !file.isEmpty()) {
-			newCustomer.setImage(storeFile(file, input));
-		}
+	/**
+	 * @param photo already durable in the photo store, the row only references it
+	 */
+	public ResponseEntity<CustomerResponse> create(CustomerDTO input, StoredPhoto photo) throws ApiException {
+		long authUserId = authUserId(input);
+		validateExistingEntry(input, authUserId);
+		Customer newCustomer = mapDtoToCustomer(input, Optional.empty(), authUserId);
+		setPhoto(newCustomer, photo);
 
 		customerRepository.save(newCustomer);
-		return ResponseEntity.status(HttpStatus.CREATED).body(newCustomer);
+		syncService.record(newCustomer.getUserId(), SyncEntityType.CUSTOMER, newCustomer.getId(),
+				SyncOperation.UPSERT);
+		dashboardService.record(newCustomer.getUserId(), null, DashboardService.dimensions(newCustomer));
+		afterCommit(() -> {
+			customerCache.evict(newCustomer);
+			searchIndex.upsert(newCustomer);
+			nameFilter.add(newCustomer.getUserId(), newCustomer.getNameKey());
+			renderVariants(photo);
+		});
+		return ResponseEntity.status(HttpStatus.CREATED).body(CustomerResponse.of(newCustomer));
 	}
 
-	public ResponseEntity<Customer> update(CustomerDTO input, MultipartFile file, long id)
-			throws ApiException, IOException {
-		Customer existingCustomer = customerRepository.findById(id)
-				.orElseThrow(() -> new ApiException("Customer not found with id " + id));
+	public ResponseEntity<CustomerResponse> update(CustomerDTO input, StoredPhoto photo, long id) throws ApiException {
+		long authUserId = authUserId(input);
+		Customer existingCustomer = ownedCustomer(authUserId, id);
 
-		validateExistingEntry(input, id);
-		Customer updatedCustomer = mapDtoToCustomer(input, Optional.of(existingCustomer));
-
-		if (file != null && !file.isEmpty()) {
-			updatedCustomer.setImage(storeFile(file, input));
-		}
+		validateExistingEntry(input, existingCustomer);
+		Map<RollupDimension, String> before = DashboardService.dimensions(existingCustomer);
+		Customer updatedCustomer = mapDtoToCustomer(input, Optional.of(existingCustomer), authUserId);
+		setPhoto(updatedCustomer, photo);
 
 		updatedCustomer.setId(id);
 		customerRepository.save(updatedCustomer);
+		syncService.record(updatedCustomer.getUserId(), SyncEntityType.CUSTOMER, id, SyncOperation.UPSERT);
+		dashboardService.record(authUserId, before, DashboardService.dimensions(updatedCustomer));
+		afterCommit(() -> {
+			customerCache.evict(updatedCustomer);
+			searchIndex.upsert(updatedCustomer);
+			nameFilter.add(updatedCustomer.getUserId(), updatedCustomer.getNameKey());
+			renderVariants(photo);
+		});
+
+		return ResponseEntity.status(HttpStatus.OK).body(CustomerResponse.of(updatedCustomer));
+	}
 
-		return ResponseEntity.status(HttpStatus.OK).body(updatedCustomer);
+	/**
+	 * @param uploadId resumable upload the photo came from, removed only after
+	 *                 commit so a failed attach can be retried without sending the
+	 *                 file again
+	 */
+	public ResponseEntity<CustomerResponse> attachPhoto(long authUserId, long id, StoredPhoto photo,
+			String uploadId) throws ApiException {
+		Customer customer = ownedCustomer(authUserId, id);
+		setPhoto(customer, photo);
+		customerRepository.save(customer);
+		syncService.record(authUserId, SyncEntityType.CUSTOMER, id, SyncOperation.UPSERT);
+		afterCommit(() -> {
+			customerCache.evict(customer);
+			renderVariants(photo);
+			try {
+				uploadService.delete(uploadId);
+			} catch (IOException e) {
+				// Expires with the other stale uploads
+				logger.warn("Could not remove upload {}: {}", uploadId, e.getMessage());
+			}
+		});
+		return ResponseEntity.ok(CustomerResponse.of(customer));
 	}
 
-	public ResponseEntity<List<Customer>> getAllUsers(HttpServletRequest request) {
-		long authUserId = sharedService.getUserIdFromHeader(request);
-		List<Customer> customers = customerRepository.findAllByUserId(authUserId);
-		return ResponseEntity.ok(customers);
+	@Transactional(readOnly = true)
+	public ResponseEntity<PageResponse<CustomerSummary>> getAllUsers(String cursor,
+			Integer size, boolean withTotal) throws ApiException {
+		long authUserId = sharedService.getAuthUserId();
+		int pageSize = paginationProperties.resolve(size);
+		KeysetCursor after = cursor == null || cursor.isBlank() ? null : KeysetCursor.decode(cursor);
+
+		return ResponseEntity.ok(customerCache.page(authUserId, cursor, pageSize, withTotal, () -> {
+			// Fetch one extra row to know whether there is a next page without counting
+			PageRequest limit = PageRequest.ofSize(pageSize + 1);
+			List<CustomerSummary> customers = after == null ? customerRepository.findPageByUserId(authUserId, limit)
+					: customerRepository.findPageByUserIdAfter(authUserId, after.updatedAt(), after.id(), limit);
+
+			Long total = withTotal ? customerRepository.countByUserId(authUserId) : null;
+			return PageResponse.of(customers, pageSize, c -> new KeysetCursor(c.updatedAt(), c.id()), total);
+		}));
+	}
+
+	@Transactional(readOnly = true)
+	public ResponseEntity<List<CustomerSearchHit>> search(String query, Integer limit) {
+		long authUserId = sharedService.getAuthUserId();
+		int maxHits = paginationProperties.resolve(limit);
+		return ResponseEntity.ok(searchIndex.search(authUserId, query, maxHits));
+	}
+
+	/**
+	 * Exact match on Aadhaar or phone number through the blind indexes, one index
+	 * probe whatever the number of customers.
+	 */
+	@Transactional(readOnly = true)
+	public ResponseEntity<List<CustomerResponse>> lookup(String aadhar, String phone)
+			throws ApiException {
+		long authUserId = sharedService.getAuthUserId();
+		if (aadhar != null && !aadhar.isBlank()) {
+			String index = fieldCipher.aadharIndex(authUserId, aadhar);
+			return ResponseEntity.ok(index == null ? List.of()
+					: customerRepository.findByUserIdAndAadharIndex(authUserId, index).map(CustomerResponse::of)
+							.stream().toList());
+		}
+		if (phone != null && !phone.isBlank()) {
+			String index = fieldCipher.phoneIndex(authUserId, phone);
+			return ResponseEntity.ok(index == null ? List.of()
+					: customerRepository.findByUserIdAndPhoneIndex(authUserId, index).stream().map(CustomerResponse::of)
+							.toList());
+		}
+		throw new ApiException("Either aadhar or phone is required");
 	}
 
-	public ResponseEntity<Optional<Customer>> findById(long id) {
-		Optional<Customer> customer = customerRepository.findById(id);
+	@Transactional(readOnly = true)
+	public ResponseEntity<Optional<CustomerResponse>> findById(long id) throws ApiException {
+		long authUserId = sharedService.getAuthUserId();
+		Optional<CustomerResponse> customer = customerCache.findById(id)
+				.filter(c -> c.userId() == authUserId);
+		if (customer.isEmpty()) {
+			throw notFound(id);
+		}
 		return ResponseEntity.status(HttpStatus.OK).body(customer);
 	}
 
-	public ResponseEntity<Customer> delete(long id) throws ApiException {
-		Customer existingCustomer = customerRepository.findById(id)
-				.orElseThrow(() -> new ApiException("Customer not found with id " + id));
+	public ResponseEntity<CustomerResponse> delete(long id) throws ApiException {
+		Customer existingCustomer = ownedCustomer(sharedService.getAuthUserId(), id);
 		customerRepository.deleteById(id);
-		return ResponseEntity.status(HttpStatus.OK).body(existingCustomer);
+		syncService.record(existingCustomer.getUserId(), SyncEntityType.CUSTOMER, id, SyncOperation.DELETE);
+		dashboardService.record(existingCustomer.getUserId(), DashboardService.dimensions(existingCustomer), null);
+		afterCommit(() -> {
+			customerCache.evict(existingCustomer);
+			searchIndex.remove(existingCustomer.getUserId(), id);
+		});
+		return ResponseEntity.status(HttpStatus.OK).body(CustomerResponse.of(existingCustomer));
 	}
 
-	private void validateExistingEntry(CustomerDTO input) throws ApiException {
-		String fullName = buildFullName(input);
-		List<Customer> existingCustomers = customerRepository.findByFullName(getTrimmedValue(input.getFirstName()),
-				getTrimmedValue(input.getMiddleName()), getTrimmedValue(input.getLastName()));
-		if (!existingCustomers.isEmpty()) {
-			throw new ApiException("Customer already exists with this name: " + fullName);
+	/**
+	 * The tenant is the signed in user. A body that names another user is
+	 * rejected rather than silently moved.
+	 */
+	private long authUserId(CustomerDTO input) throws ApiException {
+		long authUserId = sharedService.getAuthUserId();
+		if (input.getUserId() != 0 && input.getUserId() != authUserId) {
+			throw new ApiException(HttpStatus.FORBIDDEN.value(), "userId does not match the signed in user");
 		}
+		return authUserId;
 	}
 
-	private void validateExistingEntry(CustomerDTO input, long id) throws ApiException {
-		String fullName = buildFullName(input);
-		List<Customer> existingCustomers = customerRepository.findByFullNameExcludingMe(id,
-				getTrimmedValue(input.getFirstName()), getTrimmedValue(input.getMiddleName()),
-				getTrimmedValue(input.getLastName()));
-		if (!existingCustomers.isEmpty()) {
-			throw new ApiException("Customer already exists with this name: " + fullName);
-		}
+	// Another tenant's customer answers exactly like a missing one
+	private Customer ownedCustomer(long authUserId, long id) throws ApiException {
+		return customerRepository.findById(id).filter(c -> c.getUserId() == authUserId)
+				.orElseThrow(() -> notFound(id));
 	}
 
-	private String storeFile(MultipartFile file, CustomerDTO input) throws IOException {
-		String customerName = (getTrimmedValue(input.getFirstName()) + "-" + getTrimmedValue(input.getLastName()))
-				.toLowerCase();
-		Path destinationFile = rootLocation.resolve(Paths.get(file.getOriginalFilename())).normalize().toAbsolutePath();
+	private static ApiException notFound(long id) {
+		return new ApiException(HttpStatus.NOT_FOUND.value(), "Customer not found with id " + id);
+	}
 
-		if (!destinationFile.getParent().equals(rootLocation.toAbsolutePath())) {
-			throw new RuntimeException("Cannot store file outside the current directory.");
+	private void validateExistingEntry(CustomerDTO input, long userId) throws ApiException {
+		String nameKey = TextNormalizer.nameKey(input.getFirstName(), input.getMiddleName(), input.getLastName());
+		// The Bloom filter has no false negatives, only a possible match needs the index probe
+		if (nameFilter.mightExist(userId, nameKey) && customerRepository.existsByUserIdAndNameKey(userId, nameKey)) {
+			throw new ApiException(HttpStatus.CONFLICT.value(), "Customer already exists with this name");
+		}
+		String aadharIndex = fieldCipher.aadharIndex(userId, input.getAadharNumber());
+		if (aadharIndex != null && customerRepository.existsByUserIdAndAadharIndex(userId, aadharIndex)) {
+			throw new ApiException(HttpStatus.CONFLICT.value(), "Customer already exists with this Aadhaar number");
 		}
+	}
 
-		Path newDestinationFile = addPrefixToFile(destinationFile, customerName);
-		try (InputStream inputStream = file.getInputStream()) {
-			Files.copy(inputStream, newDestinationFile, StandardCopyOption.REPLACE_EXISTING);
+	private void validateExistingEntry(CustomerDTO input, Customer existingCustomer) throws ApiException {
+		long userId = existingCustomer.getUserId();
+		String nameKey = TextNormalizer.nameKey(
+				Optional.ofNullable(input.getFirstName()).orElse(existingCustomer.getFirstName()),
+				Optional.ofNullable(input.getMiddleName()).orElse(existingCustomer.getMiddleName()),
+				Optional.ofNullable(input.getLastName()).orElse(existingCustomer.getLastName()));
+		if (!nameKey.equals(existingCustomer.getNameKey())
+				&& customerRepository.existsByUserIdAndNameKeyAndIdNot(userId, nameKey, existingCustomer.getId())) {
+			throw new ApiException(HttpStatus.CONFLICT.value(), "Customer already exists with this name");
+		}
+
+		String aadharIndex = fieldCipher.aadharIndex(userId, input.getAadharNumber());
+		if (aadharIndex != null && customerRepository.existsByUserIdAndAadharIndexAndIdNot(userId, aadharIndex,
+				existingCustomer.getId())) {
+			throw new ApiException(HttpStatus.CONFLICT.value(), "Customer already exists with this Aadhaar number");
 		}
-		return newDestinationFile.toString();
 	}
 
-	private static String getTrimmedValue(String value) {
-		return Optional.ofNullable(value).orElse("").trim();
+	private static void setPhoto(Customer customer, StoredPhoto photo) {
+		if (photo != null) {
+			customer.setImage(photo.path().toString());
+			customer.setImageHash(photo.hash());
+		}
 	}
 
-	private static String buildFullName(CustomerDTO input) {
-		return Stream.of(input.getFirstName(), input.getMiddleName(), input.getLastName()).filter(Objects::nonNull)
-				.map(String::trim).collect(Collectors.joining(" "));
+	// Runs after commit, a full media queue must not turn the committed write into an error
+	private void renderVariants(StoredPhoto photo) {
+		if (photo == null) {
+			return;
+		}
+		try {
+			photoVariantService.generateVariants(photo);
+		} catch (TaskRejectedException e) {
+			logger.warn("Media queue full, variants of photo {} render on first request", photo.hash());
+		}
 	}
 
-	public static Path addPrefixToFile(Path originalFilePath, String customerName) {
-		String fileName = originalFilePath.getFileName().toString();
-		String fileExtension = "";
-		int lastDotIndex = fileName.lastIndexOf('.');
-		if (lastDotIndex != -1) {
-			fileExtension = fileName.substring(lastDotIndex);
-			fileName = fileName.substring(0, lastDotIndex);
+	// Side effects on in-memory state must not see writes that are rolled back
+	private static void afterCommit(Runnable action) {
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			action.run();
+			return;
 		}
-		String newFileName = customerName + "-" + fileName + fileExtension;
-		return originalFilePath.getParent().resolve(newFileName);
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+			@Override
+			public void afterCommit() {
+				action.run();
+			}
+		});
 	}
 }
@@ -0,0 +1,274 @@
+package com.rtcsoft.sevakendra.services;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.rtcsoft.sevakendra.entities.Customer;
+import com.rtcsoft.sevakendra.entities.CustomerDocument;
+import com.rtcsoft.sevakendra.entities.DashboardRollup;
+import com.rtcsoft.sevakendra.enums.RollupDimension;
+import com.rtcsoft.sevakendra.exceptions.ApiException;
+import com.rtcsoft.sevakendra.repositories.DashboardRollupRepository;
+import com.rtcsoft.sevakendra.responses.DailyCount;
+import com.rtcsoft.sevakendra.responses.DashboardSummary;
+
+
+/**
+ * Dashboard counters kept in dashboard_rollups. Writers pass the dimensions of
+ * a row before and after their change and the difference is upserted in the
+ * same transaction, so reading the dashboard is an index range scan whatever
+ * the size of the history. A nightly job on one node rebuilds each user's
+ * counters from the source tables to repair any drift.
+ */
+@Service
+public class DashboardService {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(DashboardService.class);
+
+	private static final int MAX_DAYS = 366;
+
+	private static final String RECONCILE_LOCK = "sevakendra.dashboard_reconcile";
+
+	private static final String UPSERT = "INSERT INTO dashboard_rollups (user_id, dimension, dim_value, total) "
+			+ "VALUES (?, ?, ?, ?) ON DUPLICATE KEY UPDATE total = total + VALUES(total)";
+
+	// Must group exactly like dimensions(Customer) and dimensions(CustomerDocument)
+	private static final Map<RollupDimension, String> REBUILD_QUERIES = Map.of(
+			RollupDimension.CUSTOMER_TOTAL, "SELECT '' v, COUNT(*) n FROM customers WHERE user_id = ?",
+			RollupDimension.CUSTOMER_CAST, groupBy("COALESCE(TRIM(`cast`), '')", "customers"),
+			RollupDimension.CUSTOMER_OCCUPATION, groupBy("COALESCE(TRIM(occupation), '')", "customers"),
+			RollupDimension.CUSTOMER_PLACE, groupBy("COALESCE(TRIM(place), '')", "customers"),
+			RollupDimension.CUSTOMER_DAY, groupBy("DATE_FORMAT(created_at, '%Y-%m-%d')", "customers"),
+			RollupDimension.DOCUMENT_TOTAL, "SELECT '' v, COUNT(*) n FROM customer_documents WHERE user_id = ?",
+			RollupDimension.DOCUMENT_TYPE, groupBy("COALESCE(TRIM(doc_name), '')", "customer_documents"),
+			RollupDimension.DOCUMENT_DAY, groupBy("DATE_FORMAT(created_at, '%Y-%m-%d')", "customer_documents"));
+
+	@Autowired
+	private DashboardRollupRepository rollupRepository;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+
+	@Autowired
+	private SharedService sharedService;
+
+	/**
+	 * Counter changes of one user, collected over any number of rows and applied
+	 * as one JDBC batch.
+	 */
+	public static final class Delta {
+		private final Map<RollupDimension, Map<String, Long>> changes = new EnumMap<>(RollupDimension.class);
+
+		/**
+		 * @param before dimensions of the row before the write, null when created
+		 * @param after  dimensions after the write, null when deleted
+		 */
+		public Delta change(Map<RollupDimension, String> before, Map<RollupDimension, String> after) {
+			if (before != null) {
+				before.forEach((dimension, value) -> add(dimension, value, -1));
+			}
+			if (after != null) {
+				after.forEach((dimension, value) -> add(dimension, value, 1));
+			}
+			return this;
+		}
+
+		private void add(RollupDimension dimension, String value, long count) {
+			changes.computeIfAbsent(dimension, d -> new HashMap<>()).merge(value, count, Long::sum);
+		}
+	}
+
+	public static Map<RollupDimension, String> dimensions(Customer customer) {
+		Map<RollupDimension, String> dimensions = new EnumMap<>(RollupDimension.class);
+		dimensions.put(RollupDimension.CUSTOMER_TOTAL, "");
+		dimensions.put(RollupDimension.CUSTOMER_CAST, value(customer.getCast()));
+		dimensions.put(RollupDimension.CUSTOMER_OCCUPATION, value(customer.getOccupation()));
+		dimensions.put(RollupDimension.CUSTOMER_PLACE, value(customer.getPlace()));
+		dimensions.put(RollupDimension.CUSTOMER_DAY, day(customer.getCreatedAt()));
+		return dimensions;
+	}
+
+	public static Map<RollupDimension, String> dimensions(CustomerDocument document) {
+		Map<RollupDimension, String> dimensions = new EnumMap<>(RollupDimension.class);
+		dimensions.put(RollupDimension.DOCUMENT_TOTAL, "");
+		dimensions.put(RollupDimension.DOCUMENT_TYPE, value(document.getDocName()));
+		dimensions.put(RollupDimension.DOCUMENT_DAY, day(document.getCreatedAt()));
+		return dimensions;
+	}
+
+	/**
+	 * Joins the caller's transaction.
+	 */
+	public void record(long userId, Map<RollupDimension, String> before, Map<RollupDimension, String> after) {
+		apply(userId, new Delta().change(before, after));
+	}
+
+	public void apply(long userId, Delta delta) {
+		List<Object[]> rows = new ArrayList<>();
+		delta.changes.forEach((dimension, values) -> values.forEach((value, count) -> {
+			if (count != 0) {
+				rows.add(new Object[] { userId, dimension.name(), value, count });
+			}
+		}));
+		if (!rows.isEmpty()) {
+			jdbcTemplate.batchUpdate(UPSERT, rows);
+		}
+	}
+
+	@Transactional(readOnly = true)
+	public ResponseEntity<DashboardSummary> summary() {
+		long authUserId = sharedService.getAuthUserId();
+		Map<RollupDimension, Map<String, Long>> counts = new EnumMap<>(RollupDimension.class);
+		for (DashboardRollup rollup : rollupRepository.findByUserIdAndDimensionIn(authUserId,
+				EnumSet.of(RollupDimension.CUSTOMER_TOTAL, RollupDimension.CUSTOMER_CAST,
+						RollupDimension.CUSTOMER_OCCUPATION, RollupDimension.CUSTOMER_PLACE,
+						RollupDimension.DOCUMENT_TOTAL, RollupDimension.DOCUMENT_TYPE))) {
+			if (rollup.getTotal() > 0) {
+				counts.computeIfAbsent(rollup.getDimension(), d -> new TreeMap<>()).put(rollup.getDimValue(),
+						rollup.getTotal());
+			}
+		}
+		return ResponseEntity.ok(new DashboardSummary(total(counts, RollupDimension.CUSTOMER_TOTAL),
+				total(counts, RollupDimension.DOCUMENT_TOTAL), counts(counts, RollupDimension.CUSTOMER_CAST),
+				counts(counts, RollupDimension.CUSTOMER_OCCUPATION), counts(counts, RollupDimension.CUSTOMER_PLACE),
+				counts(counts, RollupDimension.DOCUMENT_TYPE)));
+	}
+
+	@Transactional(readOnly = true)
+	public ResponseEntity<List<DailyCount>> daily(LocalDate from, LocalDate to)
+			throws ApiException {
+		long authUserId = sharedService.getAuthUserId();
+		LocalDate end = to == null ? LocalDate.now() : to;
+		LocalDate start = from == null ? end.minusDays(29) : from;
+		if (start.isAfter(end) || start.plusDays(MAX_DAYS).isBefore(end)) {
+			throw new ApiException("from must be before to and at most " + MAX_DAYS + " days apart");
+		}
+
+		Map<LocalDate, long[]> days = new TreeMap<>();
+		for (DashboardRollup rollup : rollupRepository.findRange(authUserId,
+				EnumSet.of(RollupDimension.CUSTOMER_DAY, RollupDimension.DOCUMENT_DAY), start.toString(),
+				end.toString())) {
+			long[] day = days.computeIfAbsent(LocalDate.parse(rollup.getDimValue()), d -> new long[2]);
+			day[rollup.getDimension() == RollupDimension.CUSTOMER_DAY ? 0 : 1] += rollup.getTotal();
+		}
+		List<DailyCount> counts = new ArrayList<>(days.size());
+		days.forEach((date, day) -> counts.add(new DailyCount(date, day[0], day[1])));
+		return ResponseEntity.ok(counts);
+	}
+
+	/**
+	 * Rebuild every user's counters from the source tables, one transaction per
+	 * user. INSERT ... SELECT reads the current rows with locks, so writes that
+	 * commit while a user is rebuilt are counted exactly once. Users whose rows
+	 * are all gone are rebuilt too, which clears their counters.
+	 *
+	 * Every node schedules the job, a MySQL named lock held on one connection
+	 * for the whole run lets only the first one through.
+	 */
+	@Scheduled(cron = "${dashboard.reconcile-cron:0 0 2 * * *}")
+	public void reconcile() {
+		jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+			if (!namedLock(connection, "SELECT GET_LOCK(?, 0)")) {
+				LOGGER.info("Dashboard reconcile is running on another node, skipped");
+				return null;
+			}
+			try {
+				rebuildAll();
+			} finally {
+				namedLock(connection, "SELECT RELEASE_LOCK(?)");
+			}
+			return null;
+		});
+	}
+
+	private void rebuildAll() {
+		List<Long> userIds = jdbcTemplate.queryForList("SELECT user_id FROM customers "
+				+ "UNION SELECT user_id FROM customer_documents UNION SELECT user_id FROM dashboard_rollups",
+				Long.class);
+		for (Long userId : userIds) {
+			try {
+				transactionTemplate.executeWithoutResult(status -> rebuild(userId));
+			} catch (DataAccessException e) {
+				LOGGER.warn("Could not rebuild dashboard of user {}: {}", userId, e.getMessage());
+			}
+		}
+		LOGGER.info("Rebuilt dashboard counters of {} users", userIds.size());
+	}
+
+	// Empty groups are not written, a user without rows ends up with no counters
+	private void rebuild(long userId) {
+		jdbcTemplate.update("DELETE FROM dashboard_rollups WHERE user_id = ?", userId);
+		REBUILD_QUERIES.forEach((dimension, query) -> jdbcTemplate.update(
+				"INSERT INTO dashboard_rollups (user_id, dimension, dim_value, total) SELECT ?, ?, g.v, g.n FROM ("
+						+ query + ") g WHERE g.n > 0",
+				userId, dimension.name(), userId));
+	}
+
+	private static boolean namedLock(Connection connection, String sql) throws SQLException {
+		try (PreparedStatement statement = connection.prepareStatement(sql)) {
+			statement.setString(1, RECONCILE_LOCK);
+			try (ResultSet result = statement.executeQuery()) {
+				return result.next() && result.getInt(1) == 1;
+			}
+		}
+	}
+
+	private static String groupBy(String expression, String table) {
+		return "SELECT " + expression + " v, COUNT(*) n FROM " + table + " WHERE user_id = ? GROUP BY v";
+	}
+
+	// Same as TRIM() in REBUILD_QUERIES, MySQL strips spaces only, String.trim() also tabs and newlines
+	private static String value(String value) {
+		if (value == null) {
+			return "";
+		}
+		int start = 0;
+		int end = value.length();
+		while (start < end && value.charAt(start) == ' ') {
+			start++;
+		}
+		while (end > start && value.charAt(end - 1) == ' ') {
+			end--;
+		}
+		return value.substring(start, end);
+	}
+
+	private static String day(LocalDateTime createdAt) {
+		return (createdAt == null ? LocalDate.now() : createdAt.toLocalDate()).toString();
+	}
+
+	private static long total(Map<RollupDimension, Map<String, Long>> counts, RollupDimension dimension) {
+		return counts.getOrDefault(dimension, Map.of()).getOrDefault("", 0L);
+	}
+
+	private static Map<String, Long> counts(Map<RollupDimension, Map<String, Long>> counts,
+			RollupDimension dimension) {
+		return counts.getOrDefault(dimension, Map.of());
+	}
+}
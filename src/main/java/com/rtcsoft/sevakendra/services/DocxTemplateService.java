@@ -3,9 +3,11 @@ package com.rtcsoft.sevakendra.services;
 import java.io.ByteArrayOutputStream;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.HashMap;
@@ -13,7 +15,9 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
-import java.util.function.Supplier;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.apache.poi.ooxml.POIXMLException;
 import org.apache.poi.util.Units;
@@ -27,18 +31,39 @@ import org.apache.poi.xwpf.usermodel.XWPFTableRow;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
 import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import com.rtcsoft.sevakendra.configs.AsyncConfig;
+import com.rtcsoft.sevakendra.configs.PaginationProperties;
 import com.rtcsoft.sevakendra.dtos.CustomerDocumentDTO;
 import com.rtcsoft.sevakendra.entities.Customer;
 import com.rtcsoft.sevakendra.entities.CustomerDocument;
+import com.rtcsoft.sevakendra.entities.SealedString;
+import com.rtcsoft.sevakendra.enums.RollupDimension;
+import com.rtcsoft.sevakendra.enums.SyncEntityType;
+import com.rtcsoft.sevakendra.enums.SyncOperation;
 import com.rtcsoft.sevakendra.exceptions.ApiException;
+import com.rtcsoft.sevakendra.exceptions.ServiceBusyException;
+import com.rtcsoft.sevakendra.projections.CustomerDocumentSummary;
 import com.rtcsoft.sevakendra.repositories.CustomerDocumentRepository;
 import com.rtcsoft.sevakendra.repositories.CustomerRepository;
+import com.rtcsoft.sevakendra.responses.CustomerDocumentResponse;
+import com.rtcsoft.sevakendra.responses.PageResponse;
+import com.rtcsoft.sevakendra.utils.KeysetCursor;
 
-import jakarta.servlet.http.HttpServletRequest;
 
 /**
  * @class WordService
@@ -58,17 +83,32 @@ public class DocxTemplateService {
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(DocxTemplateService.class);
 
-	@Autowired
-	CustomerRepository customerRepository;
+	private static final long BUSY_RETRY_AFTER_SECONDS = 5;
 
 	@Autowired
 	CustomerDocumentRepository customerDocumentRepository;
 
+	@Autowired
+	private CustomerRepository customerRepository;
+
 	@Autowired
 	private SharedService sharedService;
 
 	@Autowired
-	HttpServletRequest request;
+	private PaginationProperties paginationProperties;
+
+	@Autowired
+	private SyncService syncService;
+
+	@Autowired
+	private DashboardService dashboardService;
+
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+
+	@Autowired
+	@Qualifier(AsyncConfig.DOCUMENT_EXECUTOR)
+	private ThreadPoolTaskExecutor documentExecutor;
 
 	/**
 	 * Create or Update help to generate document with new/updated input
@@ -77,23 +117,51 @@ public class DocxTemplateService {
 	 * @return CustomerDocument
 	 * @throws ApiException
 	 */
-	public ResponseEntity<CustomerDocument> createOrUpdate(CustomerDocumentDTO input) throws ApiException {
+	public ResponseEntity<CustomerDocumentResponse> createOrUpdate(CustomerDocumentDTO input) throws ApiException {
+		long userId = sharedService.getAuthUserId();
+		if (input.getUserId() != 0 && input.getUserId() != userId) {
+			throw new ApiException(HttpStatus.FORBIDDEN.value(), "userId does not match the signed in user");
+		}
+		// Both the document and the customer it is generated for must belong to the caller
+		Optional<CustomerDocument> existingCustDoc = Optional.empty();
+		if (input.getId() != 0) {
+			existingCustDoc = Optional.of(customerDocumentRepository.findWithUserId(input.getId(), userId)
+					.orElseThrow(() -> documentNotFound(input.getId())));
+		}
+		long customerId = input.getCustomerId() != 0 ? input.getCustomerId()
+				: existingCustDoc.map(CustomerDocument::getCustomerId).orElse(0L);
+		// Read fresh, a certificate must not be generated from a cached copy
+		Customer customer = customerRepository.findById(customerId).filter(c -> c.getUserId() == userId)
+				.orElseThrow(() -> new ApiException(HttpStatus.NOT_FOUND.value(),
+						"Customer not found with id " + customerId));
+
 		try {
-			Optional<CustomerDocument> existingCustDoc = customerDocumentRepository.findById(input.getId());
-			String path = generateDocument(input, existingCustDoc);
+			String path = generateOnPool(input, existingCustDoc, customer);
 			if (path != null) {
 				CustomerDocument custDoc = existingCustDoc.orElseGet(CustomerDocument::new);
-				custDoc.setUserId(Optional.ofNullable(input.getUserId()).orElse(custDoc.getUserId()));
-				custDoc.setCustomerId(Optional.ofNullable(input.getCustomerId()).orElse(custDoc.getCustomerId()));
+				Map<RollupDimension, String> before = existingCustDoc.map(DashboardService::dimensions).orElse(null);
+				custDoc.setUserId(userId);
+				custDoc.setCustomerId(customerId);
 				custDoc.setDocName(Optional.ofNullable(input.getDocName()).orElse(custDoc.getDocName()));
 				custDoc.setThumbnail(Optional.ofNullable(input.getThumbnail()).orElse(custDoc.getThumbnail()));
 				custDoc.setDocPath(path);
 
-				customerDocumentRepository.save(custDoc);
+				transactionTemplate.executeWithoutResult(status -> {
+					customerDocumentRepository.save(custDoc);
+					syncService.record(custDoc.getUserId(), SyncEntityType.DOCUMENT, custDoc.getId(),
+							SyncOperation.UPSERT);
+					dashboardService.record(userId, before, DashboardService.dimensions(custDoc));
+				});
 
-				return ResponseEntity.status(HttpStatus.CREATED).body(custDoc);
+				return ResponseEntity.status(HttpStatus.CREATED).body(CustomerDocumentResponse.of(custDoc));
 			}
 
+		} catch (ServiceBusyException e) {
+			throw e;
+		} catch (InterruptedException e) {
+			// Shutting down, keep the flag for the caller and let the client retry
+			Thread.currentThread().interrupt();
+			throw new ServiceBusyException("Document generation was interrupted", BUSY_RETRY_AFTER_SECONDS);
 		} catch (Exception e) {
 			e.printStackTrace();
 			LOGGER.error(e.getMessage());
@@ -101,49 +169,135 @@ public class DocxTemplateService {
 		return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
 	}
 
-	public ResponseEntity<List<CustomerDocument>> getAllDocuments() {
-		Long userId = sharedService.getUserIdFromSession(request);
-		List<CustomerDocument> customerDocuments = customerDocumentRepository.findAllByUserId(userId);
-		return ResponseEntity.status(HttpStatus.OK).body(customerDocuments);
+	private String generateOnPool(CustomerDocumentDTO input, Optional<CustomerDocument> existingCustDoc,
+			Customer customer) throws IOException, InterruptedException {
+		Future<String> future;
+		try {
+			future = documentExecutor.submit(() -> generateDocument(input, existingCustDoc, customer));
+		} catch (RejectedExecutionException e) {
+			throw new ServiceBusyException("Too many documents being generated", BUSY_RETRY_AFTER_SECONDS);
+		}
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			future.cancel(true);
+			throw e;
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException io) {
+				throw io;
+			}
+			if (e.getCause() instanceof RuntimeException runtime) {
+				throw runtime;
+			}
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	/**
+	 * List documents of the logged in user one keyset page at a time
+	 * 
+	 * @param cursor    nextCursor of the previous page, null for the first page
+	 * @param size      requested page size
+	 * @param withTotal also count all documents of the user
+	 * @return page of document summaries
+	 * @throws ApiException
+	 */
+	@Transactional(readOnly = true)
+	public ResponseEntity<PageResponse<CustomerDocumentSummary>> getAllDocuments(String cursor, Integer size,
+			boolean withTotal) throws ApiException {
+		long userId = sharedService.getAuthUserId();
+		int pageSize = paginationProperties.resolve(size);
+		PageRequest limit = PageRequest.ofSize(pageSize + 1);
+
+		List<CustomerDocumentSummary> customerDocuments;
+		if (cursor == null || cursor.isBlank()) {
+			customerDocuments = customerDocumentRepository.findPageByUserId(userId, limit);
+		} else {
+			KeysetCursor after = KeysetCursor.decode(cursor);
+			customerDocuments = customerDocumentRepository.findPageByUserIdAfter(userId, after.updatedAt(),
+					Math.toIntExact(after.id()), limit);
+		}
+
+		Long total = withTotal ? customerDocumentRepository.countByUserId(userId) : null;
+		return ResponseEntity.status(HttpStatus.OK).body(PageResponse.of(customerDocuments, pageSize,
+				d -> new KeysetCursor(d.updatedAt(), d.id()), total));
 	}
 
-	public ResponseEntity<Optional<CustomerDocument>> findById(long id) {
-		Long userId = sharedService.getUserIdFromSession(request);
+	@Transactional(readOnly = true)
+	public ResponseEntity<Optional<CustomerDocumentResponse>> findById(long id) {
+		long userId = sharedService.getAuthUserId();
 		Optional<CustomerDocument> cdoc = customerDocumentRepository.findWithUserId(id, userId);
 		if (cdoc.isEmpty()) {
 			return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
 		}
 
-		return ResponseEntity.status(HttpStatus.OK).body(cdoc);
+		return ResponseEntity.status(HttpStatus.OK).body(cdoc.map(CustomerDocumentResponse::of));
+	}
+
+	/**
+	 * Serve the generated file of a document. The ETag and Last-Modified headers
+	 * come from the file size and modification time, so Spring MVC answers
+	 * If-None-Match / If-Modified-Since with 304 and a Range header with a 206
+	 * ResourceRegion streamed straight from the file.
+	 * 
+	 * @param id
+	 * @return document file as a resource
+	 * @throws IOException
+	 */
+	public ResponseEntity<Resource> getContent(long id) throws IOException {
+		long userId = sharedService.getAuthUserId();
+		Optional<CustomerDocument> cdoc = customerDocumentRepository.findWithUserId(id, userId);
+		Path path = cdoc.map(CustomerDocument::getDocPath).map(Paths::get).orElse(null);
+		if (path == null || !Files.isReadable(path)) {
+			return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+		}
+
+		BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+		long lastModified = attributes.lastModifiedTime().toMillis();
+		String eTag = String.format("\"%x-%x\"", attributes.size(), lastModified);
+
+		Resource resource = new FileSystemResource(path);
+		ContentDisposition disposition = ContentDisposition.attachment()
+				.filename(path.getFileName().toString(), StandardCharsets.UTF_8).build();
+
+		return ResponseEntity.ok().eTag(eTag).lastModified(lastModified)
+				.contentType(MediaTypeFactory.getMediaType(resource).orElse(MediaType.APPLICATION_OCTET_STREAM))
+				.header(HttpHeaders.CONTENT_DISPOSITION, disposition.toString()).body(resource);
 	}
-	
-	public ResponseEntity<CustomerDocument> delete(long id) throws ApiException {
-		CustomerDocument existingCustDoc = customerDocumentRepository.findById(id)
-				.orElseThrow(() -> new RuntimeException("Customer not found with id " + id));
-		customerDocumentRepository.deleteById(id);
-		return ResponseEntity.status(HttpStatus.OK).body(existingCustDoc);
+
+	public ResponseEntity<CustomerDocumentResponse> delete(long id) throws ApiException {
+		CustomerDocument existingCustDoc = customerDocumentRepository.findWithUserId(id, sharedService.getAuthUserId())
+				.orElseThrow(() -> documentNotFound(id));
+		transactionTemplate.executeWithoutResult(status -> {
+			customerDocumentRepository.deleteById(id);
+			syncService.record(existingCustDoc.getUserId(), SyncEntityType.DOCUMENT, id, SyncOperation.DELETE);
+			dashboardService.record(existingCustDoc.getUserId(), DashboardService.dimensions(existingCustDoc), null);
+		});
+		return ResponseEntity.status(HttpStatus.OK).body(CustomerDocumentResponse.of(existingCustDoc));
 	}
 
-	private Optional<HashMap<String, Object>> prepareDataMap(CustomerDocumentDTO customerDocument) {
-		try {
-			Optional<Customer> customer = customerRepository.findById(customerDocument.getCustomerId());
+	private static ApiException documentNotFound(long id) {
+		return new ApiException(HttpStatus.NOT_FOUND.value(), "Document not found with id " + id);
+	}
 
+	private Optional<HashMap<String, Object>> prepareDataMap(Customer customer) {
+		try {
 			Calendar calendar = Calendar.getInstance();
 			SimpleDateFormat formatter = new SimpleDateFormat("dd/MM/yyyy", Locale.of("hi", "IN"));
 			String formattedDate = formatter.format(calendar.getTime());
 
-			Optional<HashMap<String, Object>> placeholders = customer.map(cust -> {
+			Optional<HashMap<String, Object>> placeholders = Optional.of(customer).map(cust -> {
 				HashMap<String, Object> map = new HashMap<>();
 				map.put("firstName", cust.getFirstName());
 				map.put("middleName", cust.getMiddleName());
 				map.put("lastName", cust.getLastName());
-				map.put("phoneNumber", cust.getPhoneNumber());
+				map.put("phoneNumber", SealedString.reveal(cust.getPhoneNumber()));
 				map.put("address", cust.getAddress());
 				map.put("place", cust.getPlace());
 				map.put("age", cust.getAge());
 				map.put("cast", cust.getCast());
 				map.put("occupation", cust.getOccupation());
-				map.put("aadharNumber", cust.getAadharNumber());
+				map.put("aadharNumber", SealedString.reveal(cust.getAadharNumber()));
 				map.put("image", cust.getImage());
 				map.put("date", formattedDate);
 				return map;
@@ -170,15 +324,12 @@ public class DocxTemplateService {
 	 * @throws IOException input|output exception
 	 **/
 
-	public String generateDocument(CustomerDocumentDTO customerDocument, Optional<CustomerDocument> existingCustDoc)
-			throws IOException {
-		Optional<HashMap<String, Object>> data = prepareDataMap(customerDocument);
-		if (!data.isEmpty()) {
-			Optional<Customer> customer = customerRepository.findById(customerDocument.getCustomerId());
-
-			Supplier<RuntimeException> exceptionSupplier = () -> new RuntimeException("Customer not found");
-			String firstName = (customer.map(Customer::getFirstName).orElseThrow(exceptionSupplier)).toLowerCase();
-			String lastName = (customer.map(Customer::getLastName).orElseThrow(exceptionSupplier)).toLowerCase();
+	public String generateDocument(CustomerDocumentDTO customerDocument, Optional<CustomerDocument> existingCustDoc,
+			Customer customer) throws IOException {
+		Optional<HashMap<String, Object>> data = prepareDataMap(customer);
+		if (data != null && !data.isEmpty()) {
+			String firstName = customer.getFirstName().toLowerCase();
+			String lastName = customer.getLastName().toLowerCase();
 
 			ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
 			FileInputStream fis = new FileInputStream(SRC);
@@ -0,0 +1,115 @@
+package com.rtcsoft.sevakendra.services;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.rtcsoft.sevakendra.utils.TextNormalizer;
+
+/**
+ * Encryption at rest and blind indexes for customer identifiers. Values are
+ * sealed with AES-GCM under a random IV as "v1:" + base64(iv | ciphertext).
+ * Blind indexes are an HMAC-SHA256 of the normalized digits under a separate
+ * key, scoped by user, so equal numbers of two operators do not match.
+ */
+@Service
+public class FieldCipher {
+
+	public static final String VERSION = "v1:";
+	private static final int IV_LENGTH = 12;
+	private static final int TAG_BITS = 128;
+	private static final int PHONE_DIGITS = 10;
+
+	private final SecretKey encryptionKey;
+	private final SecretKey indexKey;
+	private final SecureRandom random = new SecureRandom();
+
+	// Mac instances are not thread safe, initializing one per call costs more than the HMAC
+	private final ThreadLocal<Mac> macs;
+
+	public FieldCipher(@Value("${security.field-encryption.key}") String encryptionKey,
+			@Value("${security.blind-index.key}") String indexKey) {
+		this.encryptionKey = new SecretKeySpec(Base64.getDecoder().decode(encryptionKey), "AES");
+		this.indexKey = new SecretKeySpec(Base64.getDecoder().decode(indexKey), "HmacSHA256");
+		this.macs = ThreadLocal.withInitial(() -> {
+			try {
+				Mac mac = Mac.getInstance("HmacSHA256");
+				mac.init(this.indexKey);
+				return mac;
+			} catch (GeneralSecurityException e) {
+				throw new IllegalStateException(e);
+			}
+		});
+	}
+
+	public boolean isSealed(String value) {
+		return value != null && value.startsWith(VERSION);
+	}
+
+	public String seal(String plain) {
+		if (plain == null) {
+			return null;
+		}
+		try {
+			byte[] iv = new byte[IV_LENGTH];
+			random.nextBytes(iv);
+			Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+			cipher.init(Cipher.ENCRYPT_MODE, encryptionKey, new GCMParameterSpec(TAG_BITS, iv));
+			byte[] encrypted = cipher.doFinal(plain.getBytes(StandardCharsets.UTF_8));
+			byte[] sealed = ByteBuffer.allocate(iv.length + encrypted.length).put(iv).put(encrypted).array();
+			return VERSION + Base64.getEncoder().encodeToString(sealed);
+		} catch (GeneralSecurityException e) {
+			throw new IllegalStateException("Could not encrypt field", e);
+		}
+	}
+
+	public String open(String sealed) {
+		if (!isSealed(sealed)) {
+			return sealed;
+		}
+		try {
+			byte[] bytes = Base64.getDecoder().decode(sealed.substring(VERSION.length()));
+			Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+			cipher.init(Cipher.DECRYPT_MODE, encryptionKey, new GCMParameterSpec(TAG_BITS, bytes, 0, IV_LENGTH));
+			return new String(cipher.doFinal(bytes, IV_LENGTH, bytes.length - IV_LENGTH), StandardCharsets.UTF_8);
+		} catch (GeneralSecurityException | IllegalArgumentException e) {
+			throw new IllegalStateException("Could not decrypt field", e);
+		}
+	}
+
+	/**
+	 * @return null when the value has no digits
+	 */
+	public String aadharIndex(long userId, String aadhar) {
+		return blindIndex("aadhar", userId, TextNormalizer.digits(aadhar));
+	}
+
+	// Compare the national number, with or without a +91 or 0 prefix
+	public String phoneIndex(long userId, String phone) {
+		String digits = TextNormalizer.digits(phone);
+		if (digits.length() > PHONE_DIGITS) {
+			digits = digits.substring(digits.length() - PHONE_DIGITS);
+		}
+		return blindIndex("phone", userId, digits);
+	}
+
+	private String blindIndex(String field, long userId, String digits) {
+		if (digits.isEmpty()) {
+			return null;
+		}
+		Mac mac = macs.get();
+		byte[] hash = mac.doFinal((field + ":" + userId + ":" + digits).getBytes(StandardCharsets.UTF_8));
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(hash);
+	}
+}
@@ -1,36 +1,106 @@
 package com.rtcsoft.sevakendra.services;
 
+import java.nio.charset.StandardCharsets;
 import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.function.Function;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.rtcsoft.sevakendra.projections.AuthenticatedUser;
+
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
 
+/**
+ * Issues and verifies the HS256 access tokens. The key and parser are built
+ * once, and verified tokens are cached by the SHA-256 of the compact token
+ * until their exp, so the signature and JSON of a token are checked on its
+ * first request only.
+ */
 @Service
 public class JwtService {
-	@Value("${security.jwt.secret-key}")
-	private String secretKey;
+	public static final String USER_ID_CLAIM = "uid";
+
+	/**
+	 * Claims of a token whose signature and expiry have been checked. The id is
+	 * the jti, or the token hash for tokens issued before every token had one.
+	 */
+	public record VerifiedToken(String id, String subject, Date expiration, Claims claims) {
+
+		/**
+		 * @return id of the user, null for tokens issued before the claim existed
+		 */
+		public Long userId() {
+			return claims.get(USER_ID_CLAIM, Long.class);
+		}
+
+		public boolean isExpired() {
+			return expiration != null && expiration.getTime() <= System.currentTimeMillis();
+		}
+	}
 
-	@Value("${security.jwt.expiration-time}")
-	private long jwtExpiration;
+	private final Key signInKey;
+	private final JwtParser parser;
+	private final long jwtExpiration;
+	private final Cache<String, VerifiedToken> verifiedTokens;
+
+	public JwtService(@Value("${security.jwt.secret-key}") String secretKey,
+			@Value("${security.jwt.expiration-time:900000}") long jwtExpiration,
+			@Value("${security.jwt.cache-size:10000}") long cacheSize) {
+		this.signInKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(secretKey));
+		this.parser = Jwts.parserBuilder().setSigningKey(signInKey).build();
+		this.jwtExpiration = jwtExpiration;
+		this.verifiedTokens = Caffeine.newBuilder().maximumSize(cacheSize).expireAfter(new UntilExpiration())
+				.build();
+	}
+
+	/**
+	 * @throws io.jsonwebtoken.JwtException when the token is malformed, not signed
+	 *                                      by us or expired
+	 */
+	public VerifiedToken verify(String token) {
+		String key = hash(token);
+		VerifiedToken verified = verifiedTokens.getIfPresent(key);
+		if (verified == null) {
+			Claims claims = parser.parseClaimsJws(token).getBody();
+			verified = new VerifiedToken(claims.getId() != null ? claims.getId() : key, claims.getSubject(),
+					claims.getExpiration(), claims);
+			verifiedTokens.put(key, verified);
+		} else if (verified.isExpired()) {
+			// Expiry of the cache entry is lazy, the token itself must not outlive exp
+			verifiedTokens.invalidate(key);
+			throw new ExpiredJwtException(null, verified.claims(), "JWT expired at " + verified.expiration());
+		}
+		return verified;
+	}
 
 	public String extractUsername(String token) {
-		return extractClaim(token, Claims::getSubject);
+		return verify(token).subject();
 	}
 
-	public <T> T extractClaim(String token, Function<Claims, T> claimsResolver) {
-		final Claims claims = extractAllClaims(token);
-		return claimsResolver.apply(claims);
+	/**
+	 * Access token of a user, the id travels in the signed token so no session
+	 * is kept on the server.
+	 */
+	public String generateAccessToken(long userId, UserDetails userDetails) {
+		return generateToken(Map.of(USER_ID_CLAIM, userId), userDetails);
 	}
 
 	public String generateToken(UserDetails userDetails) {
@@ -46,31 +116,47 @@ public class JwtService {
 	}
 
 	private String buildToken(Map<String, Object> extraClaims, UserDetails userDetails, long expiration) {
-		return Jwts.builder().setClaims(extraClaims).setSubject(userDetails.getUsername())
+		return Jwts.builder().setClaims(extraClaims).setId(UUID.randomUUID().toString())
+				.setSubject(userDetails.getUsername())
 				.setIssuedAt(new Date(System.currentTimeMillis()))
 				.setExpiration(new Date(System.currentTimeMillis() + expiration))
-				.signWith(getSignInKey(), SignatureAlgorithm.HS256).compact();
-	}
-
-	public boolean isTokenValid(String token, UserDetails userDetails) {
-		final String username = extractUsername(token);
-		return (username.equals(userDetails.getUsername())) && !isTokenExpired(token);
-	}
-
-	private boolean isTokenExpired(String token) {
-		return extractExpiration(token).before(new Date());
+				.signWith(signInKey, SignatureAlgorithm.HS256).compact();
 	}
 
-	private Date extractExpiration(String token) {
-		return extractClaim(token, Claims::getExpiration);
+	public boolean isTokenValid(VerifiedToken token, AuthenticatedUser user) {
+		// A reused email must not inherit the tokens of a deleted account
+		return user.email().equals(token.subject()) && (token.userId() == null || token.userId() == user.id())
+				&& !token.isExpired();
 	}
 
-	private Claims extractAllClaims(String token) {
-		return Jwts.parserBuilder().setSigningKey(getSignInKey()).build().parseClaimsJws(token).getBody();
+	private static String hash(String token) {
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+			return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
 	}
 
-	private Key getSignInKey() {
-		byte[] keyBytes = Decoders.BASE64.decode(secretKey);
-		return Keys.hmacShaKeyFor(keyBytes);
+	private static final class UntilExpiration implements Expiry<String, VerifiedToken> {
+
+		@Override
+		public long expireAfterCreate(String key, VerifiedToken value, long currentTime) {
+			if (value.expiration() == null) {
+				return Long.MAX_VALUE;
+			}
+			long millis = Math.max(0, value.expiration().getTime() - System.currentTimeMillis());
+			return TimeUnit.MILLISECONDS.toNanos(millis);
+		}
+
+		@Override
+		public long expireAfterUpdate(String key, VerifiedToken value, long currentTime, long currentDuration) {
+			return expireAfterCreate(key, value, currentTime);
+		}
+
+		@Override
+		public long expireAfterRead(String key, VerifiedToken value, long currentTime, long currentDuration) {
+			return currentDuration;
+		}
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,161 @@
+package com.rtcsoft.sevakendra.services;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.rtcsoft.sevakendra.entities.OutboxMail;
+import com.rtcsoft.sevakendra.enums.MailStatus;
+import com.rtcsoft.sevakendra.repositories.OutboxMailRepository;
+
+/**
+ * Transactional outbox for email. Callers enqueue inside their own transaction
+ * so a mail exists exactly when the change it reports committed, and SMTP
+ * latency never reaches a request thread. The dispatcher claims due rows with
+ * FOR UPDATE SKIP LOCKED, so several nodes can send without sending twice, and
+ * sends each batch over one SMTP connection. Failed mails are retried with
+ * exponential backoff until mail.outbox.max-attempts.
+ *
+ * Nothing is sent until spring.mail.host is set. For local runs point it at an
+ * SMTP stand-in such as GreenMail, see DEVELOPER.md.
+ */
+@Service
+public class MailOutboxService {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(MailOutboxService.class);
+
+	private static final Duration MAX_BACKOFF = Duration.ofHours(6);
+
+	@Autowired
+	private OutboxMailRepository outboxMailRepository;
+
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+
+	@Autowired
+	private ObjectProvider<JavaMailSender> mailSender;
+
+	@Value("${mail.from:no-reply@sevakendra.local}")
+	private String from;
+
+	@Value("${mail.outbox.batch-size:20}")
+	private int batchSize;
+
+	@Value("${mail.outbox.max-attempts:8}")
+	private int maxAttempts;
+
+	@Value("${mail.outbox.backoff-seconds:30}")
+	private long backoffSeconds;
+
+	@Value("${mail.outbox.retention-days:30}")
+	private long retentionDays;
+
+	/**
+	 * Joins the caller's transaction, the mail is dropped if it rolls back.
+	 */
+	public void enqueue(String recipient, String subject, String body) {
+		LocalDateTime now = LocalDateTime.now();
+		outboxMailRepository
+				.save(new OutboxMail(null, recipient, subject, body, MailStatus.PENDING, 0, now, now, null, null));
+	}
+
+	@Scheduled(fixedDelayString = "${mail.outbox.poll-ms:5000}")
+	public void dispatch() {
+		JavaMailSender sender = mailSender.getIfAvailable();
+		if (sender == null) {
+			return;
+		}
+		Integer claimed;
+		do {
+			claimed = transactionTemplate.execute(status -> sendBatch(sender));
+		} while (claimed != null && claimed == batchSize);
+	}
+
+	@Scheduled(cron = "${mail.outbox.prune-cron:0 50 3 * * *}")
+	public void prune() {
+		Integer removed = transactionTemplate.execute(status -> outboxMailRepository
+				.deleteSentBefore(LocalDateTime.now().minusDays(retentionDays)));
+		LOGGER.info("Deleted {} sent mails from the outbox", removed);
+	}
+
+	private int sendBatch(JavaMailSender sender) {
+		LocalDateTime now = LocalDateTime.now();
+		List<OutboxMail> due = outboxMailRepository.claimDue(now, batchSize);
+		if (due.isEmpty()) {
+			return 0;
+		}
+
+		Map<SimpleMailMessage, OutboxMail> messages = new IdentityHashMap<>();
+		for (OutboxMail mail : due) {
+			SimpleMailMessage message = new SimpleMailMessage();
+			message.setFrom(from);
+			message.setTo(mail.getRecipient());
+			message.setSubject(mail.getSubject());
+			message.setText(mail.getBody());
+			messages.put(message, mail);
+		}
+
+		Map<Object, Exception> failures = Map.of();
+		try {
+			sender.send(messages.keySet().toArray(SimpleMailMessage[]::new));
+		} catch (MailSendException e) {
+			failures = e.getFailedMessages();
+			if (failures.isEmpty()) {
+				failures = allFailed(messages, e);
+			}
+		} catch (MailException e) {
+			// Connection or authentication problem, nothing was sent
+			failures = allFailed(messages, e);
+		}
+
+		for (Map.Entry<SimpleMailMessage, OutboxMail> entry : messages.entrySet()) {
+			OutboxMail mail = entry.getValue();
+			Exception failure = failures.get(entry.getKey());
+			if (failure == null) {
+				mail.setStatus(MailStatus.SENT);
+				mail.setSentAt(now);
+				mail.setLastError(null);
+			} else {
+				failed(mail, failure, now);
+			}
+		}
+		return due.size();
+	}
+
+	private void failed(OutboxMail mail, Exception failure, LocalDateTime now) {
+		int attempts = mail.getAttempts() + 1;
+		mail.setAttempts(attempts);
+		String error = String.valueOf(failure.getMessage());
+		mail.setLastError(error.length() > 500 ? error.substring(0, 500) : error);
+		if (attempts >= maxAttempts) {
+			mail.setStatus(MailStatus.FAILED);
+			LOGGER.error("Giving up on mail {} to {} after {} attempts: {}", mail.getId(), mail.getRecipient(),
+					attempts, error);
+			return;
+		}
+		Duration backoff = Duration.ofSeconds(backoffSeconds).multipliedBy(1L << Math.min(attempts - 1, 20));
+		mail.setNextAttemptAt(now.plus(backoff.compareTo(MAX_BACKOFF) > 0 ? MAX_BACKOFF : backoff));
+		LOGGER.warn("Mail {} failed, attempt {} of {}: {}", mail.getId(), attempts, maxAttempts, error);
+	}
+
+	private static Map<Object, Exception> allFailed(Map<SimpleMailMessage, OutboxMail> messages, Exception e) {
+		Map<Object, Exception> failures = new IdentityHashMap<>();
+		messages.keySet().forEach(message -> failures.put(message, e));
+		return failures;
+	}
+}
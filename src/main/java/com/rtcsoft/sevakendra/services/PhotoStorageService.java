@@ -0,0 +1,308 @@
+package com.rtcsoft.sevakendra.services;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import com.rtcsoft.sevakendra.configs.ReadWriteRoutingDataSource;
+import com.rtcsoft.sevakendra.configs.StorageProperties;
+import com.rtcsoft.sevakendra.repositories.CustomerRepository;
+
+/**
+ * Content addressed store for customer photos. An upload is streamed to a temp
+ * file while its SHA-256 is computed, forced to disk and then atomically moved
+ * to photos/ab/cd/&lt;sha256&gt;.&lt;ext&gt;. The same photo uploaded twice is
+ * stored once. Two uploads racing on the same new content may both move their
+ * file in, the later rename then replaces the earlier file with identical
+ * bytes, so readers never see a partial or different photo.
+ *
+ * Files are shared by every row with the same content, so nothing is deleted
+ * on the request path. A nightly sweep removes photos no customer references
+ * once they are older than the grace period, which covers writes that failed
+ * after storing their photo and uploads that were never attached.
+ */
+@Service
+public class PhotoStorageService {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(PhotoStorageService.class);
+
+	private static final Pattern HASH = Pattern.compile("[0-9a-f]{64}");
+	private static final Pattern EXTENSION = Pattern.compile("[a-z0-9]{1,8}");
+
+	private final Path photoRoot;
+	private final Path tempRoot;
+
+	private static final int SWEEP_CHUNK = 500;
+
+	@Autowired
+	private CustomerRepository customerRepository;
+
+	@Value("${photos.orphan-grace-hours:24}")
+	private long orphanGraceHours;
+
+	public record StoredPhoto(String hash, Path path) {
+	}
+
+	public PhotoStorageService(StorageProperties properties) {
+		Path rootLocation = Paths.get(properties.getLocation()).toAbsolutePath().normalize();
+		this.photoRoot = rootLocation.resolve("photos");
+		this.tempRoot = photoRoot.resolve("tmp");
+	}
+
+	/**
+	 * @return the stored photo, null when no file was uploaded
+	 */
+	public StoredPhoto store(MultipartFile file) throws IOException {
+		if (file == null || file.isEmpty()) {
+			return null;
+		}
+		try (InputStream inputStream = file.getInputStream()) {
+			return store(inputStream, file.getOriginalFilename());
+		}
+	}
+
+	public StoredPhoto store(InputStream inputStream, String originalFilename) throws IOException {
+		Files.createDirectories(tempRoot);
+		Path tempFile = Files.createTempFile(tempRoot, "upload-", ".part");
+		try {
+			MessageDigest digest = sha256();
+			try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.WRITE);
+					OutputStream out = Channels.newOutputStream(channel);
+					DigestInputStream in = new DigestInputStream(inputStream, digest)) {
+				in.transferTo(out);
+				channel.force(true);
+			}
+
+			String hash = HexFormat.of().formatHex(digest.digest());
+			Path target = pathFor(hash, extensionOf(originalFilename));
+			StoredPhoto photo = new StoredPhoto(hash, target);
+			if (Files.exists(target)) {
+				// Same content is already stored
+				retain(photo);
+				return photo;
+			}
+			Files.createDirectories(target.getParent());
+			try {
+				Files.move(tempFile, target, StandardCopyOption.ATOMIC_MOVE);
+				forceDirectory(target.getParent());
+			} catch (FileAlreadyExistsException e) {
+				retain(photo);
+			}
+			return photo;
+		} finally {
+			Files.deleteIfExists(tempFile);
+		}
+	}
+
+	/**
+	 * Copy an already written file (e.g. a finished resumable upload) into the
+	 * store. The original is left for the caller to remove.
+	 */
+	public StoredPhoto store(Path file, String originalFilename) throws IOException {
+		try (InputStream inputStream = Files.newInputStream(file)) {
+			return store(inputStream, originalFilename);
+		}
+	}
+
+	/**
+	 * Restart the grace period of an already stored photo that a write is about
+	 * to reference, so the sweep cannot remove it before that write commits.
+	 */
+	public void retain(StoredPhoto photo) throws IOException {
+		Files.setLastModifiedTime(photo.path(), FileTime.from(Instant.now()));
+	}
+
+	public Optional<StoredPhoto> findByHash(String hash) throws IOException {
+		if (hash == null || !HASH.matcher(hash).matches()) {
+			return Optional.empty();
+		}
+		Path directory = pathFor(hash, "x").getParent();
+		if (!Files.isDirectory(directory)) {
+			return Optional.empty();
+		}
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, hash + ".*")) {
+			for (Path file : files) {
+				return Optional.of(new StoredPhoto(hash, file));
+			}
+		}
+		return Optional.empty();
+	}
+
+	/**
+	 * Remove photos and their variants that no customer references and that were
+	 * not stored or retained within the grace period, plus temp files left by
+	 * interrupted uploads. Hashes are checked against the primary in chunks, one
+	 * photos/ab/cd directory at a time.
+	 */
+	@Scheduled(cron = "${photos.sweep-cron:0 45 4 * * *}")
+	public void removeOrphans() {
+		if (!Files.isDirectory(photoRoot)) {
+			return;
+		}
+		Instant cutoff = Instant.now().minus(Duration.ofHours(orphanGraceHours));
+		Map<String, List<Path>> candidates = new HashMap<>();
+		int removed = 0;
+		try {
+			removed += removeOldTempFiles(cutoff);
+			for (Path first : subdirectories(photoRoot)) {
+				if (first.equals(tempRoot)) {
+					continue;
+				}
+				for (Path second : subdirectories(first)) {
+					collectCandidates(second, cutoff, candidates);
+					if (candidates.size() >= SWEEP_CHUNK) {
+						removed += removeUnreferenced(candidates, cutoff);
+					}
+				}
+			}
+			removed += removeUnreferenced(candidates, cutoff);
+		} catch (IOException e) {
+			LOGGER.warn("Could not sweep orphaned photos: {}", e.getMessage());
+		}
+		LOGGER.info("Removed {} orphaned photo files", removed);
+	}
+
+	// Every file of a hash lives in the same directory, so a hash is only kept if none of them is recent
+	private static void collectCandidates(Path directory, Instant cutoff, Map<String, List<Path>> candidates)
+			throws IOException {
+		Map<String, List<Path>> files = new HashMap<>();
+		Set<String> recent = new HashSet<>();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+			for (Path file : stream) {
+				String name = file.getFileName().toString();
+				if (name.length() < 64 || !HASH.matcher(name.substring(0, 64)).matches()) {
+					continue;
+				}
+				String hash = name.substring(0, 64);
+				files.computeIfAbsent(hash, h -> new ArrayList<>()).add(file);
+				if (!Files.getLastModifiedTime(file).toInstant().isBefore(cutoff)) {
+					recent.add(hash);
+				}
+			}
+		}
+		files.keySet().removeAll(recent);
+		candidates.putAll(files);
+	}
+
+	private int removeUnreferenced(Map<String, List<Path>> candidates, Instant cutoff) throws IOException {
+		if (candidates.isEmpty()) {
+			return 0;
+		}
+		Set<String> referenced = new HashSet<>(ReadWriteRoutingDataSource
+				.onPrimary(() -> customerRepository.findReferencedImageHashes(candidates.keySet())));
+		int removed = 0;
+		for (Map.Entry<String, List<Path>> candidate : candidates.entrySet()) {
+			if (referenced.contains(candidate.getKey()) || retainedSince(candidate.getValue(), cutoff)) {
+				continue;
+			}
+			for (Path file : candidate.getValue()) {
+				if (Files.deleteIfExists(file)) {
+					removed++;
+				}
+			}
+		}
+		candidates.clear();
+		return removed;
+	}
+
+	// Stored again or retained while the sweep ran
+	private static boolean retainedSince(List<Path> files, Instant cutoff) throws IOException {
+		for (Path file : files) {
+			if (Files.exists(file) && !Files.getLastModifiedTime(file).toInstant().isBefore(cutoff)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private int removeOldTempFiles(Instant cutoff) throws IOException {
+		if (!Files.isDirectory(tempRoot)) {
+			return 0;
+		}
+		int removed = 0;
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(tempRoot, "*.part")) {
+			for (Path file : files) {
+				if (Files.getLastModifiedTime(file).toInstant().isBefore(cutoff) && Files.deleteIfExists(file)) {
+					removed++;
+				}
+			}
+		}
+		return removed;
+	}
+
+	private static List<Path> subdirectories(Path directory) throws IOException {
+		List<Path> subdirectories = new ArrayList<>();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, Files::isDirectory)) {
+			stream.forEach(subdirectories::add);
+		}
+		return subdirectories;
+	}
+
+	public Path variantPath(String hash, String variant) {
+		return pathFor(hash, "jpg").resolveSibling(hash + "-" + variant + ".jpg");
+	}
+
+	private Path pathFor(String hash, String extension) {
+		return photoRoot.resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(hash + "." + extension);
+	}
+
+	private static String extensionOf(String filename) {
+		if (filename != null && filename.lastIndexOf('.') != -1) {
+			String extension = filename.substring(filename.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT);
+			if (EXTENSION.matcher(extension).matches()) {
+				return extension;
+			}
+		}
+		return "bin";
+	}
+
+	// Make the rename itself durable, not only the file content
+	private static void forceDirectory(Path directory) {
+		try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+			channel.force(true);
+		} catch (IOException e) {
+			LOGGER.debug("Directory fsync not supported for {}", directory);
+		}
+	}
+
+	private static MessageDigest sha256() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
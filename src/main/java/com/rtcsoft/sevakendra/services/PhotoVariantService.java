@@ -0,0 +1,114 @@
+package com.rtcsoft.sevakendra.services;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.imageio.ImageIO;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+
+import com.rtcsoft.sevakendra.configs.AsyncConfig;
+import com.rtcsoft.sevakendra.enums.PhotoVariant;
+import com.rtcsoft.sevakendra.services.PhotoStorageService.StoredPhoto;
+
+/**
+ * Renders the scaled variants of a stored photo. Variants are derived from the
+ * content hash, so they are written once and never change.
+ */
+@Service
+public class PhotoVariantService {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(PhotoVariantService.class);
+
+	private final PhotoStorageService photoStorageService;
+
+	// One render per variant file, concurrent requests for it wait instead of rendering again.
+	// Not monitors, a virtual request thread waiting on file I/O inside one would pin its carrier.
+	private final Map<Path, ReentrantLock> renderLocks = new ConcurrentHashMap<>();
+
+	public PhotoVariantService(PhotoStorageService photoStorageService) {
+		this.photoStorageService = photoStorageService;
+	}
+
+	@Async(AsyncConfig.MEDIA_EXECUTOR)
+	public void generateVariants(StoredPhoto photo) {
+		for (PhotoVariant variant : PhotoVariant.values()) {
+			try {
+				variant(photo, variant);
+			} catch (IOException e) {
+				LOGGER.warn("Could not render {} of photo {}: {}", variant.key(), photo.hash(), e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * @return path of the rendered variant, rendering it first when missing
+	 */
+	public Path variant(StoredPhoto photo, PhotoVariant variant) throws IOException {
+		Path target = photoStorageService.variantPath(photo.hash(), variant.key());
+		if (Files.exists(target)) {
+			return target;
+		}
+
+		ReentrantLock lock = renderLocks.computeIfAbsent(target, key -> new ReentrantLock());
+		lock.lock();
+		try {
+			if (!Files.exists(target)) {
+				render(photo, variant, target);
+			}
+		} finally {
+			lock.unlock();
+			renderLocks.remove(target, lock);
+		}
+		return target;
+	}
+
+	private static void render(StoredPhoto photo, PhotoVariant variant, Path target) throws IOException {
+		BufferedImage source = ImageIO.read(photo.path().toFile());
+		if (source == null) {
+			throw new IOException("Unsupported image format");
+		}
+		BufferedImage scaled = scale(source, variant.getMaxSide());
+
+		Path tempFile = Files.createTempFile(target.getParent(), photo.hash(), ".part");
+		try {
+			ImageIO.write(scaled, "jpg", tempFile.toFile());
+			Files.move(tempFile, target, StandardCopyOption.ATOMIC_MOVE);
+		} catch (FileAlreadyExistsException e) {
+			// Rendered concurrently, the content is identical
+		} finally {
+			Files.deleteIfExists(tempFile);
+		}
+	}
+
+	private static BufferedImage scale(BufferedImage source, int maxSide) {
+		double ratio = Math.min(1.0, (double) maxSide / Math.max(source.getWidth(), source.getHeight()));
+		int width = Math.max(1, (int) Math.round(source.getWidth() * ratio));
+		int height = Math.max(1, (int) Math.round(source.getHeight() * ratio));
+
+		// JPEG has no alpha channel, draw onto an opaque RGB canvas
+		BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		Graphics2D graphics = scaled.createGraphics();
+		try {
+			graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+			graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+			graphics.drawImage(source, 0, 0, width, height, Color.WHITE, null);
+		} finally {
+			graphics.dispose();
+		}
+		return scaled;
+	}
+}
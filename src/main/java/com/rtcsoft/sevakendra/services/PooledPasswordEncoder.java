@@ -0,0 +1,106 @@
+package com.rtcsoft.sevakendra.services;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import com.rtcsoft.sevakendra.configs.AsyncConfig;
+import com.rtcsoft.sevakendra.exceptions.ServiceBusyException;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * BCrypt running on the bounded password pool. The calling thread waits for
+ * the result but burns no CPU, and when the pool and its queue are full the
+ * call fails at once with a 503 instead of queueing behind a login burst.
+ *
+ * Publishes password.hash.queue (time waiting for a thread),
+ * password.hash{op=encode|matches} and password.hash.rejected.
+ */
+@Service
+public class PooledPasswordEncoder implements PasswordEncoder {
+
+	private static final long RETRY_AFTER_SECONDS = 1;
+
+	private final BCryptPasswordEncoder delegate;
+	private final ThreadPoolTaskExecutor executor;
+	private final long timeoutMillis;
+	private final Timer queueTimer;
+	private final Timer encodeTimer;
+	private final Timer matchesTimer;
+	private final Counter rejected;
+
+	public PooledPasswordEncoder(@Qualifier(AsyncConfig.PASSWORD_EXECUTOR) ThreadPoolTaskExecutor executor,
+			MeterRegistry meterRegistry, @Value("${security.password.bcrypt-strength:10}") int strength,
+			@Value("${security.password.timeout-ms:5000}") long timeoutMillis) {
+		this.delegate = new BCryptPasswordEncoder(strength);
+		this.executor = executor;
+		this.timeoutMillis = timeoutMillis;
+		this.queueTimer = meterRegistry.timer("password.hash.queue");
+		this.encodeTimer = meterRegistry.timer("password.hash", "op", "encode");
+		this.matchesTimer = meterRegistry.timer("password.hash", "op", "matches");
+		this.rejected = meterRegistry.counter("password.hash.rejected");
+	}
+
+	@Override
+	public String encode(CharSequence rawPassword) {
+		return run(encodeTimer, () -> delegate.encode(rawPassword));
+	}
+
+	@Override
+	public boolean matches(CharSequence rawPassword, String encodedPassword) {
+		return run(matchesTimer, () -> delegate.matches(rawPassword, encodedPassword));
+	}
+
+	/**
+	 * True for hashes made with a lower work factor than configured, the
+	 * authentication provider then stores a new hash after a successful login.
+	 */
+	@Override
+	public boolean upgradeEncoding(String encodedPassword) {
+		return delegate.upgradeEncoding(encodedPassword);
+	}
+
+	private <T> T run(Timer timer, Callable<T> task) {
+		long submitted = System.nanoTime();
+		Future<T> future;
+		try {
+			future = executor.submit(() -> {
+				queueTimer.record(System.nanoTime() - submitted, TimeUnit.NANOSECONDS);
+				return timer.recordCallable(task);
+			});
+		} catch (RejectedExecutionException e) {
+			rejected.increment();
+			throw new ServiceBusyException("Too many password checks in progress", RETRY_AFTER_SECONDS);
+		}
+
+		try {
+			return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+		} catch (TimeoutException e) {
+			future.cancel(true);
+			rejected.increment();
+			throw new ServiceBusyException("Password check timed out", RETRY_AFTER_SECONDS);
+		} catch (InterruptedException e) {
+			future.cancel(true);
+			Thread.currentThread().interrupt();
+			throw new ServiceBusyException("Password check interrupted", RETRY_AFTER_SECONDS);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException runtimeException) {
+				throw runtimeException;
+			}
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+}
@@ -0,0 +1,47 @@
+package com.rtcsoft.sevakendra.services;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.rtcsoft.sevakendra.projections.AuthenticatedUser;
+import com.rtcsoft.sevakendra.repositories.UserRepository;
+
+/**
+ * Principals of authenticated requests by email. Entries live for a short TTL
+ * so an API client does not cost a users lookup per call, and are evicted at
+ * once on password reset and logout. Unknown emails are not cached.
+ */
+@Service
+public class PrincipalCache {
+
+	private final UserRepository userRepository;
+	private final Cache<String, AuthenticatedUser> principals;
+
+	public PrincipalCache(UserRepository userRepository,
+			@Value("${security.principal-cache.ttl-seconds:60}") long ttlSeconds,
+			@Value("${security.principal-cache.max-size:10000}") long maxSize) {
+		this.userRepository = userRepository;
+		this.principals = Caffeine.newBuilder().maximumSize(maxSize).expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+				.build();
+	}
+
+	public AuthenticatedUser load(String email) {
+		AuthenticatedUser principal = principals.get(email,
+				key -> userRepository.findPrincipalByEmail(key).orElse(null));
+		if (principal == null) {
+			throw new UsernameNotFoundException("User not found");
+		}
+		return principal;
+	}
+
+	public void evict(String email) {
+		if (email != null) {
+			principals.invalidate(email);
+		}
+	}
+}
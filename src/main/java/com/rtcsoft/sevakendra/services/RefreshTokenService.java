@@ -0,0 +1,106 @@
+package com.rtcsoft.sevakendra.services;
+
+import java.security.SecureRandom;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.UUID;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.rtcsoft.sevakendra.entities.RefreshToken;
+import com.rtcsoft.sevakendra.repositories.RefreshTokenRepository;
+import com.rtcsoft.sevakendra.utils.Hashes;
+
+/**
+ * Opaque refresh tokens paired with the short lived access tokens. A login
+ * starts a family, every refresh marks the presented token rotated and issues
+ * the next one of the family. A rotated token presented again means it was
+ * copied, so the whole family is revoked and both holders have to log in.
+ */
+@Service
+public class RefreshTokenService {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(RefreshTokenService.class);
+
+	private static final SecureRandom RANDOM = new SecureRandom();
+
+	@Autowired
+	private RefreshTokenRepository refreshTokenRepository;
+
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+
+	@Value("${security.jwt.refresh-expiration-days:30}")
+	private long refreshExpirationDays;
+
+	public record Rotation(long userId, String refreshToken) {
+	}
+
+	public String issue(long userId) {
+		return transactionTemplate.execute(status -> store(userId, UUID.randomUUID().toString()));
+	}
+
+	/**
+	 * @throws BadCredentialsException when the token is unknown, expired, revoked
+	 *                                 or already rotated
+	 */
+	public Rotation rotate(String refreshToken) {
+		Rotation rotation = transactionTemplate.execute(status -> {
+			LocalDateTime now = LocalDateTime.now();
+			RefreshToken current = refreshTokenRepository.findForUpdate(Hashes.sha256Hex(refreshToken)).orElse(null);
+			if (current == null || current.getRevokedAt() != null || current.getExpiresAt().isBefore(now)) {
+				return null;
+			}
+			if (current.getRotatedAt() != null) {
+				// Committed, not rolled back, the family must stay revoked
+				refreshTokenRepository.revokeFamily(current.getFamilyId(), now);
+				LOGGER.warn("Rotated refresh token of user {} presented again, family {} revoked",
+						current.getUserId(), current.getFamilyId());
+				return null;
+			}
+			current.setRotatedAt(now);
+			return new Rotation(current.getUserId(), store(current.getUserId(), current.getFamilyId()));
+		});
+		if (rotation == null) {
+			throw new BadCredentialsException("Invalid refresh token");
+		}
+		return rotation;
+	}
+
+	public void revoke(String refreshToken) {
+		transactionTemplate.executeWithoutResult(status -> refreshTokenRepository
+				.findByTokenHash(Hashes.sha256Hex(refreshToken))
+				.ifPresent(token -> refreshTokenRepository.revokeFamily(token.getFamilyId(), LocalDateTime.now())));
+	}
+
+	public void revokeAll(long userId) {
+		transactionTemplate.executeWithoutResult(
+				status -> refreshTokenRepository.revokeUser(userId, LocalDateTime.now()));
+	}
+
+	@Scheduled(cron = "${security.jwt.refresh-purge-cron:0 45 3 * * *}")
+	public void purge() {
+		Integer removed = transactionTemplate
+				.execute(status -> refreshTokenRepository.deleteExpired(LocalDateTime.now()));
+		LOGGER.info("Deleted {} expired refresh tokens", removed);
+	}
+
+	private String store(long userId, String familyId) {
+		byte[] raw = new byte[32];
+		RANDOM.nextBytes(raw);
+		String token = Base64.getUrlEncoder().withoutPadding().encodeToString(raw);
+
+		LocalDateTime now = LocalDateTime.now();
+		refreshTokenRepository.save(new RefreshToken(null, userId, familyId, Hashes.sha256Hex(token),
+				now.plusDays(refreshExpirationDays), now, null, null));
+		return token;
+	}
+
+}
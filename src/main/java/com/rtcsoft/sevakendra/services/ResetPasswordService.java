@@ -6,11 +6,15 @@ import java.util.Optional;
 import java.util.UUID;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
 import com.rtcsoft.sevakendra.entities.User;
 import com.rtcsoft.sevakendra.repositories.UserRepository;
+import com.rtcsoft.sevakendra.utils.Hashes;
+
+import jakarta.transaction.Transactional;
 
 @Service
 public class ResetPasswordService {
@@ -22,47 +26,77 @@ public class ResetPasswordService {
 	@Autowired
 	private final PasswordEncoder passwordEncoder;
 
+	@Autowired
+	private PrincipalCache principalCache;
+
+	@Autowired
+	private RefreshTokenService refreshTokenService;
+
+	@Autowired
+	private MailOutboxService mailOutboxService;
+
+	// Public address of the API. The link must never be built from the request
+	// Host header, a forged one would mail a valid token to another domain.
+	@Value("${app.public-base-url:https://localhost:8080}")
+	private String publicBaseUrl;
+
 	public ResetPasswordService(UserRepository userRepository, PasswordEncoder passwordEncoder) {
 		this.userRepository = userRepository;
 		this.passwordEncoder = passwordEncoder;
 	}
 
+	/**
+	 * Mails a reset link to the user. The mail goes through the outbox in the
+	 * same transaction as the token, and the answer is the same whether the email
+	 * is registered or not.
+	 */
+	@Transactional
 	public String forgotPassword(String email) {
 		Optional<User> userOptional = userRepository.findByEmail(email);
 
-		if (userOptional.isEmpty()) {
-			return "Invalid email id.";
+		if (userOptional.isPresent()) {
+			String token = generateToken();
+			User user = userOptional.get();
+			user.setToken(Hashes.sha256Hex(token));
+			user.setTokenCreationDate(LocalDateTime.now());
+			userRepository.save(user);
+
+			mailOutboxService.enqueue(user.getEmail(), "Reset your Seva Kendra password",
+					"Hello " + user.getFullName() + ",\n\nUse this link within " + EXPIRE_TOKEN
+							+ " minutes to set a new password:\n" + resetLink(token)
+							+ "\n\nIf you did not ask for a new password, ignore this mail.");
 		}
+		return "If the email is registered, a reset link has been sent to it.";
+	}
 
-		User user = userOptional.get();
-		user.setToken(generateToken());
-		user.setTokenCreationDate(LocalDateTime.now());
-
-		user = userRepository.save(user);
-		return user.getToken();
+	private String resetLink(String token) {
+		String base = publicBaseUrl.endsWith("/") ? publicBaseUrl.substring(0, publicBaseUrl.length() - 1)
+				: publicBaseUrl;
+		return base + "/auth/reset-password?token=" + token;
 	}
 
 	public String resetPassword(String token, String password) {
-		System.out.println("Password" + password);
-		Optional<Object> userOptional = Optional.ofNullable(userRepository.findByToken(token));
+		Optional<User> userOptional = userRepository.findByToken(Hashes.sha256Hex(token));
 
 		if (!userOptional.isPresent()) {
 			return "Invalid token";
 		}
-		LocalDateTime tokenCreationDate = ((User) userOptional.get()).getTokenCreationDate();
+		LocalDateTime tokenCreationDate = userOptional.get().getTokenCreationDate();
 
 		if (isTokenExpired(tokenCreationDate)) {
 			return "Token expired.";
 
 		}
 
-		User user = (User) userOptional.get();
+		User user = userOptional.get();
 
 		user.setPassword(passwordEncoder.encode(password));
 		user.setToken(null);
 		user.setTokenCreationDate(null);
 
 		userRepository.save(user);
+		principalCache.evict(user.getEmail());
+		refreshTokenService.revokeAll(user.getId());
 
 		return "Your password successfully updated.";
 	}
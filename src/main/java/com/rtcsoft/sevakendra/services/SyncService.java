@@ -0,0 +1,245 @@
+package com.rtcsoft.sevakendra.services;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.rtcsoft.sevakendra.configs.PaginationProperties;
+import com.rtcsoft.sevakendra.entities.SyncChange;
+import com.rtcsoft.sevakendra.enums.SyncEntityType;
+import com.rtcsoft.sevakendra.enums.SyncOperation;
+import com.rtcsoft.sevakendra.exceptions.ApiException;
+import com.rtcsoft.sevakendra.projections.CustomerDocumentSummary;
+import com.rtcsoft.sevakendra.projections.CustomerSummary;
+import com.rtcsoft.sevakendra.repositories.CustomerDocumentRepository;
+import com.rtcsoft.sevakendra.repositories.CustomerRepository;
+import com.rtcsoft.sevakendra.repositories.SyncChangeRepository;
+import com.rtcsoft.sevakendra.responses.SyncResponse;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+
+/**
+ * Delta sync over the sync_changes outbox. Writers call {@link #record} inside
+ * their own transaction, readers get the current state of every entity that
+ * changed after their token plus tombstones for deletes.
+ *
+ * Outbox ids are handed out at insert but become visible at commit, so a
+ * smaller id can appear after a larger one was read. The rows are therefore
+ * inserted just before the commit, after everything else was flushed, and only
+ * rows older than the lag window are served. Both sides take the time from the
+ * database, so the window covers the commit itself and not how long the
+ * transaction ran or how far the clocks of the nodes drift apart.
+ */
+@Service
+public class SyncService {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(SyncService.class);
+
+	private static final String TOKEN_PREFIX = "v1.";
+	private static final String INSERT_CHANGE = "INSERT INTO sync_changes "
+			+ "(user_id, entity_type, entity_id, op, changed_at) VALUES (?, ?, ?, ?, CURRENT_TIMESTAMP(6))";
+
+	@PersistenceContext
+	private EntityManager entityManager;
+
+	@Autowired
+	private SyncChangeRepository syncChangeRepository;
+
+	@Autowired
+	private CustomerRepository customerRepository;
+
+	@Autowired
+	private CustomerDocumentRepository customerDocumentRepository;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+
+	@Autowired
+	private SharedService sharedService;
+
+	@Autowired
+	private PaginationProperties paginationProperties;
+
+	@Value("${sync.lag-seconds:5}")
+	private long lagSeconds;
+
+	@Value("${sync.retention-days:90}")
+	private long retentionDays;
+
+	public void record(long userId, SyncEntityType type, long entityId, SyncOperation op) {
+		recordAll(userId, type, List.of(entityId), op);
+	}
+
+	/**
+	 * Joins the caller's transaction and writes one JDBC batch for all ids right
+	 * before it commits.
+	 */
+	public void recordAll(long userId, SyncEntityType type, Collection<Long> entityIds, SyncOperation op) {
+		if (entityIds.isEmpty()) {
+			return;
+		}
+		List<Long> ids = List.copyOf(entityIds);
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			insertChanges(userId, type, ids, op);
+			return;
+		}
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+			@Override
+			public void beforeCommit(boolean readOnly) {
+				// A long flush must not run between the outbox insert and the commit
+				entityManager.flush();
+				insertChanges(userId, type, ids, op);
+			}
+		});
+	}
+
+	private void insertChanges(long userId, SyncEntityType type, List<Long> entityIds, SyncOperation op) {
+		jdbcTemplate.batchUpdate(INSERT_CHANGE, entityIds, entityIds.size(), (statement, entityId) -> {
+			statement.setLong(1, userId);
+			statement.setString(2, type.name());
+			statement.setLong(3, entityId);
+			statement.setString(4, op.name());
+		});
+	}
+
+	/**
+	 * Reads the primary on purpose: the visibility lag assumes rows commit there,
+	 * a lagging replica could move the token past changes it has not received.
+	 *
+	 * @param since token of the previous call, null to get the current position
+	 *              only (take it before downloading the full list)
+	 * @return 410 when changes after the token were pruned, the client must do a
+	 *         full download again
+	 */
+	public ResponseEntity<SyncResponse> changes(String since, Integer limit)
+			throws ApiException {
+		long authUserId = sharedService.getAuthUserId();
+		LocalDateTime visibleBefore = jdbcTemplate.queryForObject("SELECT CURRENT_TIMESTAMP(6)", LocalDateTime.class)
+				.minusSeconds(lagSeconds);
+		Long head = syncChangeRepository.findHead(visibleBefore);
+		long headId = head == null ? 0 : head;
+
+		if (since == null || since.isBlank()) {
+			return ResponseEntity.ok(new SyncResponse(List.of(), List.of(), List.of(), encode(headId), false));
+		}
+
+		long afterId = decode(since);
+		Long oldest = syncChangeRepository.findOldestId();
+		if (oldest != null && afterId < oldest - 1) {
+			return ResponseEntity.status(HttpStatus.GONE).build();
+		}
+
+		int maxChanges = paginationProperties.resolve(limit);
+		List<SyncChange> rows = syncChangeRepository.findChanges(authUserId, afterId, visibleBefore,
+				PageRequest.ofSize(maxChanges + 1));
+		boolean hasMore = rows.size() > maxChanges;
+		if (hasMore) {
+			rows = rows.subList(0, maxChanges);
+		}
+
+		// Only the last change of each entity matters
+		Map<SyncEntityType, Map<Long, SyncOperation>> latest = new LinkedHashMap<>();
+		for (SyncChange row : rows) {
+			latest.computeIfAbsent(row.getEntityType(), t -> new LinkedHashMap<>()).put(row.getEntityId(), row.getOp());
+		}
+
+		List<SyncResponse.Tombstone> deleted = new ArrayList<>();
+		List<CustomerSummary> customers = List.of();
+		Set<Long> customerIds = upserted(latest.get(SyncEntityType.CUSTOMER), SyncEntityType.CUSTOMER, deleted);
+		if (!customerIds.isEmpty()) {
+			customers = customerRepository.findSummariesByUserIdAndIdIn(authUserId, customerIds);
+			tombstonesForMissing(SyncEntityType.CUSTOMER, customerIds,
+					customers.stream().map(CustomerSummary::id).collect(Collectors.toSet()), deleted);
+		}
+
+		List<CustomerDocumentSummary> documents = List.of();
+		Set<Long> documentIds = upserted(latest.get(SyncEntityType.DOCUMENT), SyncEntityType.DOCUMENT, deleted);
+		if (!documentIds.isEmpty()) {
+			documents = customerDocumentRepository.findSummariesByUserIdAndIdIn(authUserId,
+					documentIds.stream().map(Long::intValue).toList());
+			tombstonesForMissing(SyncEntityType.DOCUMENT, documentIds,
+					documents.stream().map(d -> d.id().longValue()).collect(Collectors.toSet()), deleted);
+		}
+
+		// Without more rows for this user the client may skip to the global head
+		long nextId = hasMore ? rows.get(rows.size() - 1).getId() : Math.max(afterId, headId);
+		return ResponseEntity.ok(new SyncResponse(customers, documents, deleted, encode(nextId), hasMore));
+	}
+
+	@Scheduled(cron = "${sync.prune-cron:0 30 3 * * *}")
+	public void prune() {
+		LocalDateTime before = LocalDateTime.now().minusDays(retentionDays);
+		Integer removed = transactionTemplate.execute(status -> syncChangeRepository.deleteOlderThan(before));
+		LOGGER.info("Pruned {} sync changes older than {}", removed, before);
+	}
+
+	private static Set<Long> upserted(Map<Long, SyncOperation> changes, SyncEntityType type,
+			List<SyncResponse.Tombstone> deleted) {
+		if (changes == null) {
+			return Set.of();
+		}
+		Set<Long> ids = new LinkedHashSet<>();
+		changes.forEach((id, op) -> {
+			if (op == SyncOperation.DELETE) {
+				deleted.add(new SyncResponse.Tombstone(type, id));
+			} else {
+				ids.add(id);
+			}
+		});
+		return ids;
+	}
+
+	// Deleted after the last change that was read, the delete row follows later
+	private static void tombstonesForMissing(SyncEntityType type, Set<Long> requested, Set<Long> found,
+			List<SyncResponse.Tombstone> deleted) {
+		for (Long id : requested) {
+			if (!found.contains(id)) {
+				deleted.add(new SyncResponse.Tombstone(type, id));
+			}
+		}
+	}
+
+	private static String encode(long id) {
+		return Base64.getUrlEncoder().withoutPadding()
+				.encodeToString((TOKEN_PREFIX + id).getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static long decode(String token) throws ApiException {
+		try {
+			String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+			if (!raw.startsWith(TOKEN_PREFIX)) {
+				throw new ApiException("Invalid sync token: " + token);
+			}
+			return Long.parseLong(raw.substring(TOKEN_PREFIX.length()));
+		} catch (IllegalArgumentException e) {
+			throw new ApiException("Invalid sync token: " + token);
+		}
+	}
+}
@@ -1,20 +1,153 @@
 package com.rtcsoft.sevakendra.services;
 
-import java.util.HashSet;
-import java.util.Set;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import com.rtcsoft.sevakendra.entities.RevokedToken;
+import com.rtcsoft.sevakendra.repositories.RevokedTokenRepository;
+import com.rtcsoft.sevakendra.services.JwtService.VerifiedToken;
+import com.rtcsoft.sevakendra.utils.BloomFilter;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Access tokens revoked before their exp, by token id. Revocations are written
+ * to revoked_tokens and every node polls the rows it has not seen yet, so a
+ * logout holds on all nodes and across restarts. Entries are dropped once the
+ * token has expired anyway, which bounds the set by the number of logouts per
+ * token lifetime.
+ *
+ * Almost no token is revoked, so a Bloom filter answers first and a negative,
+ * the common case, is decided without touching the map.
+ */
 @Service
 public class TokenBlacklistService {
 
-	private final Set<String> blacklistedTokens = new HashSet<>();
+	private static final Logger LOGGER = LoggerFactory.getLogger(TokenBlacklistService.class);
+
+	private static final double FALSE_POSITIVE_RATE = 0.001;
+	private static final int PAGE_SIZE = 1000;
+	// Ids are allocated before commit, rows this recent are read again in case a
+	// lower id committed after a higher one was seen
+	private static final Duration REREAD_WINDOW = Duration.ofSeconds(30);
+
+	@Autowired
+	private RevokedTokenRepository revokedTokenRepository;
+
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+
+	@Value("${security.blacklist.capacity:100000}")
+	private long capacity;
+
+	private final Map<String, Long> revoked = new ConcurrentHashMap<>();
+	// Held across the repository reads, a monitor there would pin a virtual thread
+	private final ReentrantLock pollLock = new ReentrantLock();
+	private final Object filterLock = new Object();
+	private volatile BloomFilter filter;
+	private long lastSeenId;
+
+	@PostConstruct
+	public void load() {
+		filter = new BloomFilter(capacity, FALSE_POSITIVE_RATE);
+		try {
+			poll();
+		} catch (DataAccessException e) {
+			LOGGER.warn("Could not load revoked tokens: {}", e.getMessage());
+		}
+	}
+
+	public void addTokenToBlacklist(VerifiedToken token) {
+		long expiresAt = token.expiration() == null ? Long.MAX_VALUE : token.expiration().getTime();
+		if (!revokedTokenRepository.existsByTokenId(token.id())) {
+			try {
+				revokedTokenRepository.save(new RevokedToken(null, token.id(), toDateTime(expiresAt),
+						LocalDateTime.now()));
+			} catch (DataIntegrityViolationException e) {
+				// Revoked by a concurrent logout
+			}
+		}
+		remember(token.id(), expiresAt);
+	}
+
+	public boolean isTokenBlacklisted(VerifiedToken token) {
+		if (!filter.mightContain(token.id())) {
+			return false;
+		}
+		Long expiresAt = revoked.get(token.id());
+		return expiresAt != null && expiresAt > System.currentTimeMillis();
+	}
+
+	@Scheduled(fixedDelayString = "${security.blacklist.poll-ms:5000}")
+	public void poll() {
+		pollLock.lock();
+		try {
+			LocalDateTime now = LocalDateTime.now();
+			List<RevokedToken> rows;
+			do {
+				rows = revokedTokenRepository.findAfter(lastSeenId, now, PageRequest.ofSize(PAGE_SIZE));
+				rows.forEach(this::remember);
+				if (!rows.isEmpty()) {
+					lastSeenId = rows.get(rows.size() - 1).getId();
+				}
+			} while (rows.size() == PAGE_SIZE);
+			revokedTokenRepository.findByRevokedAtAfter(now.minus(REREAD_WINDOW)).forEach(this::remember);
+		} finally {
+			pollLock.unlock();
+		}
+	}
+
+	/**
+	 * Deletes expired rows, any node may run it, and rebuilds the filter without
+	 * the expired entries.
+	 */
+	@Scheduled(cron = "${security.blacklist.purge-cron:0 15 * * * *}")
+	public void purge() {
+		try {
+			transactionTemplate.execute(status -> revokedTokenRepository.deleteExpired(LocalDateTime.now()));
+		} catch (DataAccessException e) {
+			LOGGER.warn("Could not delete expired revoked tokens: {}", e.getMessage());
+		}
+		long now = System.currentTimeMillis();
+		synchronized (filterLock) {
+			revoked.values().removeIf(expiresAt -> expiresAt <= now);
+			BloomFilter rebuilt = new BloomFilter(Math.max(capacity, revoked.size() * 2L), FALSE_POSITIVE_RATE);
+			revoked.keySet().forEach(rebuilt::put);
+			filter = rebuilt;
+		}
+	}
+
+	private void remember(RevokedToken row) {
+		remember(row.getTokenId(), row.getExpiresAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+	}
 
-	public void addTokenToBlacklist(String token) {
-		blacklistedTokens.add(token);
+	private void remember(String tokenId, long expiresAt) {
+		// Under the lock so a concurrent rebuild cannot drop the entry from the filter
+		synchronized (filterLock) {
+			revoked.put(tokenId, expiresAt);
+			filter.put(tokenId);
+		}
 	}
 
-	public boolean isTokenBlacklisted(String token) {
-		return blacklistedTokens.contains(token);
+	private static LocalDateTime toDateTime(long epochMillis) {
+		return epochMillis == Long.MAX_VALUE ? LocalDateTime.of(9999, 12, 31, 0, 0)
+				: LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
 	}
 }
@@ -0,0 +1,228 @@
+package com.rtcsoft.sevakendra.services;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.rtcsoft.sevakendra.configs.StorageProperties;
+import com.rtcsoft.sevakendra.exceptions.ApiException;
+import com.rtcsoft.sevakendra.exceptions.UploadException;
+
+/**
+ * Resumable uploads in the style of tus 1.0. The file is allocated at its full
+ * length on creation and every PATCH writes at its offset through a
+ * FileChannel with one fixed buffer, so memory use does not depend on the file
+ * size. The offset is kept in a properties file next to the data and only ever
+ * covers bytes that were written, so an interrupted upload resumes from there.
+ */
+@Service
+public class UploadService {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(UploadService.class);
+
+	private static final Pattern UPLOAD_ID = Pattern.compile("[0-9a-f]{32}");
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final Path uploadRoot;
+
+	// One writer per upload at a time
+	private final Map<String, ReentrantLock> locks = new ConcurrentHashMap<>();
+
+	@Value("${upload.max-size:52428800}")
+	private long maxSize;
+
+	@Value("${upload.expire-hours:24}")
+	private long expireHours;
+
+	public record UploadState(String id, long userId, long length, long offset, String filename) {
+		public boolean isComplete() {
+			return offset == length;
+		}
+	}
+
+	public UploadService(StorageProperties properties) {
+		this.uploadRoot = Paths.get(properties.getLocation()).toAbsolutePath().normalize().resolve("uploads");
+	}
+
+	/**
+	 * @param metadata tus Upload-Metadata header, only filename is used
+	 */
+	public UploadState create(long userId, long length, String metadata) throws ApiException, IOException {
+		if (length <= 0 || length > maxSize) {
+			throw new UploadException(413, "Upload-Length must be between 1 and " + maxSize);
+		}
+		Files.createDirectories(uploadRoot);
+		String id = UUID.randomUUID().toString().replace("-", "");
+		try (RandomAccessFile file = new RandomAccessFile(dataPath(id).toFile(), "rw")) {
+			file.setLength(length);
+		}
+		UploadState state = new UploadState(id, userId, length, 0, filenameFrom(metadata));
+		saveState(state);
+		return state;
+	}
+
+	public UploadState find(long userId, String id) throws ApiException, IOException {
+		if (id == null || !UPLOAD_ID.matcher(id).matches()) {
+			throw new UploadException(404, "Upload not found: " + id);
+		}
+		UploadState state;
+		try (Reader reader = Files.newBufferedReader(statePath(id), StandardCharsets.UTF_8)) {
+			Properties properties = new Properties();
+			properties.load(reader);
+			state = new UploadState(id, Long.parseLong(properties.getProperty("userId")),
+					Long.parseLong(properties.getProperty("length")), Long.parseLong(properties.getProperty("offset")),
+					properties.getProperty("filename"));
+		} catch (NoSuchFileException e) {
+			throw new UploadException(404, "Upload not found: " + id);
+		}
+		if (state.userId() != userId) {
+			throw new UploadException(404, "Upload not found: " + id);
+		}
+		return state;
+	}
+
+	/**
+	 * Append the request body at offset. Whatever arrived before a broken
+	 * connection is kept and reported by the next HEAD.
+	 */
+	public UploadState write(long userId, String id, long offset, InputStream body) throws ApiException, IOException {
+		ReentrantLock lock = locks.computeIfAbsent(id, key -> new ReentrantLock());
+		if (!lock.tryLock()) {
+			throw new UploadException(423, "Upload " + id + " is being written by another request");
+		}
+		try {
+			UploadState state = find(userId, id);
+			if (offset != state.offset()) {
+				throw new UploadException(409,
+						"Upload-Offset does not match, the server has " + state.offset() + " bytes");
+			}
+
+			long position = offset;
+			try (FileChannel channel = FileChannel.open(dataPath(id), StandardOpenOption.WRITE)) {
+				ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+				try {
+					int read;
+					while (position < state.length() && (read = body.read(buffer.array(), 0,
+							(int) Math.min(BUFFER_SIZE, state.length() - position))) != -1) {
+						buffer.limit(read).position(0);
+						while (buffer.hasRemaining()) {
+							position += channel.write(buffer, position);
+						}
+					}
+				} finally {
+					channel.force(false);
+					state = new UploadState(id, userId, state.length(), position, state.filename());
+					saveState(state);
+				}
+			}
+			return state;
+		} finally {
+			lock.unlock();
+			locks.remove(id, lock);
+		}
+	}
+
+	/**
+	 * Hand a finished upload over, the caller copies the data file into its final
+	 * place and calls {@link #delete} once that is committed.
+	 */
+	public Path completedFile(UploadState state) throws ApiException {
+		if (!state.isComplete()) {
+			throw new UploadException(409,
+					"Upload " + state.id() + " has " + state.offset() + " of " + state.length() + " bytes");
+		}
+		return dataPath(state.id());
+	}
+
+	public void delete(String id) throws IOException {
+		Files.deleteIfExists(dataPath(id));
+		Files.deleteIfExists(statePath(id));
+	}
+
+	@Scheduled(fixedDelayString = "${upload.cleanup-interval:PT1H}")
+	public void removeExpired() {
+		if (!Files.isDirectory(uploadRoot)) {
+			return;
+		}
+		Instant expiredBefore = Instant.now().minus(Duration.ofHours(expireHours));
+		try (DirectoryStream<Path> states = Files.newDirectoryStream(uploadRoot, "*.properties")) {
+			for (Path state : states) {
+				if (Files.getLastModifiedTime(state).toInstant().isBefore(expiredBefore)) {
+					String name = state.getFileName().toString();
+					delete(name.substring(0, name.length() - ".properties".length()));
+					LOGGER.info("Removed expired upload {}", name);
+				}
+			}
+		} catch (IOException e) {
+			LOGGER.warn("Could not clean up uploads: {}", e.getMessage());
+		}
+	}
+
+	private void saveState(UploadState state) throws IOException {
+		Properties properties = new Properties();
+		properties.setProperty("userId", Long.toString(state.userId()));
+		properties.setProperty("length", Long.toString(state.length()));
+		properties.setProperty("offset", Long.toString(state.offset()));
+		if (state.filename() != null) {
+			properties.setProperty("filename", state.filename());
+		}
+		Path temp = uploadRoot.resolve(state.id() + ".properties.tmp");
+		try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+			properties.store(writer, null);
+		}
+		Files.move(temp, statePath(state.id()), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private Path dataPath(String id) {
+		return uploadRoot.resolve(id + ".bin");
+	}
+
+	private Path statePath(String id) {
+		return uploadRoot.resolve(id + ".properties");
+	}
+
+	// Upload-Metadata is a list of "key base64value" pairs
+	private static String filenameFrom(String metadata) {
+		if (metadata == null) {
+			return null;
+		}
+		for (String pair : metadata.split(",")) {
+			String[] parts = pair.trim().split(" ", 2);
+			if (parts.length == 2 && "filename".equals(parts[0])) {
+				try {
+					return new String(Base64.getDecoder().decode(parts[1].trim()), StandardCharsets.UTF_8);
+				} catch (IllegalArgumentException e) {
+					return null;
+				}
+			}
+		}
+		return null;
+	}
+}
@@ -1,12 +1,12 @@
 package com.rtcsoft.sevakendra.services;
 
-import java.util.ArrayList;
 import java.util.List;
 
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
-import com.rtcsoft.sevakendra.entities.User;
 import com.rtcsoft.sevakendra.repositories.UserRepository;
+import com.rtcsoft.sevakendra.responses.UserResponse;
 
 @Service
 public class UserService {
@@ -17,11 +17,8 @@ public class UserService {
 		this.userRepository = userRepository;
 	}
 
-	public List<User> allUsers() {
-		List<User> users = new ArrayList<>();
-
-		userRepository.findAll().forEach(users::add);
-
-		return users;
+	@Transactional(readOnly = true)
+	public List<UserResponse> allUsers() {
+		return userRepository.findAllResponses();
 	}
 }
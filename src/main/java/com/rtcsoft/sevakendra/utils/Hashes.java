@@ -0,0 +1,25 @@
+package com.rtcsoft.sevakendra.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+public final class Hashes {
+
+	private Hashes() {
+	}
+
+	/**
+	 * Lookup key for a high entropy secret such as a reset or refresh token. The
+	 * secret itself is never stored, a leaked table cannot be replayed.
+	 */
+	public static String sha256Hex(String value) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -0,0 +1,33 @@
+package com.rtcsoft.sevakendra.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+import com.rtcsoft.sevakendra.exceptions.ApiException;
+
+/**
+ * Position of the last row of a page ordered by (updatedAt DESC, id DESC). It
+ * is handed to clients as an opaque string.
+ */
+public record KeysetCursor(LocalDateTime updatedAt, long id) {
+
+	private static final String SEPARATOR = "|";
+
+	public String encode() {
+		String raw = updatedAt + SEPARATOR + id;
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+	}
+
+	public static KeysetCursor decode(String cursor) throws ApiException {
+		try {
+			String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+			int separator = raw.lastIndexOf(SEPARATOR);
+			return new KeysetCursor(LocalDateTime.parse(raw.substring(0, separator)),
+					Long.parseLong(raw.substring(separator + 1)));
+		} catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException e) {
+			throw new ApiException("Invalid cursor: " + cursor);
+		}
+	}
+}
@@ -0,0 +1,241 @@
+package com.rtcsoft.sevakendra.utils;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Folds names typed in Devanagari or in Latin transliteration to one lower
+ * case Latin form, and derives the n-grams and phonetic keys used by the
+ * customer search index.
+ */
+public final class TextNormalizer {
+
+	private static final char VIRAMA = '्';
+	private static final char NUKTA = '़';
+
+	private static final Map<Character, String> VOWELS = Map.ofEntries(Map.entry('अ', "a"),
+			Map.entry('आ', "aa"), Map.entry('इ', "i"), Map.entry('ई', "ii"), Map.entry('उ', "u"),
+			Map.entry('ऊ', "uu"), Map.entry('ऋ', "ri"), Map.entry('ए', "e"), Map.entry('ऐ', "ai"),
+			Map.entry('ओ', "o"), Map.entry('औ', "au"));
+
+	private static final Map<Character, String> MATRAS = Map.ofEntries(Map.entry('ा', "aa"),
+			Map.entry('ि', "i"), Map.entry('ी', "ii"), Map.entry('ु', "u"), Map.entry('ू', "uu"),
+			Map.entry('ृ', "ri"), Map.entry('े', "e"), Map.entry('ै', "ai"), Map.entry('ो', "o"),
+			Map.entry('ौ', "au"));
+
+	private static final Map<Character, String> SIGNS = Map.of('ँ', "n", 'ं', "n", 'ः', "h");
+
+	private static final Map<Character, String> CONSONANTS = Map.ofEntries(Map.entry('क', "k"),
+			Map.entry('ख', "kh"), Map.entry('ग', "g"), Map.entry('घ', "gh"), Map.entry('ङ', "n"),
+			Map.entry('च', "ch"), Map.entry('छ', "chh"), Map.entry('ज', "j"), Map.entry('झ', "jh"),
+			Map.entry('ञ', "n"), Map.entry('ट', "t"), Map.entry('ठ', "th"), Map.entry('ड', "d"),
+			Map.entry('ढ', "dh"), Map.entry('ण', "n"), Map.entry('त', "t"), Map.entry('थ', "th"),
+			Map.entry('द', "d"), Map.entry('ध', "dh"), Map.entry('न', "n"), Map.entry('प', "p"),
+			Map.entry('फ', "ph"), Map.entry('ब', "b"), Map.entry('भ', "bh"), Map.entry('म', "m"),
+			Map.entry('य', "y"), Map.entry('र', "r"), Map.entry('ल', "l"), Map.entry('ळ', "l"),
+			Map.entry('व', "v"), Map.entry('श', "sh"), Map.entry('ष', "sh"), Map.entry('स', "s"),
+			Map.entry('ह', "h"));
+
+	private TextNormalizer() {
+	}
+
+	/**
+	 * NFKC fold, transliterate Devanagari, lower case and keep only letters and
+	 * digits separated by single spaces.
+	 */
+	public static String normalize(String value) {
+		if (value == null) {
+			return "";
+		}
+		String folded = transliterate(Normalizer.normalize(value, Normalizer.Form.NFKC)).toLowerCase(Locale.ROOT);
+		StringBuilder out = new StringBuilder(folded.length());
+		boolean space = true;
+		for (int i = 0; i < folded.length(); i++) {
+			char c = folded.charAt(i);
+			if ((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')) {
+				out.append(c);
+				space = false;
+			} else if (!space) {
+				out.append(' ');
+				space = true;
+			}
+		}
+		int length = out.length();
+		return space && length > 0 ? out.substring(0, length - 1) : out.toString();
+	}
+
+	/**
+	 * Duplicate check key of a customer name. A missing middle name is an empty
+	 * part, so it compares equal to another missing middle name.
+	 */
+	public static String nameKey(String firstName, String middleName, String lastName) {
+		return normalize(firstName) + "|" + normalize(middleName) + "|" + normalize(lastName);
+	}
+
+	public static List<String> tokens(String value) {
+		String normalized = normalize(value);
+		return normalized.isEmpty() ? List.of() : List.of(normalized.split(" "));
+	}
+
+	public static String digits(String value) {
+		if (value == null) {
+			return "";
+		}
+		StringBuilder out = new StringBuilder(value.length());
+		for (int i = 0; i < value.length(); i++) {
+			int digit = Character.digit(value.charAt(i), 10);
+			if (digit >= 0) {
+				out.append((char) ('0' + digit));
+			}
+		}
+		return out.toString();
+	}
+
+	/**
+	 * Spelling fold applied before n-grams: long vowels and doubled letters
+	 * collapse so "suneel", "suniil" and "sunil" produce the same grams.
+	 */
+	public static String fold(String token) {
+		String folded = token.replace("ee", "i").replace("oo", "u").replace('w', 'v');
+		StringBuilder out = new StringBuilder(folded.length());
+		for (int i = 0; i < folded.length(); i++) {
+			char c = folded.charAt(i);
+			if (i == 0 || c != folded.charAt(i - 1) || Character.isDigit(c)) {
+				out.append(c);
+			}
+		}
+		return out.toString();
+	}
+
+	/**
+	 * Trigrams of a token padded with ^ and $ so that prefixes weigh more and one
+	 * or two letter tokens still produce grams.
+	 */
+	public static Set<String> trigrams(String token) {
+		String padded = "^" + token + "$";
+		Set<String> grams = new LinkedHashSet<>();
+		for (int i = 0; i + 3 <= padded.length(); i++) {
+			grams.add(padded.substring(i, i + 3));
+		}
+		if (grams.isEmpty()) {
+			grams.add(padded);
+		}
+		return grams;
+	}
+
+	/**
+	 * Consonant skeleton of a transliterated token. Aspirates, long vowels and
+	 * doubled letters collapse so that spellings like "suneel", "sunil" and
+	 * "सुनील" share one key.
+	 */
+	public static String phoneticKey(String token) {
+		if (token.isEmpty()) {
+			return token;
+		}
+		StringBuilder key = new StringBuilder(token.length());
+		key.append(phoneticClass(token.charAt(0)));
+		char last = key.charAt(0);
+		for (int i = 1; i < token.length(); i++) {
+			char c = token.charAt(i);
+			if (c == 'h' && isConsonant(token.charAt(i - 1))) {
+				continue;
+			}
+			if (isVowel(c) || c == 'y' || c == 'h') {
+				last = 0;
+				continue;
+			}
+			char code = phoneticClass(c);
+			if (code != last) {
+				key.append(code);
+			}
+			last = code;
+		}
+		return key.toString();
+	}
+
+	public static List<String> phoneticKeys(String value) {
+		List<String> keys = new ArrayList<>();
+		for (String token : tokens(value)) {
+			keys.add(phoneticKey(token));
+		}
+		return keys;
+	}
+
+	private static String transliterate(String value) {
+		StringBuilder out = null;
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c < 'ऀ' || c > 'ॿ') {
+				if (out != null) {
+					out.append(c);
+				}
+				continue;
+			}
+			if (out == null) {
+				out = new StringBuilder(value.length() * 2).append(value, 0, i);
+			}
+			if (c >= '०' && c <= '९') {
+				out.append((char) ('0' + (c - '०')));
+			} else if (CONSONANTS.containsKey(c)) {
+				out.append(CONSONANTS.get(c));
+				int next = i + 1;
+				if (next < value.length() && value.charAt(next) == NUKTA) {
+					next++;
+				}
+				char following = next < value.length() ? value.charAt(next) : ' ';
+				// Inherent vowel unless a matra or virama follows, dropped at word end
+				if (!MATRAS.containsKey(following) && following != VIRAMA && isDevanagariLetter(following)) {
+					out.append('a');
+				}
+			} else if (VOWELS.containsKey(c)) {
+				out.append(VOWELS.get(c));
+			} else if (MATRAS.containsKey(c)) {
+				out.append(MATRAS.get(c));
+			} else if (SIGNS.containsKey(c)) {
+				out.append(SIGNS.get(c));
+			} else if (c != VIRAMA && c != NUKTA) {
+				out.append(' ');
+			}
+		}
+		return out == null ? value : out.toString();
+	}
+
+	private static boolean isDevanagariLetter(char c) {
+		return CONSONANTS.containsKey(c) || VOWELS.containsKey(c) || SIGNS.containsKey(c);
+	}
+
+	private static boolean isVowel(char c) {
+		return c == 'a' || c == 'e' || c == 'i' || c == 'o' || c == 'u';
+	}
+
+	private static boolean isConsonant(char c) {
+		return c >= 'a' && c <= 'z' && !isVowel(c) && c != 'h';
+	}
+
+	private static char phoneticClass(char c) {
+		switch (c) {
+		case 'w':
+			return 'v';
+		case 'z':
+			return 'j';
+		case 'q':
+		case 'c':
+			return 'k';
+		case 'x':
+			return 's';
+		case 'y':
+			return 'i';
+		case 'e':
+		case 'o':
+		case 'u':
+			return 'a';
+		default:
+			return c;
+		}
+	}
+}
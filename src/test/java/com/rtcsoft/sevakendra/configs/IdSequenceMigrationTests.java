@@ -0,0 +1,198 @@
+package com.rtcsoft.sevakendra.configs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.dialect.H2Dialect;
+import org.hibernate.dialect.sequence.NoSequenceSupport;
+import org.hibernate.dialect.sequence.SequenceSupport;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+
+/**
+ * Runs the id allocators the way they run on MySQL: the dialect below has no
+ * native sequences, so Hibernate emulates every sequence as a one row table.
+ */
+class IdSequenceMigrationTests {
+
+	private static final int CUSTOMER_ALLOCATION = 100;
+
+	private HikariDataSource dataSource;
+	private JdbcTemplate jdbcTemplate;
+
+	// MySQL has no sequences, same as this dialect
+	public static class TableSequenceH2Dialect extends H2Dialect {
+		@Override
+		public SequenceSupport getSequenceSupport() {
+			return NoSequenceSupport.INSTANCE;
+		}
+	}
+
+	// The mapping every entity had before, one shared row locked on each insert
+	@Entity
+	@Table(name = "legacy_rows")
+	public static class LegacyRow {
+		@Id
+		@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "hibernate_sequence")
+		@SequenceGenerator(name = "hibernate_sequence", sequenceName = "hibernate_sequence", allocationSize = 1)
+		private Long id;
+
+		private String name;
+	}
+
+	// Same generator as Customer
+	@Entity
+	@Table(name = "customers")
+	public static class PooledRow {
+		@Id
+		@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "customers_id_seq")
+		@SequenceGenerator(name = "customers_id_seq", sequenceName = "customers_id_seq",
+				allocationSize = CUSTOMER_ALLOCATION)
+		private Long id;
+
+		private String name;
+	}
+
+	@BeforeEach
+	void setUp() {
+		JdbcDataSource h2 = new JdbcDataSource();
+		h2.setURL("jdbc:h2:mem:ids-" + System.nanoTime() + ";DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=30000");
+		dataSource = new HikariDataSource();
+		dataSource.setDataSource(h2);
+		// Hibernate reads the sequence table on a second connection
+		dataSource.setMaximumPoolSize(140);
+		jdbcTemplate = new JdbcTemplate(dataSource);
+	}
+
+	@AfterEach
+	void tearDown() {
+		dataSource.close();
+	}
+
+	@Test
+	void movesTheSequencePastStoredIdsAndLegacyBlocks() {
+		try (SessionFactory sessionFactory = sessionFactory("create")) {
+			jdbcTemplate.update("INSERT INTO customers (id, name) VALUES (250, 'stored')");
+			jdbcTemplate.update("UPDATE hibernate_sequence SET next_val = 300");
+
+			new IdSequenceMigration(jdbcTemplate).migrate();
+
+			assertEquals(300 + CUSTOMER_ALLOCATION, nextValue());
+			assertEquals(301L, insert(sessionFactory, PooledRow::new));
+		}
+	}
+
+	@Test
+	void restartsDoNotMoveTheSequence() {
+		try (SessionFactory sessionFactory = sessionFactory("create")) {
+			jdbcTemplate.update("INSERT INTO customers (id, name) VALUES (250, 'stored')");
+			new IdSequenceMigration(jdbcTemplate).migrate();
+			for (int i = 0; i < 10; i++) {
+				insert(sessionFactory, PooledRow::new);
+			}
+		}
+		long beforeRestart = nextValue();
+
+		new IdSequenceMigration(jdbcTemplate).migrate();
+
+		assertEquals(beforeRestart, nextValue());
+		try (SessionFactory sessionFactory = sessionFactory("none")) {
+			// The new node takes the block the table points at, nothing in between is lost
+			assertEquals(beforeRestart - CUSTOMER_ALLOCATION + 1, insert(sessionFactory, PooledRow::new));
+		}
+	}
+
+	/**
+	 * Insert throughput at 16 to 64 concurrent writers, one insert per
+	 * transaction like the customer API. Run with -Dbenchmark=true.
+	 */
+	@Test
+	@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+	void benchmarkConcurrentWriters() throws Exception {
+		int insertsPerWriter = Integer.getInteger("benchmark.inserts", 500);
+		try (SessionFactory sessionFactory = sessionFactory("create")) {
+			// Warm up the JIT and the pool
+			writers(sessionFactory, 16, 100, LegacyRow::new);
+			writers(sessionFactory, 16, 100, PooledRow::new);
+
+			for (int writers : List.of(16, 32, 64)) {
+				double legacy = writers(sessionFactory, writers, insertsPerWriter, LegacyRow::new);
+				double pooled = writers(sessionFactory, writers, insertsPerWriter, PooledRow::new);
+				System.out.printf("%d writers: shared sequence %.0f inserts/s, pooled sequence %.0f inserts/s%n",
+						writers, legacy, pooled);
+			}
+		}
+	}
+
+	private double writers(SessionFactory sessionFactory, int writers, int inserts, Callable<Object> row)
+			throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(writers);
+		try {
+			List<Callable<Void>> tasks = new ArrayList<>();
+			for (int i = 0; i < writers; i++) {
+				tasks.add(() -> {
+					for (int j = 0; j < inserts; j++) {
+						insert(sessionFactory, row);
+					}
+					return null;
+				});
+			}
+			long start = System.nanoTime();
+			for (Future<Void> future : executor.invokeAll(tasks)) {
+				future.get();
+			}
+			return writers * inserts / ((System.nanoTime() - start) / 1e9);
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	private static long insert(SessionFactory sessionFactory, Callable<Object> row) {
+		return sessionFactory.fromTransaction(session -> {
+			try {
+				Object entity = row.call();
+				session.persist(entity);
+				session.flush();
+				return (Long) session.getIdentifier(entity);
+			} catch (Exception e) {
+				throw new IllegalStateException(e);
+			}
+		});
+	}
+
+	private long nextValue() {
+		return jdbcTemplate.queryForObject("SELECT next_val FROM customers_id_seq", Long.class);
+	}
+
+	private SessionFactory sessionFactory(String schemaAction) {
+		Configuration configuration = new Configuration()
+				.addAnnotatedClass(LegacyRow.class)
+				.addAnnotatedClass(PooledRow.class)
+				.setProperty(AvailableSettings.DIALECT, TableSequenceH2Dialect.class.getName())
+				.setProperty(AvailableSettings.HBM2DDL_AUTO, schemaAction);
+		configuration.getProperties().put(AvailableSettings.JAKARTA_NON_JTA_DATASOURCE, dataSource);
+		return configuration.buildSessionFactory();
+	}
+}
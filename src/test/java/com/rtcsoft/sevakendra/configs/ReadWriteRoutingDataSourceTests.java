@@ -0,0 +1,179 @@
+package com.rtcsoft.sevakendra.configs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.sql.DataSource;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import com.rtcsoft.sevakendra.projections.AuthenticatedUser;
+
+import jakarta.servlet.http.Cookie;
+
+class ReadWriteRoutingDataSourceTests {
+
+	private ReadWriteRoutingDataSource routing;
+	private JdbcTemplate jdbcTemplate;
+	private TransactionTemplate readWrite;
+	private TransactionTemplate readOnly;
+
+	@BeforeEach
+	void setUp() {
+		onNode(new ReadWriteRoutingDataSource(node("primary"), List.of(node("replica-a"), node("replica-b")),
+				token()));
+	}
+
+	@AfterEach
+	void tearDown() {
+		SecurityContextHolder.clearContext();
+		RequestContextHolder.resetRequestAttributes();
+	}
+
+	@Test
+	void readOnlyTransactionsAlternateBetweenReplicas() {
+		signIn(1);
+		Set<String> nodes = new HashSet<>();
+		for (int i = 0; i < 4; i++) {
+			nodes.add(readOnly.execute(status -> currentNode()));
+		}
+		assertEquals(Set.of("replica-a", "replica-b"), nodes);
+	}
+
+	@Test
+	void writesAndAnonymousReadsUseThePrimary() {
+		assertEquals("primary", readOnly.execute(status -> currentNode()));
+		signIn(1);
+		assertEquals("primary", readWrite.execute(status -> currentNode()));
+		assertEquals("primary", currentNode());
+	}
+
+	@Test
+	void readsOfTheWriterStayOnThePrimaryOnEveryNode() {
+		signIn(1);
+		MockHttpServletResponse response = inRequest(new MockHttpServletRequest());
+		readWrite.execute(status -> currentNode());
+		// Later in the same request
+		assertEquals("primary", readOnly.execute(status -> currentNode()));
+		String token = response.getHeader(ReadYourWritesToken.HEADER);
+		assertNotNull(token);
+		assertTrue(response.getHeader(HttpHeaders.SET_COOKIE).startsWith(ReadYourWritesToken.COOKIE + "=" + token));
+
+		// The next request lands on another node and presents the cookie
+		onNode(new ReadWriteRoutingDataSource(node("primary"), List.of(node("replica-a"), node("replica-b")),
+				token()));
+		MockHttpServletRequest withCookie = new MockHttpServletRequest();
+		withCookie.setCookies(new Cookie(ReadYourWritesToken.COOKIE, token));
+		inRequest(withCookie);
+		assertEquals("primary", readOnly.execute(status -> currentNode()));
+
+		MockHttpServletRequest withHeader = new MockHttpServletRequest();
+		withHeader.addHeader(ReadYourWritesToken.HEADER, token);
+		inRequest(withHeader);
+		assertEquals("primary", readOnly.execute(status -> currentNode()));
+
+		inRequest(new MockHttpServletRequest());
+		assertTrue(readOnly.execute(status -> currentNode()).startsWith("replica"));
+
+		// Someone else's token does not pin this user
+		signIn(2);
+		MockHttpServletRequest otherUser = new MockHttpServletRequest();
+		otherUser.addHeader(ReadYourWritesToken.HEADER, token);
+		inRequest(otherUser);
+		assertTrue(readOnly.execute(status -> currentNode()).startsWith("replica"));
+	}
+
+	@Test
+	void expiredForgedOrMalformedTokensAreIgnored() {
+		ReadYourWritesToken token = token();
+		long future = System.currentTimeMillis() + 60_000;
+		assertTrue(token.isValid(token.sign(1, future), 1));
+		assertFalse(token.isValid(token.sign(1, System.currentTimeMillis() - 1), 1));
+		assertFalse(token.isValid(token.sign(1, future), 2));
+		assertFalse(token.isValid(new ReadYourWritesToken("another-key", Duration.ofMinutes(1)).sign(1, future), 1));
+		assertFalse(token.isValid("1." + (future + 1) + "." + token.sign(1, future).split("\\.")[2], 1));
+		assertFalse(token.isValid("1." + future, 1));
+		assertFalse(token.isValid("1.soon.!!", 1));
+	}
+
+	@Test
+	void onPrimaryOverridesReadOnlyWithoutStickiness() {
+		signIn(1);
+		assertEquals("primary", readOnly.execute(status -> ReadWriteRoutingDataSource.onPrimary(this::currentNode)));
+		assertTrue(readOnly.execute(status -> currentNode()).startsWith("replica"));
+	}
+
+	@Test
+	void withoutReplicasEverythingUsesThePrimary() {
+		routing = new ReadWriteRoutingDataSource(node("primary"), List.of(), token());
+		routing.afterPropertiesSet();
+		DataSource dataSource = new LazyConnectionDataSourceProxy(routing);
+		TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+		transactionTemplate.setReadOnly(true);
+
+		signIn(1);
+		assertEquals("primary", transactionTemplate.execute(status -> new JdbcTemplate(dataSource)
+				.queryForObject("SELECT name FROM node", String.class)));
+	}
+
+	private void onNode(ReadWriteRoutingDataSource node) {
+		routing = node;
+		routing.afterPropertiesSet();
+		DataSource dataSource = new LazyConnectionDataSourceProxy(routing);
+		jdbcTemplate = new JdbcTemplate(dataSource);
+
+		DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+		readWrite = new TransactionTemplate(transactionManager);
+		readOnly = new TransactionTemplate(transactionManager);
+		readOnly.setReadOnly(true);
+	}
+
+	private static ReadYourWritesToken token() {
+		return new ReadYourWritesToken("shared-test-key", Duration.ofMinutes(1));
+	}
+
+	private static MockHttpServletResponse inRequest(MockHttpServletRequest request) {
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request, response));
+		return response;
+	}
+
+	private String currentNode() {
+		return jdbcTemplate.queryForObject("SELECT name FROM node", String.class);
+	}
+
+	private static void signIn(long userId) {
+		AuthenticatedUser user = new AuthenticatedUser(userId, "User " + userId, "user" + userId + "@example.com");
+		SecurityContextHolder.getContext()
+				.setAuthentication(new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities()));
+	}
+
+	// Each node is its own in-memory database that answers with its name
+	private static DataSource node(String name) {
+		JdbcDataSource dataSource = new JdbcDataSource();
+		dataSource.setURL("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+		new JdbcTemplate(dataSource).execute("CREATE TABLE IF NOT EXISTS node AS SELECT '" + name + "' AS name");
+		return dataSource;
+	}
+}
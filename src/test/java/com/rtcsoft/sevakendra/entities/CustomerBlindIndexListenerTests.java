@@ -0,0 +1,65 @@
+package com.rtcsoft.sevakendra.entities;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import org.junit.jupiter.api.Test;
+
+import com.rtcsoft.sevakendra.services.FieldCipher;
+
+class CustomerBlindIndexListenerTests {
+
+	private final FieldCipher cipher = new FieldCipher("fCDe3NGXjxS8/ooCwSLL12rzN/SQ6UYpHgYP/XVGbfI=",
+			"ig+K9Vg+Ooik6YxhoqlZtjwnSpi25S0Dnoi7OgsmE4k=");
+	private final CustomerBlindIndexListener listener = new CustomerBlindIndexListener(cipher);
+
+	@Test
+	void indexesFollowTheAadharAndPhoneOfTheTenant() {
+		Customer first = customer(1, "1234 5678 9012", "+91 98765 43210");
+		Customer sameNumbers = customer(1, "123456789012", "9876543210");
+		Customer otherTenant = customer(2, "1234 5678 9012", "+91 98765 43210");
+		listener.computeIndexes(first);
+		listener.computeIndexes(sameNumbers);
+		listener.computeIndexes(otherTenant);
+
+		assertNotNull(first.getAadharIndex());
+		assertEquals(cipher.aadharIndex(1, "123456789012"), first.getAadharIndex());
+		assertEquals(first.getAadharIndex(), sameNumbers.getAadharIndex());
+		assertEquals(first.getPhoneIndex(), sameNumbers.getPhoneIndex());
+		assertNotEquals(first.getAadharIndex(), otherTenant.getAadharIndex());
+		assertNotEquals(first.getPhoneIndex(), otherTenant.getPhoneIndex());
+	}
+
+	@Test
+	void indexesOfALoadedCustomerAreRecomputedFromTheCiphertext() {
+		SealedStringConverter converter = new SealedStringConverter(cipher);
+		Customer loaded = customer(1, null, null);
+		loaded.setAadharNumber(converter.convertToEntityAttribute(cipher.seal("1234 5678 9012")));
+		listener.computeIndexes(loaded);
+
+		assertEquals(cipher.aadharIndex(1, "123456789012"), loaded.getAadharIndex());
+		assertNull(loaded.getPhoneIndex());
+	}
+
+	@Test
+	void clearingANumberClearsItsIndex() {
+		Customer customer = customer(1, "1234 5678 9012", "9876543210");
+		listener.computeIndexes(customer);
+		customer.setAadharNumber(null);
+		customer.setPhoneNumber(SealedString.of(""));
+		listener.computeIndexes(customer);
+
+		assertNull(customer.getAadharIndex());
+		assertNull(customer.getPhoneIndex());
+	}
+
+	private static Customer customer(long userId, String aadhar, String phone) {
+		Customer customer = new Customer();
+		customer.setUserId(userId);
+		customer.setAadharNumber(SealedString.of(aadhar));
+		customer.setPhoneNumber(SealedString.of(phone));
+		return customer;
+	}
+}
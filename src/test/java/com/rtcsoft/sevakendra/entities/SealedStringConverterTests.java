@@ -0,0 +1,47 @@
+package com.rtcsoft.sevakendra.entities;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import com.rtcsoft.sevakendra.services.FieldCipher;
+
+class SealedStringConverterTests {
+
+	private final FieldCipher cipher = new FieldCipher("fCDe3NGXjxS8/ooCwSLL12rzN/SQ6UYpHgYP/XVGbfI=",
+			"ig+K9Vg+Ooik6YxhoqlZtjwnSpi25S0Dnoi7OgsmE4k=");
+	private final SealedStringConverter converter = new SealedStringConverter(cipher);
+
+	@Test
+	void writesCiphertextAndReadsItBack() {
+		String column = converter.convertToDatabaseColumn(SealedString.of("1234 5678 9012"));
+
+		assertTrue(cipher.isSealed(column));
+		assertEquals("1234 5678 9012", converter.convertToEntityAttribute(column).reveal());
+	}
+
+	@Test
+	void anUnchangedValueKeepsItsCiphertext() {
+		String column = cipher.seal("9876543210");
+
+		assertEquals(column, converter.convertToDatabaseColumn(converter.convertToEntityAttribute(column)));
+	}
+
+	@Test
+	void legacyPlainTextIsReadAsIsAndSealedOnTheNextWrite() {
+		SealedString legacy = converter.convertToEntityAttribute("123456789012");
+
+		assertEquals("123456789012", legacy.reveal());
+		String column = converter.convertToDatabaseColumn(legacy);
+		assertTrue(cipher.isSealed(column));
+		assertEquals("123456789012", cipher.open(column));
+	}
+
+	@Test
+	void nullsStayNull() {
+		assertNull(converter.convertToDatabaseColumn(null));
+		assertNull(converter.convertToEntityAttribute(null));
+	}
+}
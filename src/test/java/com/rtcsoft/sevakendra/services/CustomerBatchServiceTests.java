@@ -0,0 +1,283 @@
+package com.rtcsoft.sevakendra.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.sql.DataSource;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.hibernate.boot.model.naming.CamelCaseToUnderscoresNamingStrategy;
+import org.hibernate.cfg.AvailableSettings;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.ComponentScan.Filter;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.FilterType;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.orm.hibernate5.SpringBeanContainer;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.persistenceunit.PersistenceManagedTypes;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.validation.beanvalidation.LocalValidatorFactoryBean;
+
+import com.rtcsoft.sevakendra.dtos.CustomerBatchDTO;
+import com.rtcsoft.sevakendra.dtos.CustomerDTO;
+import com.rtcsoft.sevakendra.entities.Customer;
+import com.rtcsoft.sevakendra.entities.SealedString;
+import com.rtcsoft.sevakendra.enums.BatchOperationType;
+import com.rtcsoft.sevakendra.enums.SyncEntityType;
+import com.rtcsoft.sevakendra.enums.SyncOperation;
+import com.rtcsoft.sevakendra.repositories.CustomerRepository;
+import com.rtcsoft.sevakendra.responses.BatchResult;
+
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Runs batches against the unique indexes of the customers table on H2. The
+ * caches, the search index, the sync feed and the dashboard are mocks.
+ */
+@SpringJUnitConfig(CustomerBatchServiceTests.Config.class)
+class CustomerBatchServiceTests {
+
+	private static final long USER = 1;
+
+	@Configuration
+	@EnableJpaRepositories(basePackageClasses = CustomerRepository.class, includeFilters = @Filter(
+			type = FilterType.ASSIGNABLE_TYPE, classes = CustomerRepository.class))
+	static class Config {
+
+		@Bean
+		DataSource dataSource() {
+			JdbcDataSource dataSource = new JdbcDataSource();
+			dataSource.setURL("jdbc:h2:mem:customer_batch;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1;"
+					+ "NON_KEYWORDS=VALUE,USER,KEY,CAST,DAY,MONTH,YEAR");
+			return dataSource;
+		}
+
+		@Bean
+		LocalContainerEntityManagerFactoryBean entityManagerFactory(DataSource dataSource,
+				ConfigurableListableBeanFactory beanFactory) {
+			LocalContainerEntityManagerFactoryBean factory = new LocalContainerEntityManagerFactoryBean();
+			factory.setDataSource(dataSource);
+			factory.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+			factory.setManagedTypes(PersistenceManagedTypes.of(Customer.class.getName()));
+			// The converter and the blind index listener take FieldCipher from the context
+			factory.setJpaPropertyMap(Map.of("hibernate.hbm2ddl.auto", "create-drop",
+					"hibernate.physical_naming_strategy", CamelCaseToUnderscoresNamingStrategy.class.getName(),
+					AvailableSettings.BEAN_CONTAINER, new SpringBeanContainer(beanFactory)));
+			return factory;
+		}
+
+		@Bean
+		PlatformTransactionManager transactionManager(EntityManagerFactory entityManagerFactory) {
+			return new JpaTransactionManager(entityManagerFactory);
+		}
+
+		@Bean
+		TransactionTemplate transactionTemplate(PlatformTransactionManager transactionManager) {
+			return new TransactionTemplate(transactionManager);
+		}
+
+		@Bean
+		LocalValidatorFactoryBean validator() {
+			return new LocalValidatorFactoryBean();
+		}
+
+		@Bean
+		FieldCipher fieldCipher() {
+			return new FieldCipher(FieldCipherTests.ENCRYPTION_KEY, FieldCipherTests.INDEX_KEY);
+		}
+
+		@Bean
+		CustomerBatchService customerBatchService() {
+			return new CustomerBatchService();
+		}
+	}
+
+	@Autowired
+	private CustomerBatchService customerBatchService;
+
+	@Autowired
+	private CustomerRepository customerRepository;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@MockBean
+	private SharedService sharedService;
+
+	@MockBean
+	private SyncService syncService;
+
+	@MockBean
+	private CustomerSearchIndex searchIndex;
+
+	@MockBean
+	private PhotoStorageService photoStorageService;
+
+	@MockBean
+	private PhotoVariantService photoVariantService;
+
+	@MockBean
+	private CustomerNameFilter nameFilter;
+
+	@MockBean
+	private CustomerCache customerCache;
+
+	@MockBean
+	private DashboardService dashboardService;
+
+	@BeforeEach
+	void setUp() {
+		customerRepository.deleteAll();
+		when(sharedService.getAuthUserId()).thenReturn(USER);
+	}
+
+	@Test
+	void duplicateNamesWithinOneBatchFailTheBatch() throws Exception {
+		ResponseEntity<BatchResult> response = customerBatchService.apply(batch(
+				create("a", "Sunil", "Patil", "123456789012"),
+				create("b", "Ramesh", "Kale", null),
+				create("c", " sunil ", "PATIL", null),
+				create("d", "Mahesh", "Jadhav", "123456789012")));
+
+		assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, response.getStatusCode());
+		List<BatchResult.Item> items = response.getBody().results();
+		assertFalse(response.getBody().applied());
+		assertEquals(BatchResult.Status.NOT_APPLIED, items.get(0).status());
+		assertEquals(BatchResult.Status.NOT_APPLIED, items.get(1).status());
+		assertEquals(BatchResult.Status.FAILED, items.get(2).status());
+		assertEquals("Customer already exists with this name", items.get(2).message());
+		assertEquals(BatchResult.Status.FAILED, items.get(3).status());
+		assertEquals("Customer already exists with this Aadhaar number", items.get(3).message());
+		assertEquals(0, customerRepository.count());
+		verify(searchIndex, never()).upsert(any());
+	}
+
+	@Test
+	void aNameAndAadhaarFreedByAnUpdateCanBeTakenLaterInTheBatch() throws Exception {
+		Customer existing = save("Sunil", "Patil", "123456789012");
+
+		ResponseEntity<BatchResult> response = customerBatchService.apply(batch(
+				update("a", existing.getId(), "Sunil", "Pawar", "210987654321"),
+				create("b", "Sunil", "Patil", "123456789012")));
+
+		assertEquals(HttpStatus.OK, response.getStatusCode());
+		assertTrue(response.getBody().applied());
+		Long created = response.getBody().results().get(1).id();
+		assertEquals("Pawar", customerRepository.findById(existing.getId()).orElseThrow().getLastName());
+		Customer taken = customerRepository.findById(created).orElseThrow();
+		assertEquals("Patil", taken.getLastName());
+		assertEquals("123456789012", SealedString.reveal(taken.getAadharNumber()));
+		verify(searchIndex).upsert(taken);
+	}
+
+	@Test
+	void aCreateBeforeTheUpdateThatFreesItsNameFails() throws Exception {
+		Customer existing = save("Sunil", "Patil", null);
+
+		ResponseEntity<BatchResult> response = customerBatchService.apply(batch(
+				create("b", "Sunil", "Patil", null),
+				update("a", existing.getId(), "Sunil", "Pawar", null)));
+
+		assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, response.getStatusCode());
+		assertEquals("Customer already exists with this name", response.getBody().results().get(0).message());
+		assertEquals("Patil", customerRepository.findById(existing.getId()).orElseThrow().getLastName());
+	}
+
+	@Test
+	void aConcurrentWriteRollsBackTheWholeBatch() throws Exception {
+		Customer existing = save("Sunil", "Patil", null);
+		Customer removed = save("Mahesh", "Jadhav", null);
+		// Another request takes a name of the batch after the checks, before the batch flushes
+		AtomicBoolean raced = new AtomicBoolean();
+		doAnswer(invocation -> {
+			if (raced.compareAndSet(false, true)) {
+				save("Ramesh", "Kale", null);
+			}
+			return null;
+		}).when(syncService).recordAll(eq(USER), eq(SyncEntityType.CUSTOMER), any(), eq(SyncOperation.UPSERT));
+
+		ResponseEntity<BatchResult> response = customerBatchService.apply(batch(
+				update("a", existing.getId(), "Sunil", "Pawar", null),
+				create("b", "Sunil", "Patil", null),
+				create("c", "Ramesh", "Kale", null),
+				delete("d", removed.getId())));
+
+		assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, response.getStatusCode());
+		List<BatchResult.Item> items = response.getBody().results();
+		assertEquals(BatchResult.Status.FAILED, items.get(2).status());
+		assertEquals("Customer already exists with this name", items.get(2).message());
+		// The update was flushed before the create took its name, and rolled back with the rest
+		assertEquals("Patil", customerRepository.findById(existing.getId()).orElseThrow().getLastName());
+		assertTrue(customerRepository.findById(removed.getId()).isPresent());
+		assertEquals(3, customerRepository.count());
+		verify(searchIndex, never()).upsert(any());
+		verify(searchIndex, never()).remove(anyLong(), anyLong());
+	}
+
+	// Committed on its own, as another request would
+	private Customer save(String firstName, String lastName, String aadhar) {
+		TransactionTemplate requiresNew = new TransactionTemplate(transactionManager);
+		requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+		return requiresNew.execute(status -> {
+			Customer customer = new Customer();
+			customer.setFirstName(firstName);
+			customer.setLastName(lastName);
+			customer.setAadharNumber(SealedString.of(aadhar));
+			customer.setUserId(USER);
+			return customerRepository.save(customer);
+		});
+	}
+
+	private static CustomerBatchDTO batch(CustomerBatchDTO.Operation... operations) {
+		return new CustomerBatchDTO(List.of(operations));
+	}
+
+	private static CustomerBatchDTO.Operation create(String clientRef, String firstName, String lastName,
+			String aadhar) {
+		return new CustomerBatchDTO.Operation(BatchOperationType.CREATE, clientRef, null,
+				customer(firstName, lastName, aadhar), null);
+	}
+
+	private static CustomerBatchDTO.Operation update(String clientRef, Long id, String firstName, String lastName,
+			String aadhar) {
+		return new CustomerBatchDTO.Operation(BatchOperationType.UPDATE, clientRef, id,
+				customer(firstName, lastName, aadhar), null);
+	}
+
+	private static CustomerBatchDTO.Operation delete(String clientRef, Long id) {
+		return new CustomerBatchDTO.Operation(BatchOperationType.DELETE, clientRef, id, null, null);
+	}
+
+	private static CustomerDTO customer(String firstName, String lastName, String aadhar) {
+		CustomerDTO customer = new CustomerDTO();
+		customer.setFirstName(firstName);
+		customer.setLastName(lastName);
+		customer.setAadharNumber(aadhar);
+		return customer;
+	}
+}
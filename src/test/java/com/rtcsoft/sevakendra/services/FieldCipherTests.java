@@ -0,0 +1,75 @@
+package com.rtcsoft.sevakendra.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Base64;
+
+import org.junit.jupiter.api.Test;
+
+class FieldCipherTests {
+
+	static final String ENCRYPTION_KEY = "fCDe3NGXjxS8/ooCwSLL12rzN/SQ6UYpHgYP/XVGbfI=";
+	static final String INDEX_KEY = "ig+K9Vg+Ooik6YxhoqlZtjwnSpi25S0Dnoi7OgsmE4k=";
+
+	private final FieldCipher cipher = new FieldCipher(ENCRYPTION_KEY, INDEX_KEY);
+
+	@Test
+	void sealedValuesOpenToThePlainText() {
+		String sealed = cipher.seal("1234 5678 9012");
+
+		assertTrue(sealed.startsWith(FieldCipher.VERSION));
+		assertFalse(sealed.contains("1234"));
+		assertEquals("1234 5678 9012", cipher.open(sealed));
+		assertEquals("सुनील", cipher.open(cipher.seal("सुनील")));
+		// A fresh IV each time
+		assertNotEquals(sealed, cipher.seal("1234 5678 9012"));
+		assertNull(cipher.seal(null));
+	}
+
+	@Test
+	void legacyPlainTextPassesThroughOpen() {
+		assertFalse(cipher.isSealed("123456789012"));
+		assertEquals("123456789012", cipher.open("123456789012"));
+		assertNull(cipher.open(null));
+	}
+
+	@Test
+	void tamperedOrForeignCiphertextIsRejected() {
+		String sealed = cipher.seal("123456789012");
+		byte[] bytes = Base64.getDecoder().decode(sealed.substring(FieldCipher.VERSION.length()));
+		bytes[bytes.length / 2] ^= 1;
+		String tampered = FieldCipher.VERSION + Base64.getEncoder().encodeToString(bytes);
+
+		assertThrows(IllegalStateException.class, () -> cipher.open(tampered));
+		FieldCipher otherKey = new FieldCipher(INDEX_KEY, ENCRYPTION_KEY);
+		assertThrows(IllegalStateException.class, () -> otherKey.open(sealed));
+	}
+
+	@Test
+	void aadharIndexIsStablePerTenantAndDiffersAcrossTenants() {
+		String index = cipher.aadharIndex(1, "1234 5678 9012");
+
+		assertEquals(index, cipher.aadharIndex(1, "123456789012"));
+		assertEquals(index, new FieldCipher(ENCRYPTION_KEY, INDEX_KEY).aadharIndex(1, "1234-5678-9012"));
+		assertNotEquals(index, cipher.aadharIndex(2, "1234 5678 9012"));
+		assertNotEquals(index, cipher.aadharIndex(1, "1234 5678 9013"));
+		assertNull(cipher.aadharIndex(1, " - "));
+		assertNull(cipher.aadharIndex(1, null));
+	}
+
+	@Test
+	void phoneIndexIgnoresTheCountryPrefix() {
+		String index = cipher.phoneIndex(1, "98765 43210");
+
+		assertEquals(index, cipher.phoneIndex(1, "+91 98765-43210"));
+		assertEquals(index, cipher.phoneIndex(1, "098765 43210"));
+		assertNotEquals(index, cipher.phoneIndex(2, "98765 43210"));
+		// Same digits, different field
+		assertNotEquals(cipher.aadharIndex(1, "9876543210"), cipher.phoneIndex(1, "9876543210"));
+	}
+}
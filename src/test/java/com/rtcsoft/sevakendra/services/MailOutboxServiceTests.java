@@ -0,0 +1,243 @@
+package com.rtcsoft.sevakendra.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import javax.sql.DataSource;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.hibernate.boot.model.naming.CamelCaseToUnderscoresNamingStrategy;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.ComponentScan.Filter;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.FilterType;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.persistenceunit.PersistenceManagedTypes;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.rtcsoft.sevakendra.entities.OutboxMail;
+import com.rtcsoft.sevakendra.enums.MailStatus;
+import com.rtcsoft.sevakendra.repositories.OutboxMailRepository;
+
+import jakarta.persistence.EntityManagerFactory;
+
+@SpringJUnitConfig(MailOutboxServiceTests.Config.class)
+@TestPropertySource(properties = { "mail.from=no-reply@test.local", "mail.outbox.batch-size=2",
+		"mail.outbox.max-attempts=3", "mail.outbox.backoff-seconds=30" })
+class MailOutboxServiceTests {
+
+	@Configuration
+	@EnableJpaRepositories(basePackageClasses = OutboxMailRepository.class, includeFilters = @Filter(
+			type = FilterType.ASSIGNABLE_TYPE, classes = OutboxMailRepository.class))
+	static class Config {
+
+		@Bean
+		DataSource dataSource() {
+			JdbcDataSource dataSource = new JdbcDataSource();
+			dataSource.setURL("jdbc:h2:mem:mail_outbox;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+			return dataSource;
+		}
+
+		@Bean
+		LocalContainerEntityManagerFactoryBean entityManagerFactory(DataSource dataSource) {
+			LocalContainerEntityManagerFactoryBean factory = new LocalContainerEntityManagerFactoryBean();
+			factory.setDataSource(dataSource);
+			factory.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+			factory.setManagedTypes(PersistenceManagedTypes.of(OutboxMail.class.getName()));
+			// claimDue is native SQL on the column names Spring Boot generates
+			factory.setJpaPropertyMap(Map.of("hibernate.hbm2ddl.auto", "create-drop",
+					"hibernate.physical_naming_strategy", CamelCaseToUnderscoresNamingStrategy.class.getName()));
+			return factory;
+		}
+
+		@Bean
+		PlatformTransactionManager transactionManager(EntityManagerFactory entityManagerFactory) {
+			return new JpaTransactionManager(entityManagerFactory);
+		}
+
+		@Bean
+		TransactionTemplate transactionTemplate(PlatformTransactionManager transactionManager) {
+			return new TransactionTemplate(transactionManager);
+		}
+
+		@Bean
+		JavaMailSender mailSender() {
+			return mock(JavaMailSender.class);
+		}
+
+		@Bean
+		MailOutboxService mailOutboxService() {
+			return new MailOutboxService();
+		}
+	}
+
+	@Autowired
+	private MailOutboxService mailOutboxService;
+
+	@Autowired
+	private OutboxMailRepository outboxMailRepository;
+
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+
+	@Autowired
+	private JavaMailSender mailSender;
+
+	@BeforeEach
+	void setUp() {
+		outboxMailRepository.deleteAll();
+		reset(mailSender);
+	}
+
+	@Test
+	void enqueuedMailsAreSentInBatches() {
+		for (int i = 1; i <= 3; i++) {
+			enqueue("user" + i + "@example.com");
+		}
+		mailOutboxService.dispatch();
+
+		ArgumentCaptor<SimpleMailMessage[]> batches = ArgumentCaptor.forClass(SimpleMailMessage[].class);
+		verify(mailSender, times(2)).send(batches.capture());
+		List<SimpleMailMessage> sent = new ArrayList<>();
+		batches.getAllValues().forEach(batch -> sent.addAll(Arrays.asList(batch)));
+		assertEquals(Set.of("user1@example.com", "user2@example.com", "user3@example.com"),
+				sent.stream().map(message -> message.getTo()[0]).collect(Collectors.toSet()));
+		for (SimpleMailMessage message : sent) {
+			assertEquals("no-reply@test.local", message.getFrom());
+			assertEquals("Reset your password", message.getSubject());
+			assertEquals("Open the link", message.getText());
+		}
+
+		for (OutboxMail mail : outboxMailRepository.findAll()) {
+			assertEquals(MailStatus.SENT, mail.getStatus());
+			assertNotNull(mail.getSentAt());
+			assertEquals(0, mail.getAttempts());
+		}
+
+		mailOutboxService.dispatch();
+		verify(mailSender, times(2)).send(any(SimpleMailMessage[].class));
+	}
+
+	@Test
+	void aMailOfARolledBackTransactionIsNeverSent() {
+		transactionTemplate.executeWithoutResult(status -> {
+			mailOutboxService.enqueue("user@example.com", "Reset your password", "Open the link");
+			status.setRollbackOnly();
+		});
+		mailOutboxService.dispatch();
+
+		assertEquals(0, outboxMailRepository.count());
+		verify(mailSender, never()).send(any(SimpleMailMessage[].class));
+	}
+
+	@Test
+	void failuresBackOffAndEndFailed() {
+		doThrow(new MailSendException("Connection refused")).when(mailSender).send(any(SimpleMailMessage[].class));
+		long id = enqueue("user@example.com");
+
+		LocalDateTime before = LocalDateTime.now();
+		mailOutboxService.dispatch();
+		OutboxMail mail = outboxMailRepository.findById(id).orElseThrow();
+		assertEquals(MailStatus.PENDING, mail.getStatus());
+		assertEquals(1, mail.getAttempts());
+		assertEquals("Connection refused", mail.getLastError());
+		assertRetryAfter(mail, before, 30);
+
+		// Not due yet
+		mailOutboxService.dispatch();
+		verify(mailSender, times(1)).send(any(SimpleMailMessage[].class));
+
+		makeDue(id);
+		before = LocalDateTime.now();
+		mailOutboxService.dispatch();
+		mail = outboxMailRepository.findById(id).orElseThrow();
+		assertEquals(2, mail.getAttempts());
+		assertRetryAfter(mail, before, 60);
+
+		makeDue(id);
+		mailOutboxService.dispatch();
+		mail = outboxMailRepository.findById(id).orElseThrow();
+		assertEquals(MailStatus.FAILED, mail.getStatus());
+		assertEquals(3, mail.getAttempts());
+		assertNull(mail.getSentAt());
+
+		makeDue(id);
+		mailOutboxService.dispatch();
+		verify(mailSender, times(3)).send(any(SimpleMailMessage[].class));
+	}
+
+	@Test
+	void onlyTheRejectedMailsOfABatchAreRetried() {
+		doAnswer(invocation -> {
+			for (Object argument : invocation.getArguments()) {
+				SimpleMailMessage message = (SimpleMailMessage) argument;
+				if (message.getTo()[0].startsWith("unknown")) {
+					throw new MailSendException(Map.of(message, new IllegalStateException("550 No such user")));
+				}
+			}
+			return null;
+		}).when(mailSender).send(any(SimpleMailMessage[].class));
+		long delivered = enqueue("user@example.com");
+		long rejected = enqueue("unknown@example.com");
+
+		mailOutboxService.dispatch();
+
+		assertEquals(MailStatus.SENT, outboxMailRepository.findById(delivered).orElseThrow().getStatus());
+		OutboxMail retried = outboxMailRepository.findById(rejected).orElseThrow();
+		assertEquals(MailStatus.PENDING, retried.getStatus());
+		assertEquals(1, retried.getAttempts());
+		assertEquals("550 No such user", retried.getLastError());
+	}
+
+	private long enqueue(String recipient) {
+		transactionTemplate.executeWithoutResult(
+				status -> mailOutboxService.enqueue(recipient, "Reset your password", "Open the link"));
+		return StreamSupport.stream(outboxMailRepository.findAll().spliterator(), false)
+				.filter(mail -> mail.getRecipient().equals(recipient)).findFirst().orElseThrow().getId();
+	}
+
+	private void makeDue(long id) {
+		transactionTemplate.executeWithoutResult(status -> {
+			OutboxMail mail = outboxMailRepository.findById(id).orElseThrow();
+			mail.setNextAttemptAt(LocalDateTime.now().minusSeconds(1));
+		});
+	}
+
+	private static void assertRetryAfter(OutboxMail mail, LocalDateTime before, long seconds) {
+		LocalDateTime next = mail.getNextAttemptAt();
+		assertTrue(!next.isBefore(before.plusSeconds(seconds)), next + " before " + before.plusSeconds(seconds));
+		assertTrue(next.isBefore(LocalDateTime.now().plusSeconds(seconds)), next + " too late");
+	}
+}
@@ -0,0 +1,193 @@
+package com.rtcsoft.sevakendra.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.sql.DataSource;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.ComponentScan.Filter;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.FilterType;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.persistenceunit.PersistenceManagedTypes;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.rtcsoft.sevakendra.entities.RefreshToken;
+import com.rtcsoft.sevakendra.repositories.RefreshTokenRepository;
+import com.rtcsoft.sevakendra.services.RefreshTokenService.Rotation;
+import com.rtcsoft.sevakendra.utils.Hashes;
+
+import jakarta.persistence.EntityManagerFactory;
+
+@SpringJUnitConfig(RefreshTokenServiceTests.Config.class)
+class RefreshTokenServiceTests {
+
+	private static final long USER = 7;
+
+	@Configuration
+	@EnableJpaRepositories(basePackageClasses = RefreshTokenRepository.class, includeFilters = @Filter(
+			type = FilterType.ASSIGNABLE_TYPE, classes = RefreshTokenRepository.class))
+	static class Config {
+
+		@Bean
+		DataSource dataSource() {
+			JdbcDataSource dataSource = new JdbcDataSource();
+			// Refreshes of the same token wait on the row lock, not fail on it
+			dataSource.setURL("jdbc:h2:mem:refresh_tokens;MODE=MySQL;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000");
+			return dataSource;
+		}
+
+		@Bean
+		LocalContainerEntityManagerFactoryBean entityManagerFactory(DataSource dataSource) {
+			LocalContainerEntityManagerFactoryBean factory = new LocalContainerEntityManagerFactoryBean();
+			factory.setDataSource(dataSource);
+			factory.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+			factory.setManagedTypes(PersistenceManagedTypes.of(RefreshToken.class.getName()));
+			factory.setJpaPropertyMap(Map.of("hibernate.hbm2ddl.auto", "create-drop"));
+			return factory;
+		}
+
+		@Bean
+		PlatformTransactionManager transactionManager(EntityManagerFactory entityManagerFactory) {
+			return new JpaTransactionManager(entityManagerFactory);
+		}
+
+		@Bean
+		TransactionTemplate transactionTemplate(PlatformTransactionManager transactionManager) {
+			return new TransactionTemplate(transactionManager);
+		}
+
+		@Bean
+		RefreshTokenService refreshTokenService() {
+			return new RefreshTokenService();
+		}
+	}
+
+	@Autowired
+	private RefreshTokenService refreshTokenService;
+
+	@Autowired
+	private RefreshTokenRepository refreshTokenRepository;
+
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+
+	@BeforeEach
+	void setUp() {
+		refreshTokenRepository.deleteAll();
+	}
+
+	@Test
+	void rotationIssuesTheNextTokenOfTheFamily() {
+		String first = refreshTokenService.issue(USER);
+		Rotation rotation = refreshTokenService.rotate(first);
+
+		assertEquals(USER, rotation.userId());
+		assertNotEquals(first, rotation.refreshToken());
+		assertEquals(stored(first).getFamilyId(), stored(rotation.refreshToken()).getFamilyId());
+		assertNotNull(stored(first).getRotatedAt());
+		assertNotNull(refreshTokenService.rotate(rotation.refreshToken()));
+	}
+
+	@Test
+	void aRotatedTokenPresentedAgainRevokesTheWholeFamily() {
+		String first = refreshTokenService.issue(USER);
+		String second = refreshTokenService.rotate(first).refreshToken();
+		String otherLogin = refreshTokenService.issue(USER);
+
+		assertThrows(BadCredentialsException.class, () -> refreshTokenService.rotate(first));
+
+		// The revocation is committed even though rotate failed
+		assertNotNull(stored(first).getRevokedAt());
+		assertNotNull(stored(second).getRevokedAt());
+		assertThrows(BadCredentialsException.class, () -> refreshTokenService.rotate(second));
+		// Other logins of the user are another family
+		assertNull(stored(otherLogin).getRevokedAt());
+		assertNotNull(refreshTokenService.rotate(otherLogin));
+	}
+
+	@Test
+	void concurrentRefreshesWithTheSameTokenHaveOneWinner() throws Exception {
+		int clients = 8;
+		for (int round = 0; round < 5; round++) {
+			String token = refreshTokenService.issue(USER);
+			CountDownLatch start = new CountDownLatch(1);
+			ExecutorService executor = Executors.newFixedThreadPool(clients);
+			try {
+				List<Future<Rotation>> refreshes = new ArrayList<>();
+				for (int i = 0; i < clients; i++) {
+					refreshes.add(executor.submit(() -> {
+						start.await();
+						try {
+							return refreshTokenService.rotate(token);
+						} catch (BadCredentialsException e) {
+							return null;
+						}
+					}));
+				}
+				start.countDown();
+
+				int winners = 0;
+				for (Future<Rotation> refresh : refreshes) {
+					if (refresh.get() != null) {
+						winners++;
+					}
+				}
+				assertEquals(1, winners);
+			} finally {
+				executor.shutdown();
+			}
+		}
+	}
+
+	@Test
+	void expiredRevokedAndUnknownTokensAreRejected() {
+		String expired = refreshTokenService.issue(USER);
+		transactionTemplate.executeWithoutResult(status -> {
+			RefreshToken token = stored(expired);
+			token.setExpiresAt(LocalDateTime.now().minusSeconds(1));
+			refreshTokenRepository.save(token);
+		});
+		assertThrows(BadCredentialsException.class, () -> refreshTokenService.rotate(expired));
+		assertNull(stored(expired).getRotatedAt());
+
+		String loggedOut = refreshTokenService.issue(USER);
+		refreshTokenService.revoke(loggedOut);
+		assertThrows(BadCredentialsException.class, () -> refreshTokenService.rotate(loggedOut));
+
+		String passwordChanged = refreshTokenService.issue(USER);
+		String otherUser = refreshTokenService.issue(USER + 1);
+		refreshTokenService.revokeAll(USER);
+		assertThrows(BadCredentialsException.class, () -> refreshTokenService.rotate(passwordChanged));
+		assertNotNull(refreshTokenService.rotate(otherUser));
+
+		assertThrows(BadCredentialsException.class, () -> refreshTokenService.rotate("never-issued"));
+	}
+
+	private RefreshToken stored(String token) {
+		return refreshTokenRepository.findByTokenHash(Hashes.sha256Hex(token)).orElseThrow();
+	}
+}
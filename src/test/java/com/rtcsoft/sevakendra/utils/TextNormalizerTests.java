@@ -0,0 +1,31 @@
+package com.rtcsoft.sevakendra.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class TextNormalizerTests {
+
+	@Test
+	void transliteratesDevanagari() {
+		assertEquals("suniil paatiil", TextNormalizer.normalize("सुनील पाटील"));
+		assertEquals("9876", TextNormalizer.normalize("९८७६"));
+	}
+
+	@Test
+	void spellingsShareTrigramsAndPhoneticKeys() {
+		assertEquals(TextNormalizer.trigrams(TextNormalizer.fold("suneel")),
+				TextNormalizer.trigrams(TextNormalizer.fold("suniil")));
+		assertEquals(List.of("snl", "ptl"), TextNormalizer.phoneticKeys("सुनील पाटील"));
+		assertEquals(List.of("snl", "ptl"), TextNormalizer.phoneticKeys("Sunil Paatil"));
+		assertEquals(TextNormalizer.phoneticKey("shweta"), TextNormalizer.phoneticKey("sweta"));
+	}
+
+	@Test
+	void keepsOnlyLettersAndDigits() {
+		assertEquals("dr o brien smith", TextNormalizer.normalize("  Dr. O'Brien-Smith "));
+		assertEquals("9876543210", TextNormalizer.digits("+91 98765-43210").substring(2));
+	}
+}